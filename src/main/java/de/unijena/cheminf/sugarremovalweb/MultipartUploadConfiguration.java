@@ -0,0 +1,30 @@
+package de.unijena.cheminf.sugarremovalweb;
+
+import de.unijena.cheminf.sugarremovalweb.storage.StorageProperties;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.MultipartConfigElement;
+import java.nio.file.Paths;
+
+/**
+ * Lets the servlet container receive uploads in the incoming folder of the storage instead of its own temp folder, so
+ * an upload that is kept is moved into the storage and not copied
+ */
+@Configuration
+public class MultipartUploadConfiguration {
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties multipartProperties,
+                                                         StorageProperties storageProperties) {
+        MultipartConfigElement config = multipartProperties.createMultipartConfig();
+        if (StringUtils.hasText(config.getLocation())) {
+            //spring.servlet.multipart.location is set explicitly
+            return config;
+        }
+        return new MultipartConfigElement(Paths.get(storageProperties.getIncomingLocation()).toAbsolutePath().toString(),
+                config.getMaxFileSize(), config.getMaxRequestSize(), config.getFileSizeThreshold());
+    }
+}
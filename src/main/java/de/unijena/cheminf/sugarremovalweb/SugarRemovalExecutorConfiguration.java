@@ -0,0 +1,69 @@
+package de.unijena.cheminf.sugarremovalweb;
+
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools of the sugar removal, kept apart from the servlet container threads
+ */
+@Configuration
+public class SugarRemovalExecutorConfiguration {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService sugarRemovalExecutor(SugarRemovalProperties properties) {
+        int workerThreads = properties.getEffectiveWorkerThreads();
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedDaemonThreads("sugar-removal-"));
+    }
+
+    /**
+     * Parses and standardizes the records of uploaded files in chunks
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService sugarRemovalIngestExecutor(SugarRemovalProperties properties) {
+        int ingestThreads = properties.getEffectiveIngestThreads();
+        return new ThreadPoolExecutor(ingestThreads, ingestThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedDaemonThreads("sugar-removal-ingest-"));
+    }
+
+    /**
+     * Runs the jobs of the job API; a full queue rejects new submissions instead of piling them up
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService sugarRemovalJobExecutor(SugarRemovalProperties properties) {
+        int jobThreads = Math.max(1, properties.getJobThreads());
+        return new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getJobQueueCapacity())),
+                namedDaemonThreads("sugar-removal-job-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the storage janitor, see {@link de.unijena.cheminf.sugarremovalweb.misc.SessionCleaner}
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService storageJanitorExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("storage-janitor-"));
+    }
+
+
+    static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -1,5 +1,6 @@
 package de.unijena.cheminf.sugarremovalweb;
 
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalProperties;
 import de.unijena.cheminf.sugarremovalweb.storage.StorageProperties;
 import de.unijena.cheminf.sugarremovalweb.storage.StorageService;
 import org.springframework.boot.CommandLineRunner;
@@ -9,7 +10,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
-@EnableConfigurationProperties(StorageProperties.class)
+@EnableConfigurationProperties({StorageProperties.class, SugarRemovalProperties.class})
 public class SugarRemovalWebApplication {
     static String IMAGE_DIR;
 
@@ -21,10 +22,8 @@ public class SugarRemovalWebApplication {
 
     @Bean
     CommandLineRunner init(StorageService storageService) {
-        return (args) -> {
-            storageService.deleteAll();
-            storageService.init();
-        };
+        //stored files of an earlier run are left to the storage janitor, deleting them could delay the start
+        return (args) -> storageService.init();
     }
 
 }
@@ -0,0 +1,43 @@
+package de.unijena.cheminf.sugarremovalweb.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes objects as newline-delimited JSON, one record per line, and flushes after every record so that the client
+ * receives each result as soon as it is computed
+ */
+class NdjsonWriter {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final ObjectMapper objectMapper;
+
+    private final OutputStream outputStream;
+
+
+    NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) {
+        this.objectMapper = objectMapper;
+        this.outputStream = outputStream;
+    }
+
+
+    /**
+     * @param record
+     * @throws UncheckedIOException if the record cannot be written, usually because the client closed the connection
+     */
+    void write(Object record) throws UncheckedIOException {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(record));
+            outputStream.write(NEWLINE);
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package de.unijena.cheminf.sugarremovalweb.controller;
 
 import de.unijena.cheminf.sugarremovalweb.misc.SessionCleaner;
+import de.unijena.cheminf.sugarremovalweb.model.BatchMoleculeResult;
+import de.unijena.cheminf.sugarremovalweb.model.JobResultsPage;
+import de.unijena.cheminf.sugarremovalweb.model.JobStatus;
 import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+import de.unijena.cheminf.sugarremovalweb.model.StorageUsage;
 import de.unijena.cheminf.sugarremovalweb.model.SubmittedMoleculeData;
+import de.unijena.cheminf.sugarremovalweb.model.SugarRemovalJob;
+import de.unijena.cheminf.sugarremovalweb.readers.BatchRequestReader;
+import de.unijena.cheminf.sugarremovalweb.readers.MoleculeIterator;
 import de.unijena.cheminf.sugarremovalweb.readers.ReaderService;
 import de.unijena.cheminf.sugarremovalweb.readers.UserInputMoleculeReaderService;
+import de.unijena.cheminf.sugarremovalweb.services.BatchReport;
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalJobService;
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalProperties;
 import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalService;
 import de.unijena.cheminf.sugarremovalweb.storage.StorageFileNotFoundException;
 import de.unijena.cheminf.sugarremovalweb.storage.StorageService;
+import de.unijena.cheminf.sugarremovalweb.storage.StoredFile;
+import de.unijena.cheminf.sugarremovalweb.writers.ExportContent;
+import de.unijena.cheminf.sugarremovalweb.writers.ExportFormat;
+import de.unijena.cheminf.sugarremovalweb.writers.ResultWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -21,11 +36,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author mSorok
@@ -34,6 +54,8 @@ import java.util.ArrayList;
 @RequestMapping("molecule")
 public class SugarRemovalController {
 
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     @Autowired
     HttpServletRequest request;
 
@@ -55,21 +77,27 @@ public class SugarRemovalController {
     @Autowired
     UserInputMoleculeReaderService userInputMoleculeReaderService;
 
+    @Autowired
+    SugarRemovalJobService sugarRemovalJobService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    SugarRemovalProperties sugarRemovalProperties;
+
     @Autowired
     public SugarRemovalController(StorageService storageService) {
         this.storageService = storageService;
     }
 
-    ArrayList<ProcessedMolecule> processedMolecules ;
-
-
     @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
     public ResponseEntity<ArrayList<ProcessedMolecule>> catchMoleculeAndParameters(@RequestBody SubmittedMoleculeData submittedMoleculeData){
 
         //System.out.println(submittedMoleculeData.getDataString());
         //System.out.println(submittedMoleculeData.getSugarsToRemove());
 
-        processedMolecules = sugarRemovalService.doWork(submittedMoleculeData);
+        ArrayList<ProcessedMolecule> processedMolecules = sugarRemovalService.doWork(submittedMoleculeData);
 
         if(processedMolecules.isEmpty()){
             return new ResponseEntity(processedMolecules, HttpStatus.BAD_REQUEST);
@@ -90,13 +118,12 @@ public class SugarRemovalController {
 
 
         if(!file.isEmpty()) {
-            storageService.store(file);
-            String loadedFile = "upload-dir/" + file.getOriginalFilename();
-            //System.out.println(loadedFile);
-
-
-
-            processedMolecules = sugarRemovalService.doWork(submittedMoleculeData, loadedFile);
+            //parsed straight from the upload, it is not stored
+            ArrayList<ProcessedMolecule> processedMolecules;
+            try (MoleculeIterator molecules = readerService.readMolecules(file, false)) {
+                processedMolecules = sugarRemovalService.doWork(submittedMoleculeData, molecules,
+                        file.getOriginalFilename());
+            }
             //System.out.println(processedMolecules);
 
             if(processedMolecules.isEmpty()){
@@ -106,11 +133,296 @@ public class SugarRemovalController {
             return new ResponseEntity(processedMolecules, HttpStatus.OK);
         }
 
-        return new ResponseEntity(processedMolecules, HttpStatus.BAD_REQUEST);
+        return new ResponseEntity(new ArrayList<ProcessedMolecule>(), HttpStatus.BAD_REQUEST);
     }
 
 
 
+    /**
+     * Streaming variant of the JSON submission, chosen with "Accept: application/x-ndjson"
+     * @param submittedMoleculeData
+     * @return
+     */
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {NdjsonWriter.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamMoleculeAndParameters(@RequestBody SubmittedMoleculeData submittedMoleculeData){
+
+        ArrayList<ProcessedMolecule> processedMolecules = sugarRemovalService.doWork(submittedMoleculeData);
+
+        if(processedMolecules.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return streamingResponse(outputStream -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream);
+            processedMolecules.forEach(writer::write);
+        });
+    }
+
+    /**
+     * Processes many SMILES in one request, see {@link BatchRequestReader} for the request. The request is read while
+     * its molecules are processed in parallel. The response holds one entry per submitted molecule, in the order of
+     * the request, with its ID and either the result or an error.
+     * @param body
+     * @return
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ArrayList<BatchMoleculeResult>> processBatch(InputStream body) {
+
+        ArrayList<BatchMoleculeResult> results = new ArrayList<>();
+        try (BatchRequestReader batch = new BatchRequestReader(objectMapper, body)) {
+            BatchReport report = sugarRemovalService.doBatch(batch.getSubmittedMoleculeData(), batch, results::add,
+                    sugarRemovalProperties.getBatchMaxMolecules());
+            System.out.println("Sugar removal for batch: " + report);
+        } catch (IOException | UncheckedIOException e) {
+            //not a batch request or malformed
+            System.out.println("Malformed batch request: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    /**
+     * Streaming variant of the batch submission, chosen with "Accept: application/x-ndjson". Every entry is written as
+     * one JSON line as soon as it and all entries before it are done.
+     * @param body
+     * @return
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {NdjsonWriter.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamBatch(InputStream body) {
+
+        BatchRequestReader batch;
+        try {
+            batch = new BatchRequestReader(objectMapper, body);
+        } catch (IOException e) {
+            System.out.println("Malformed batch request: " + e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return streamingResponse(outputStream -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream);
+            try (BatchRequestReader molecules = batch) {
+                sugarRemovalService.doBatch(molecules.getSubmittedMoleculeData(), molecules, writer::write,
+                        sugarRemovalProperties.getBatchMaxMolecules());
+            }
+        });
+    }
+
+    /**
+     * Streaming variant of the file submission, chosen with "Accept: application/x-ndjson". Every processed molecule
+     * is written as one JSON line as soon as it and all molecules before it in the file are done, the file is read
+     * straight from the upload while the molecules are processed and nothing is collected in memory.
+     * @param submittedMoleculeData
+     * @param file
+     * @param largeFile reads the whole file up to the large-file limit instead of the regular molecule limit
+     * @return
+     */
+    @PostMapping(consumes = { "multipart/form-data" }, produces = {NdjsonWriter.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamUploadedFileAndParameters(@RequestPart("submittedMoleculeData") SubmittedMoleculeData submittedMoleculeData,
+                                                                                 @RequestPart("file") MultipartFile file,
+                                                                                 @RequestParam(defaultValue = "false") boolean largeFile) {
+
+        if(file.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return streamingResponse(outputStream -> {
+            NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream);
+            try (MoleculeIterator molecules = readerService.readMolecules(file, largeFile)) {
+                sugarRemovalService.doWork(submittedMoleculeData, molecules, writer::write, () -> { });
+            }
+        });
+    }
+
+    /**
+     * Processes the uploaded file and downloads the results as an SD, SMILES or CSV file, written while the molecules
+     * are processed
+     * @param submittedMoleculeData
+     * @param file
+     * @param format sdf, smiles or csv
+     * @param content aglycones, sugars or all, the moieties written as records of the SD and SMILES files
+     * @param largeFile reads the whole file up to the large-file limit instead of the regular molecule limit
+     * @return
+     */
+    @PostMapping(value = "/export", consumes = { "multipart/form-data" })
+    public ResponseEntity<StreamingResponseBody> exportUploadedFile(@RequestPart("submittedMoleculeData") SubmittedMoleculeData submittedMoleculeData,
+                                                                    @RequestPart("file") MultipartFile file,
+                                                                    @RequestParam(defaultValue = "sdf") String format,
+                                                                    @RequestParam(defaultValue = "aglycones") String content,
+                                                                    @RequestParam(defaultValue = "false") boolean largeFile) {
+
+        ExportFormat exportFormat = ExportFormat.forName(format);
+        ExportContent exportContent = ExportContent.forName(content);
+        if(file.isEmpty() || exportFormat == null || exportContent == null) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        return exportResponse(exportFormat, "deglycosylated", outputStream -> {
+            try (ResultWriter writer = exportFormat.createWriter(outputStream, exportContent);
+                 MoleculeIterator molecules = readerService.readMolecules(file, largeFile)) {
+                sugarRemovalService.doWork(submittedMoleculeData, molecules, processedMolecule -> {
+                    try {
+                        writer.write(processedMolecule);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, () -> { });
+            }
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NdjsonWriter.APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+
+
+    /**
+     * The export is not flushed per record, the response buffer sends it in chunks
+     */
+    private ResponseEntity<StreamingResponseBody> exportResponse(ExportFormat format, String baseName,
+                                                                 StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + baseName + format.getExtension() + "\"")
+                .body(body);
+    }
+
+
+    /**
+     * Stores the uploaded file and processes it in the background
+     * @param submittedMoleculeData
+     * @param file
+     * @param largeFile reads the whole file up to the large-file limit and keeps the results on disk
+     * @return the queued job, poll /jobs/{jobId} for its progress
+     */
+    @PostMapping(value = "/jobs", consumes = { "multipart/form-data" }, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<SugarRemovalJob> submitJob(@RequestPart("submittedMoleculeData") SubmittedMoleculeData submittedMoleculeData,
+                                                     @RequestPart("file") MultipartFile file,
+                                                     @RequestParam(defaultValue = "false") boolean largeFile) {
+
+        if(file.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        StoredFile storedFile = storageService.store(file);
+
+        try {
+            SugarRemovalJob job = sugarRemovalJobService.submit(submittedMoleculeData, storedFile, largeFile);
+            return new ResponseEntity<>(job, HttpStatus.ACCEPTED);
+        } catch (RejectedExecutionException e) {
+            //all job threads are busy and the queue is full
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @GetMapping(value = "/jobs/{jobId}", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<SugarRemovalJob> getJob(@PathVariable String jobId) {
+        SugarRemovalJob job = sugarRemovalJobService.getJob(jobId);
+        if(job == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(job, HttpStatus.OK);
+    }
+
+    /**
+     * Returns the results of a job that are computed so far, in the order of the submitted file
+     * @param jobId
+     * @param page zero-based page number
+     * @param size results per page
+     * @return
+     */
+    @GetMapping(value = "/jobs/{jobId}/results", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<JobResultsPage> getJobResults(@PathVariable String jobId,
+                                                        @RequestParam(defaultValue = "0") int page,
+                                                        @RequestParam(defaultValue = "100") int size) {
+        SugarRemovalJob job = sugarRemovalJobService.getJob(jobId);
+        if(job == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if(page < 0 || size < 1 || size > 1000){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if(!job.acquireResults()){
+            //removed meanwhile
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        try {
+            JobResultsPage resultsPage = new JobResultsPage(job.getId(), job.getStatus(), page, size,
+                    job.getResultCount(), job.getResults((int) Math.min((long) page * size, Integer.MAX_VALUE), size));
+            return new ResponseEntity<>(resultsPage, HttpStatus.OK);
+        } finally {
+            job.returnResults();
+        }
+    }
+
+    /**
+     * Downloads the results of a job as an SD, SMILES or CSV file. The file is written record by record from the
+     * stored results with chunked transfer encoding, so its size is not limited by the memory. Only completed jobs
+     * are exported, the others are answered with 409 as their results are incomplete.
+     * @param jobId
+     * @param format sdf, smiles or csv
+     * @param content aglycones, sugars or all, the moieties written as records of the SD and SMILES files
+     * @return
+     */
+    @GetMapping(value = "/jobs/{jobId}/export")
+    public ResponseEntity<StreamingResponseBody> exportJobResults(@PathVariable String jobId,
+                                                                  @RequestParam(defaultValue = "sdf") String format,
+                                                                  @RequestParam(defaultValue = "aglycones") String content) {
+        SugarRemovalJob job = sugarRemovalJobService.getJob(jobId);
+        if(job == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        ExportFormat exportFormat = ExportFormat.forName(format);
+        ExportContent exportContent = ExportContent.forName(content);
+        if(exportFormat == null || exportContent == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if(job.getStatus() != JobStatus.COMPLETED){
+            //the results of a running job are not complete yet, those of a failed or cancelled job never are
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+
+        return exportResponse(exportFormat, job.getId(), outputStream -> {
+            //the results are not dropped while they are exported, even if the job is removed meanwhile
+            if (!job.acquireResults()) {
+                throw new IOException("Job " + job.getId() + " was removed.");
+            }
+            try (ResultWriter writer = exportFormat.createWriter(outputStream, exportContent)) {
+                int from = 0;
+                List<ProcessedMolecule> page = job.getResults(from, EXPORT_PAGE_SIZE);
+                while (!page.isEmpty()) {
+                    for (ProcessedMolecule processedMolecule : page) {
+                        writer.write(processedMolecule);
+                    }
+                    from += page.size();
+                    page = job.getResults(from, EXPORT_PAGE_SIZE);
+                }
+            } finally {
+                job.returnResults();
+            }
+        });
+    }
+
+    @DeleteMapping(value = "/jobs/{jobId}")
+    public ResponseEntity<Void> deleteJob(@PathVariable String jobId) {
+        if(sugarRemovalJobService.removeJob(jobId) == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+
+    /**
+     * Disk usage of the upload storage, as found by the last sweep of the storage janitor
+     * @return
+     */
+    @GetMapping(value = "/storage", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StorageUsage> getStorageUsage() {
+        return new ResponseEntity<>(sessionCleaner.getUsage(), HttpStatus.OK);
+    }
+
     @PutMapping
     public String updateMoleculeAndParameters(){
         return "update function called";
@@ -144,15 +456,16 @@ public class SugarRemovalController {
 
     /**
      *
+     * @param folder the folder of the upload in the storage
      * @param filename
      * @return
      *
      * from page / when files have been submitted, serves the files (loads)
      */
-    @GetMapping("/files/{filename:.+}")
+    @GetMapping("/files/{folder}/{filename:.+}")
     @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
-        Resource file = storageService.loadAsResource(filename);
+    public ResponseEntity<Resource> serveFile(@PathVariable String folder, @PathVariable String filename) {
+        Resource file = storageService.loadAsResource(folder + "/" + filename);
         return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
                 "attachment; filename=\"" + file.getFilename() + "\"").body(file);
     }
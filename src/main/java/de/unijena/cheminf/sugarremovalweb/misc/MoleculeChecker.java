@@ -37,14 +37,10 @@ public class MoleculeChecker {
 
 
 
-    MoleculeConnectivityChecker mcc;
-
-
-
     public IAtomContainer checkMolecule(IAtomContainer molecule){
 
 
-        mcc = BeanUtil.getBean(MoleculeConnectivityChecker.class);
+        MoleculeConnectivityChecker mcc = BeanUtil.getBean(MoleculeConnectivityChecker.class);
 
         //if(!containsStrangeElements(molecule)) {
 
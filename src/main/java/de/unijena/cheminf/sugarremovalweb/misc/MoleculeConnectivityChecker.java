@@ -25,6 +25,7 @@ public class MoleculeConnectivityChecker {
         IAtomContainerSet mols = ConnectivityChecker.partitionIntoMolecules(molecule);
         for (int i = 0; i < mols.getAtomContainerCount(); i++) {
             mols.getAtomContainer(i).setProperties(properties);
+            mols.getAtomContainer(i).setID(molecule.getID());
             curated.add(mols.getAtomContainer(i));
         }
         return curated;
@@ -2,20 +2,287 @@ package de.unijena.cheminf.sugarremovalweb.misc;
 
 
 
+import de.unijena.cheminf.sugarremovalweb.model.StorageUsage;
+import de.unijena.cheminf.sugarremovalweb.model.SugarRemovalJob;
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalJobService;
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalProperties;
+import de.unijena.cheminf.sugarremovalweb.storage.StorageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Storage janitor: deletes the stored uploads, the files of the user input and leftovers of aborted uploads and jobs
+ * while the service runs, instead of wiping the storage at the next start.
+ * <br>Every sweep first drops the expired jobs, then deletes everything older than the retention time and, if the
+ * storage is still larger than the quota, the oldest of the remaining files. The upload folders and result files of
+ * the jobs that are still kept are never deleted, and the quota does not delete files modified in the last minute, as
+ * they may just be written or read.
+ */
 @Service
 public class SessionCleaner {
 
+    private static final long QUOTA_GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1L);
 
+    private final StorageProperties storageProperties;
 
+    private final SugarRemovalProperties sugarRemovalProperties;
+
+    private final SugarRemovalJobService sugarRemovalJobService;
+
+    private final ScheduledExecutorService janitorExecutor;
+
+    private long evictedCount = 0L;
+
+    private long evictedBytes = 0L;
+
+    private volatile StorageUsage usage = new StorageUsage(0L, 0, 0, 0L, 0L, 0L, 0L, 0L);
+
+
+    @Autowired
+    public SessionCleaner(StorageProperties storageProperties, SugarRemovalProperties sugarRemovalProperties,
+                          SugarRemovalJobService sugarRemovalJobService,
+                          @Qualifier("storageJanitorExecutor") ScheduledExecutorService janitorExecutor) {
+        this.storageProperties = storageProperties;
+        this.sugarRemovalProperties = sugarRemovalProperties;
+        this.sugarRemovalJobService = sugarRemovalJobService;
+        this.janitorExecutor = janitorExecutor;
+    }
+
+
+    /**
+     * Schedules the sweeps, the first one runs one interval after the start
+     */
+    @PostConstruct
+    public void start() {
+        int intervalSeconds = storageProperties.getJanitorIntervalSeconds();
+        if (intervalSeconds > 0) {
+            janitorExecutor.scheduleWithFixedDelay(this::sweepQuietly, intervalSeconds, intervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Uploads are not kept per session, the whole storage is swept instead
+     * @param sessionId
+     */
     public void clearSession(String sessionId){
 
-        //TODO
+        sweep();
+
+    }
+
+    /**
+     * @return the disk usage found by the last sweep
+     */
+    public StorageUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * Deletes the files that are expired or exceed the quota and updates the usage
+     * @return the usage after the sweep
+     */
+    public synchronized StorageUsage sweep() {
+        sugarRemovalJobService.purgeExpiredJobs();
+
+        long evictedCountBefore = evictedCount;
+        long evictedBytesBefore = evictedBytes;
+        Path root = toAbsolute(Paths.get(storageProperties.getLocation()));
+        Set<Path> inUse = getPathsInUse(root);
+        List<StoredEntry> entries = new ArrayList<>();
+        try {
+            collectEntries(root, entries);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return usage;
+        }
+
+        long now = System.currentTimeMillis();
+        long retentionMillis = TimeUnit.MINUTES.toMillis(storageProperties.getRetentionMinutes());
+        long quotaBytes = Math.max(0L, storageProperties.getQuotaMegabytes()) * 1024L * 1024L;
+        long usedBytes = 0L;
+        int inUseCount = 0;
+        List<StoredEntry> remaining = new ArrayList<>();
+        for (StoredEntry entry : entries) {
+            if (inUse.contains(entry.path)) {
+                inUseCount++;
+            } else if (retentionMillis > 0 && now - entry.lastModified > retentionMillis && delete(entry)) {
+                continue;
+            } else {
+                remaining.add(entry);
+            }
+            usedBytes += entry.bytes;
+        }
+        if (quotaBytes > 0 && usedBytes > quotaBytes) {
+            remaining.sort(Comparator.comparingLong(entry -> entry.lastModified));
+            for (StoredEntry entry : remaining) {
+                if (usedBytes <= quotaBytes || now - entry.lastModified < QUOTA_GRACE_MILLIS) {
+                    break;
+                }
+                if (delete(entry)) {
+                    usedBytes -= entry.bytes;
+                }
+            }
+        }
+
+        long usableBytes = 0L;
+        try {
+            usableBytes = Files.getFileStore(root).getUsableSpace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        int storedCount = entries.size() - (int) Math.min(Integer.MAX_VALUE, countDeleted(entries));
+        usage = new StorageUsage(usedBytes, storedCount, inUseCount, quotaBytes, usableBytes, evictedCount,
+                evictedBytes, now);
+        if (evictedCount > evictedCountBefore) {
+            System.out.println("Storage janitor deleted " + (evictedCount - evictedCountBefore) + " stored files ("
+                    + (evictedBytes - evictedBytesBefore) / 1024L + " KB), " + storedCount + " left ("
+                    + usedBytes / 1024L + " KB)");
+        }
+        return usage;
+    }
+
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            //an exception would end the scheduled sweeps
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The incoming uploads and the spilled job results are folders of the storage by default, their files are
+     * swept one by one. The persistent result store limits its size itself, it is skipped together with the folders
+     * that contain it if it is configured inside the storage.
+     */
+    private void collectEntries(Path root, List<StoredEntry> entries) throws IOException {
+        Path incoming = toAbsolute(Paths.get(storageProperties.getIncomingLocation()));
+        Path spill = toAbsolute(Paths.get(sugarRemovalProperties.getResultSpillLocation()));
+        Path resultStore = toAbsolute(Paths.get(sugarRemovalProperties.getResultStoreLocation()));
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+            for (Path child : children) {
+                if (resultStore.startsWith(child)) {
+                    continue;
+                }
+                if (child.equals(incoming) || child.equals(spill)) {
+                    try (DirectoryStream<Path> grandchildren = Files.newDirectoryStream(child)) {
+                        for (Path grandchild : grandchildren) {
+                            if (!resultStore.startsWith(grandchild)) {
+                                addEntry(grandchild, entries);
+                            }
+                        }
+                    }
+                } else {
+                    addEntry(child, entries);
+                }
+            }
+        }
+    }
+
+    private static void addEntry(Path path, List<StoredEntry> entries) {
+        StoredEntry entry = new StoredEntry(path);
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    entry.bytes += attributes.size();
+                    entry.lastModified = Math.max(entry.lastModified, attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                    entry.lastModified = Math.max(entry.lastModified, attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exception) {
+                    //deleted while it is walked
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * @return the upload folders and result files of the jobs that are kept
+     */
+    private Set<Path> getPathsInUse(Path root) {
+        Set<Path> inUse = new HashSet<>();
+        for (SugarRemovalJob job : sugarRemovalJobService.getJobs()) {
+            Path upload = toAbsolute(Paths.get(job.getFileName()));
+            Path parent = upload.getParent();
+            //uploads are stored in a folder of their own, which may be shared by identical uploads
+            inUse.add(parent != null && !parent.equals(root) ? parent : upload);
+            inUse.add(toAbsolute(sugarRemovalJobService.getResultSpillFile(job.getId())));
+        }
+        return inUse;
+    }
+
+    private boolean delete(StoredEntry entry) {
+        try {
+            FileSystemUtils.deleteRecursively(entry.path);
+        } catch (NoSuchFileException e) {
+            //deleted by someone else
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        entry.deleted = true;
+        evictedCount++;
+        evictedBytes += entry.bytes;
+        return true;
+    }
+
+    private static long countDeleted(List<StoredEntry> entries) {
+        return entries.stream().filter(entry -> entry.deleted).count();
+    }
+
+    private static Path toAbsolute(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+
+    private static final class StoredEntry {
+
+        private final Path path;
+
+        private long bytes = 0L;
+
+        private long lastModified = 0L;
+
+        private boolean deleted = false;
 
+        private StoredEntry(Path path) {
+            this.path = path;
+        }
     }
 
 
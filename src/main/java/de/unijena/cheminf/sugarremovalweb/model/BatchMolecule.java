@@ -0,0 +1,34 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+/**
+ * One molecule of a batch request
+ */
+public class BatchMolecule {
+
+    String smiles;
+    String id;
+
+    public BatchMolecule() {
+    }
+
+    public BatchMolecule(String smiles, String id) {
+        this.smiles = smiles;
+        this.id = id;
+    }
+
+    public String getSmiles() {
+        return smiles;
+    }
+
+    public void setSmiles(String smiles) {
+        this.smiles = smiles;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+}
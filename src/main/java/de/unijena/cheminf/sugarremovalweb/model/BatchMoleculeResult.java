@@ -0,0 +1,68 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+/**
+ * Outcome of one molecule of a batch request, either its result or the reason why there is none
+ */
+public class BatchMoleculeResult {
+
+    private final int index;
+
+    private final String id;
+
+    private final ProcessedMolecule result;
+
+    private final String error;
+
+
+    public BatchMoleculeResult(int index, String id, ProcessedMolecule result, String error) {
+        this.index = index;
+        this.id = id;
+        this.result = result;
+        this.error = error;
+    }
+
+
+    /**
+     * @return the zero-based position of the molecule in the request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the ID submitted with the molecule, may be null
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the result or null if the molecule could not be processed
+     */
+    public ProcessedMolecule getResult() {
+        return result;
+    }
+
+    /**
+     * @return why the molecule could not be processed or null if it was
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @param result
+     * @return this outcome with the given result
+     */
+    public BatchMoleculeResult withResult(ProcessedMolecule result) {
+        return new BatchMoleculeResult(index, id, result, null);
+    }
+
+    /**
+     * @param error
+     * @return this outcome with the given error
+     */
+    public BatchMoleculeResult withError(String error) {
+        return new BatchMoleculeResult(index, id, null, error);
+    }
+}
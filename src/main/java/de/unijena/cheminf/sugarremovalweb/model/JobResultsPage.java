@@ -0,0 +1,60 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+import java.util.List;
+
+/**
+ * One page of the results of a {@link SugarRemovalJob}
+ */
+public class JobResultsPage {
+
+    private final String jobId;
+
+    private final JobStatus status;
+
+    private final int page;
+
+    private final int size;
+
+    private final int availableResults;
+
+    private final List<ProcessedMolecule> results;
+
+
+    public JobResultsPage(String jobId, JobStatus status, int page, int size, int availableResults,
+                          List<ProcessedMolecule> results) {
+        this.jobId = jobId;
+        this.status = status;
+        this.page = page;
+        this.size = size;
+        this.availableResults = availableResults;
+        this.results = results;
+    }
+
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of results computed so far, the final number once the job is finished
+     */
+    public int getAvailableResults() {
+        return availableResults;
+    }
+
+    public List<ProcessedMolecule> getResults() {
+        return results;
+    }
+}
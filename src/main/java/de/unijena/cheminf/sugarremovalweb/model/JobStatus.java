@@ -0,0 +1,9 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
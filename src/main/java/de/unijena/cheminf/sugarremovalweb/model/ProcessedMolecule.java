@@ -27,6 +27,31 @@ public class ProcessedMolecule {
 
     String inchikey;
 
+    String id;
+
+
+    public ProcessedMolecule() {
+    }
+
+    /**
+     * Copies the given result, the lists are copied and the CDK objects in them are shared
+     * @param original
+     */
+    public ProcessedMolecule(ProcessedMolecule original) {
+        this.sugarsToRemove = copyOf(original.sugarsToRemove);
+        this.molecule = original.molecule;
+        this.smiles = original.smiles;
+        this.displaySmiles = original.displaySmiles;
+        this.sugarWasRemoved = original.sugarWasRemoved;
+        this.sugarMoietiesRemoved = copyOf(original.sugarMoietiesRemoved);
+        this.sugarMoietiesRemovedSmiles = copyOf(original.sugarMoietiesRemovedSmiles);
+        this.deglycosylatedMoieties = copyOf(original.deglycosylatedMoieties);
+        this.deglycosylatedMoietiesSmiles = copyOf(original.deglycosylatedMoietiesSmiles);
+        this.submittedDataType = original.submittedDataType;
+        this.inchikey = original.inchikey;
+        this.id = original.id;
+    }
+
 
     public ArrayList<String> getSugarsToRemove() {
         return sugarsToRemove;
@@ -100,6 +125,17 @@ public class ProcessedMolecule {
         this.inchikey = inchikey;
     }
 
+    /**
+     * @return the ID of the submitted record the result belongs to
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public String getDisplaySmiles() {
         return displaySmiles;
     }
@@ -115,4 +151,8 @@ public class ProcessedMolecule {
     public void setSugarWasRemoved(boolean sugarWasRemoved) {
         this.sugarWasRemoved = sugarWasRemoved;
     }
+
+    private static <T> ArrayList<T> copyOf(ArrayList<T> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
 }
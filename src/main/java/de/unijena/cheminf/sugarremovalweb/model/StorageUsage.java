@@ -0,0 +1,90 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+/**
+ * Disk usage of the upload storage as seen by the last sweep of the storage janitor
+ */
+public class StorageUsage {
+
+    private final long usedBytes;
+
+    private final int storedCount;
+
+    private final int inUseCount;
+
+    private final long quotaBytes;
+
+    private final long usableBytes;
+
+    private final long evictedCount;
+
+    private final long evictedBytes;
+
+    private final long lastSweepAt;
+
+
+    public StorageUsage(long usedBytes, int storedCount, int inUseCount, long quotaBytes, long usableBytes,
+                        long evictedCount, long evictedBytes, long lastSweepAt) {
+        this.usedBytes = usedBytes;
+        this.storedCount = storedCount;
+        this.inUseCount = inUseCount;
+        this.quotaBytes = quotaBytes;
+        this.usableBytes = usableBytes;
+        this.evictedCount = evictedCount;
+        this.evictedBytes = evictedBytes;
+        this.lastSweepAt = lastSweepAt;
+    }
+
+
+    /**
+     * @return the size of all stored files after the last sweep
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return the number of stored uploads and other files after the last sweep, an upload folder counts once
+     */
+    public int getStoredCount() {
+        return storedCount;
+    }
+
+    /**
+     * @return the number of stored uploads and result files that belong to a job and are not deleted
+     */
+    public int getInUseCount() {
+        return inUseCount;
+    }
+
+    /**
+     * @return the configured quota, 0 if there is none
+     */
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * @return the space left on the file system of the storage
+     */
+    public long getUsableBytes() {
+        return usableBytes;
+    }
+
+    /**
+     * @return the number of uploads and files deleted since the start
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * @return the time of the last sweep in milliseconds since the epoch, 0 before the first sweep
+     */
+    public long getLastSweepAt() {
+        return lastSweepAt;
+    }
+}
@@ -0,0 +1,282 @@
+package de.unijena.cheminf.sugarremovalweb.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import de.unijena.cheminf.sugarremovalweb.services.JobResultStore;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A submitted file that is processed in the background. Counters and results are updated by the job thread while
+ * the status is polled by the clients, the results are kept in the order of the submitted file.
+ */
+public class SugarRemovalJob {
+
+    private final String id;
+
+    private final String fileName;
+
+    private final long submittedAt;
+
+    private volatile long startedAt;
+
+    private volatile long finishedAt;
+
+    private volatile JobStatus status = JobStatus.QUEUED;
+
+    private volatile int totalCount = -1;
+
+    private final AtomicInteger processedCount = new AtomicInteger();
+
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private volatile int duplicateCount = 0;
+
+    private volatile String errorMessage;
+
+    private volatile String uploadChecksum;
+
+    private final boolean largeFile;
+
+    private final JobResultStore results;
+
+    private volatile Future<?> future;
+
+    /**
+     * Set when the job is removed, guarded by this
+     */
+    private boolean cancelRequested = false;
+
+    /**
+     * Whether the job thread is working on the job, guarded by this
+     */
+    private boolean running = false;
+
+    /**
+     * Exports reading the results, guarded by this
+     */
+    private int resultReaderCount = 0;
+
+    /**
+     * Set when the results are to be dropped, guarded by this
+     */
+    private boolean releaseRequested = false;
+
+
+    /**
+     * @param id
+     * @param fileName
+     * @param largeFile whether the job runs without the regular molecule limit
+     * @param results where the results of the job are kept
+     */
+    public SugarRemovalJob(String id, String fileName, boolean largeFile, JobResultStore results) {
+        this.id = id;
+        this.fileName = fileName;
+        this.largeFile = largeFile;
+        this.results = results;
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isLargeFile() {
+        return largeFile;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the number of molecules read from the file, -1 as long as the file is not read completely
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of molecules that got the result of an earlier molecule of the file with the same InChIKey
+     * instead of being processed, known when the file is read completely
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public int getResultCount() {
+        return results.size();
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public boolean isFinished() {
+        return status == JobStatus.COMPLETED || status == JobStatus.FAILED || status == JobStatus.CANCELLED;
+    }
+
+    /**
+     * @param fromIndex
+     * @param maxCount
+     * @return at most maxCount results starting at fromIndex, empty if there are none (yet)
+     */
+    public List<ProcessedMolecule> getResults(int fromIndex, int maxCount) {
+        return results.get(fromIndex, maxCount);
+    }
+
+    @JsonIgnore
+    public Future<?> getFuture() {
+        return future;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+
+    /**
+     * Called by the job thread before it works on the job
+     * @return false if the job was removed before it started, the job thread must not touch it then
+     */
+    public synchronized boolean start() {
+        if (cancelRequested) {
+            return false;
+        }
+        this.running = true;
+        this.startedAt = System.currentTimeMillis();
+        this.status = JobStatus.RUNNING;
+        return true;
+    }
+
+    /**
+     * Called by the job thread when its work on the job has returned, after the final status is set
+     * @return whether the job was removed meanwhile, the job thread releases the results then
+     */
+    public synchronized boolean end() {
+        this.running = false;
+        return cancelRequested;
+    }
+
+    /**
+     * Asks the job to stop, called when the job is removed
+     * @return true if the job thread is working on the job, it then finishes the job and releases the results
+     * itself; false if the caller has to do that
+     */
+    public synchronized boolean requestCancel() {
+        this.cancelRequested = true;
+        return running;
+    }
+
+    @JsonIgnore
+    public synchronized boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void setTotalCount(int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public void setDuplicateCount(int duplicateCount) {
+        this.duplicateCount = duplicateCount;
+    }
+
+    /**
+     * @return the hex SHA-256 of the submitted file or null if upload checksums are off
+     */
+    public String getUploadChecksum() {
+        return uploadChecksum;
+    }
+
+    public void setUploadChecksum(String uploadChecksum) {
+        this.uploadChecksum = uploadChecksum;
+    }
+
+    public void addResult(ProcessedMolecule processedMolecule) {
+        results.add(processedMolecule);
+        processedCount.incrementAndGet();
+    }
+
+    public void addFailure() {
+        failedCount.incrementAndGet();
+        processedCount.incrementAndGet();
+    }
+
+    /**
+     * Keeps the results from being dropped until {@link #returnResults()} is called, for readers that page through
+     * all of them
+     * @return false if the results are dropped already
+     */
+    public synchronized boolean acquireResults() {
+        if (releaseRequested) {
+            return false;
+        }
+        resultReaderCount++;
+        return true;
+    }
+
+    /**
+     * Ends a read started with {@link #acquireResults()}, the results are dropped now if the job was forgotten
+     * meanwhile
+     */
+    public synchronized void returnResults() {
+        resultReaderCount--;
+        if (releaseRequested && resultReaderCount == 0) {
+            results.close();
+        }
+    }
+
+    /**
+     * Drops the results, called when the job is forgotten. If they are being read, they are dropped when the last
+     * reader returns them.
+     */
+    public synchronized void releaseResults() {
+        if (releaseRequested) {
+            return;
+        }
+        releaseRequested = true;
+        if (resultReaderCount == 0) {
+            results.close();
+        }
+    }
+
+    /**
+     * Sets the final status, a job that is finished already keeps its status
+     * @param status
+     * @param errorMessage
+     */
+    public synchronized void finish(JobStatus status, String errorMessage) {
+        if (isFinished()) {
+            return;
+        }
+        this.errorMessage = errorMessage;
+        this.finishedAt = System.currentTimeMillis();
+        this.status = status;
+    }
+}
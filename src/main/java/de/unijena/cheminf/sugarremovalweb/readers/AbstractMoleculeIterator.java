@@ -0,0 +1,74 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Base of the molecule iterators: reads ahead by one molecule. Structure identities like the InChIKey are not
+ * computed while reading, see MoleculeIdentityService.
+ * The source is closed as soon as it is exhausted or fails, or when {@link #close()} is called.
+ */
+abstract class AbstractMoleculeIterator implements MoleculeIterator {
+
+    private IAtomContainer next;
+
+    private boolean finished = false;
+
+
+    /**
+     * @return the next molecule that passed the checks or null if the source is exhausted
+     * @throws IOException
+     */
+    protected abstract IAtomContainer readNext() throws IOException;
+
+    protected abstract void closeSource() throws IOException;
+
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        try {
+            next = readNext();
+        } catch (IOException ex) {
+            System.out.println("Oops ! File not found. Please check if the -in file or -out directory is correct");
+            ex.printStackTrace();
+            next = null;
+        }
+        if (next == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public IAtomContainer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        IAtomContainer molecule = next;
+        next = null;
+        return molecule;
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        next = null;
+        try {
+            closeSource();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
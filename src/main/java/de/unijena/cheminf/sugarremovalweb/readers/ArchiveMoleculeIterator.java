@@ -0,0 +1,92 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Molecules of the entries of a zip archive, which is read while the molecules are consumed. Every entry is read as
+ * a file of its own with its own format and record numbering, directories and metadata of archiving tools are
+ * skipped.
+ */
+final class ArchiveMoleculeIterator extends AbstractMoleculeIterator {
+
+    /**
+     * Opens one entry of the archive
+     */
+    interface EntryReader {
+
+        /**
+         * @param entry content of the entry, closing it does not close the archive
+         * @param entryName
+         * @return the molecules of the entry
+         * @throws IOException
+         */
+        MoleculeIterator open(InputStream entry, String entryName) throws IOException;
+    }
+
+    private final ZipInputStream archive;
+
+    private final RecordLimit limit;
+
+    private final EntryReader entryReader;
+
+    private MoleculeIterator current;
+
+
+    ArchiveMoleculeIterator(ZipInputStream archive, RecordLimit limit, EntryReader entryReader) {
+        this.archive = archive;
+        this.limit = limit;
+        this.entryReader = entryReader;
+    }
+
+
+    @Override
+    protected IAtomContainer readNext() throws IOException {
+        while (true) {
+            if (current != null) {
+                if (current.hasNext()) {
+                    return current.next();
+                }
+                current.close();
+                current = null;
+            }
+            if (limit.isReached()) {
+                return null;
+            }
+            ZipEntry entry = archive.getNextEntry();
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isDirectory() || isMetadata(entry.getName())) {
+                continue;
+            }
+            System.out.println("Reading archive entry " + entry.getName());
+            current = entryReader.open(new FilterInputStream(archive) {
+                @Override
+                public void close() {
+                    //the next entry is read from the same stream
+                }
+            }, entry.getName());
+        }
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        archive.close();
+    }
+
+
+    private static boolean isMetadata(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        return entryName.startsWith("__MACOSX/") || fileName.startsWith(".");
+    }
+}
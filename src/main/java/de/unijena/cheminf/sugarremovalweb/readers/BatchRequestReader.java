@@ -0,0 +1,145 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unijena.cheminf.sugarremovalweb.model.BatchMolecule;
+import de.unijena.cheminf.sugarremovalweb.model.SubmittedMoleculeData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a batch request while its molecules are consumed, so the request is never held in memory as a whole:
+ * <pre>{"sugarsToRemove": ["allSugars"], "molecules": [{"smiles": "OCC1OC(O)C(O)C(O)C1O", "id": "glucose"},
+ * ["C1CCCCC1OC2OC(CO)C(O)C(O)C2O", "second"], ...]}</pre>
+ * A molecule is an object with "smiles" and "id" or a pair of SMILES and ID. The removal options are needed before
+ * the first molecule, so "sugarsToRemove" has to come before "molecules"; other fields are ignored.
+ */
+public class BatchRequestReader implements Iterator<BatchMolecule>, Closeable {
+
+    private final JsonParser parser;
+
+    private final SubmittedMoleculeData submittedMoleculeData = new SubmittedMoleculeData();
+
+    private BatchMolecule next;
+
+    private boolean inMolecules = false;
+
+
+    /**
+     * Reads the request up to its first molecule
+     * @param objectMapper
+     * @param in the request body, closed with this reader
+     * @throws IOException if the request cannot be read or is not a batch request
+     */
+    public BatchRequestReader(ObjectMapper objectMapper, InputStream in) throws IOException {
+        this.parser = objectMapper.getFactory().createParser(in);
+        this.submittedMoleculeData.setSubmittedDataType("batch");
+        try {
+            readUntilMolecules();
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * @return the removal options of the request
+     */
+    public SubmittedMoleculeData getSubmittedMoleculeData() {
+        return submittedMoleculeData;
+    }
+
+    /**
+     * @throws UncheckedIOException if the request cannot be read or a molecule is malformed
+     */
+    @Override
+    public boolean hasNext() throws UncheckedIOException {
+        if (next != null) {
+            return true;
+        }
+        if (!inMolecules) {
+            return false;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                inMolecules = false;
+                return false;
+            }
+            next = readMolecule(token);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BatchMolecule next() throws UncheckedIOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BatchMolecule molecule = next;
+        next = null;
+        return molecule;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+
+    private void readUntilMolecules() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "A batch request has to be a JSON object.");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("molecules".equals(field)) {
+                if (value != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "\"molecules\" has to be an array.");
+                }
+                if (submittedMoleculeData.getSugarsToRemove() == null) {
+                    throw new JsonParseException(parser, "\"sugarsToRemove\" has to come before \"molecules\".");
+                }
+                inMolecules = true;
+                return;
+            }
+            if ("sugarsToRemove".equals(field)) {
+                submittedMoleculeData.setSugarsToRemove(parser.readValueAs(new TypeReference<ArrayList<String>>() { }));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        throw new JsonParseException(parser, "A batch request needs \"molecules\".");
+    }
+
+    private BatchMolecule readMolecule(JsonToken token) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            return parser.readValueAs(BatchMolecule.class);
+        }
+        if (token == JsonToken.START_ARRAY) {
+            String[] pair = new String[2];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == pair.length || parser.currentToken().isStructStart()) {
+                    throw new JsonParseException(parser, "A molecule pair has to be [SMILES, ID].");
+                }
+                pair[size++] = parser.getValueAsString();
+            }
+            return new BatchMolecule(pair[0], pair[1]);
+        }
+        throw new JsonParseException(parser, "A molecule has to be an object or a [SMILES, ID] pair.");
+    }
+}
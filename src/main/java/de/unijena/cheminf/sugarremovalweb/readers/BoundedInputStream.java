@@ -0,0 +1,69 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails once more than the given number of bytes were read, protects against compressed files that expand to far
+ * more data than was uploaded
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+    private final long maxBytes;
+
+    private final String name;
+
+    private long readBytes = 0L;
+
+
+    /**
+     * @param in
+     * @param maxBytes bytes that may be read, 0 or less for no limit
+     * @param name name of the content for the error message
+     */
+    BoundedInputStream(InputStream in, long maxBytes, String name) {
+        super(in);
+        this.maxBytes = maxBytes;
+        this.name = name;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read != -1) {
+            count(1);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+
+    private void count(long bytes) throws IOException {
+        readBytes += bytes;
+        if (maxBytes > 0 && readBytes > maxBytes) {
+            throw new IOException("Decompressed content of " + name + " exceeds " + maxBytes + " bytes.");
+        }
+    }
+}
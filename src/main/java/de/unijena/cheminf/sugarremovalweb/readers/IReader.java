@@ -1,13 +1,20 @@
 package de.unijena.cheminf.sugarremovalweb.readers;
 
 
-import org.openscience.cdk.interfaces.IAtomContainer;
-
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Hashtable;
+import java.io.IOException;
+import java.io.InputStream;
 
+/**
+ * Parsing step of the ingest pipeline for one file format. A reader only turns the records of the content into
+ * molecules, the {@link ReaderService} numbers, standardizes and checks them the same way for every format.
+ */
 public interface IReader {
 
-    ArrayList<IAtomContainer> readMoleculesFromFile(File file);
+    /**
+     * Starts parsing the given content; a record is parsed only when it is requested
+     * @param in content of the file, closed together with the returned records
+     * @return the records of the content
+     * @throws IOException if the content cannot be opened
+     */
+    MoleculeRecordIterator open(InputStream in) throws IOException;
 }
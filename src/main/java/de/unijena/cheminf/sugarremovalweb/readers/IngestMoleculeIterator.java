@@ -0,0 +1,82 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Ingest pipeline for one file: takes the records from the parsing step of the format, numbers them, adds the
+ * provenance properties and hands them to the standardization stage. Records that cannot be parsed or are rejected
+ * are skipped but still count against the limit.
+ */
+final class IngestMoleculeIterator extends AbstractMoleculeIterator {
+
+    static final DateTimeFormatter ACQUISITION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+    private final MoleculeRecordIterator records;
+
+    private final MoleculeFormat format;
+
+    private final String fileName;
+
+    private final String origin;
+
+    private final String acquisitionDate;
+
+    private final RecordLimit limit;
+
+    private final MoleculeStandardizer standardizer;
+
+    private int count = 1;
+
+
+    /**
+     * @param records parsed records of the file, closed with this iterator
+     * @param format format of the file
+     * @param fileName name of the file the records are labelled with
+     * @param limit number of records that may still be read, counted down by this iterator
+     * @param standardizer
+     */
+    IngestMoleculeIterator(MoleculeRecordIterator records, MoleculeFormat format, String fileName, RecordLimit limit,
+                           MoleculeStandardizer standardizer) {
+        this.records = records;
+        this.format = format;
+        this.fileName = fileName;
+        this.origin = format.getOrigin(fileName);
+        this.acquisitionDate = ACQUISITION_DATE_FORMAT.format(LocalDate.now());
+        this.limit = limit;
+        this.standardizer = standardizer;
+    }
+
+
+    @Override
+    protected IAtomContainer readNext() throws IOException {
+        while (!limit.isReached() && records.hasNextRecord()) {
+            limit.countRecord();
+            IAtomContainer molecule;
+            try {
+                molecule = standardizer.standardize(records.nextRecord(), format.getRecordLabel(fileName, count),
+                        origin, acquisitionDate);
+            } catch (CDKException ex) {
+                //record cannot be parsed
+                molecule = null;
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                molecule = null;
+            }
+            count++;
+            if (molecule != null) {
+                return molecule;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        records.close();
+    }
+}
@@ -0,0 +1,175 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits an SD file on disk at its "$$$$" lines without reading it through a stream. The file is memory-mapped in
+ * windows and scanned for the delimiter lines, a record is handed out as the byte range of the mapping and only
+ * decoded when it is parsed, on the thread parsing it.
+ */
+final class MappedRecordSplitter implements RecordSplitter {
+
+    /**
+     * Size of one mapping, files larger than this are mapped window by window
+     */
+    private static final long WINDOW_SIZE = 256L * 1024L * 1024L;
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    /**
+     * Position of the current window in the file
+     */
+    private long windowStart = 0L;
+
+    private MappedByteBuffer window;
+
+    /**
+     * Start of the next record in the current window
+     */
+    private int position = 0;
+
+
+    MappedRecordSplitter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = map(0L, WINDOW_SIZE);
+    }
+
+
+    @Override
+    public CharSequence nextRecord() throws IOException {
+        while (true) {
+            int end = findRecordEnd(position);
+            if (end >= 0) {
+                return slice(end);
+            }
+            long windowEnd = windowStart + window.limit();
+            if (windowEnd >= size) {
+                //the last record may lack its delimiter
+                return isBlank(position, window.limit()) ? null : slice(window.limit());
+            }
+            //the record continues behind the window, map the next one from its start on, larger if it did not fit
+            long length = position == 0 ? window.limit() * 2L : WINDOW_SIZE;
+            windowStart += position;
+            window = map(windowStart, length);
+            position = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private MappedByteBuffer map(long start, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+    }
+
+    /**
+     * @param from start of the record in the window
+     * @return the position behind the delimiter line of the record or -1 if it is not in the window
+     */
+    private int findRecordEnd(int from) {
+        int limit = window.limit();
+        int lineStart = from;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && window.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == limit && windowStart + limit < size) {
+                //the line is cut off by the window
+                return -1;
+            }
+            if (isDelimiterLine(lineStart, lineEnd)) {
+                return Math.min(lineEnd + 1, limit);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return -1;
+    }
+
+    private boolean isDelimiterLine(int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && isWhitespace(window.get(i))) {
+            i++;
+        }
+        for (int j = 0; j < SDFReader.RECORD_DELIMITER.length(); j++, i++) {
+            if (i >= lineEnd || window.get(i) != '$') {
+                return false;
+            }
+        }
+        while (i < lineEnd && isWhitespace(window.get(i))) {
+            i++;
+        }
+        return i == lineEnd;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(window.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private CharSequence slice(int end) {
+        ByteBuffer duplicate = window.duplicate();
+        duplicate.position(position);
+        duplicate.limit(end);
+        position = end;
+        return new ByteRangeRecord(duplicate.slice());
+    }
+
+
+    /**
+     * A record as a range of the mapped file, decoded on first use
+     */
+    private static final class ByteRangeRecord implements CharSequence {
+
+        private final ByteBuffer bytes;
+
+        private String decoded;
+
+        private ByteRangeRecord(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (decoded == null) {
+                decoded = StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+            }
+            return decoded;
+        }
+    }
+}
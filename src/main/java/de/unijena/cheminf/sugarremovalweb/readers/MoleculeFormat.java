@@ -0,0 +1,77 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * File formats accepted by the ingest pipeline. A format only brings its parsing step and how its records are named,
+ * everything after parsing is the same for all formats.
+ */
+public enum MoleculeFormat {
+
+    MOL(SDFReader::new, ".mol", ".molfile"),
+
+    SDF(SDFReader::new, ".sdf", ".sd"),
+
+    SMILES(SMILESReader::new, ".smi", ".smiles", ".ism", ".can");
+
+    private final Supplier<IReader> readerFactory;
+
+    private final String[] extensions;
+
+
+    MoleculeFormat(Supplier<IReader> readerFactory, String... extensions) {
+        this.readerFactory = readerFactory;
+        this.extensions = extensions;
+    }
+
+
+    /**
+     * @return a new parsing step for this format
+     */
+    public IReader createReader() {
+        return readerFactory.get();
+    }
+
+    /**
+     * @param fileName
+     * @param recordNumber number of the record in the file, starting with 1
+     * @return the MOL_NUMBER_IN_FILE of the record
+     */
+    public String getRecordLabel(String fileName, int recordNumber) {
+        if (this == MOL) {
+            return getOrigin(fileName) + "#" + recordNumber;
+        }
+        return fileName + " " + recordNumber;
+    }
+
+    /**
+     * @param fileName
+     * @return the FILE_ORIGIN of the records, the file name without the extension of this format
+     */
+    public String getOrigin(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lowerCaseName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * @param fileName
+     * @return the format the extension of the file name stands for or null if it is none of the accepted ones
+     */
+    public static MoleculeFormat forFileName(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (MoleculeFormat format : values()) {
+            for (String extension : format.extensions) {
+                if (lowerCaseName.endsWith(extension)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,158 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the format of a file from its first bytes instead of its name. MOL and SD files are recognised by the
+ * counts line or the end line of the first record, SMILES files by their first line consisting of a SMILES string and
+ * an optional name. The file name extension is only consulted if the content matches none of the formats and to tell
+ * a single-record SD file from a MOL file.
+ */
+public final class MoleculeFormatDetector {
+
+    /**
+     * Compression of a file, recognised by the magic number at its beginning
+     */
+    public enum Compression {
+        NONE,
+        GZIP,
+        ZIP
+    }
+
+    /**
+     * Number of bytes inspected, enough for the header of a molfile and several SMILES lines
+     */
+    public static final int SNIFF_LENGTH = 8192;
+
+    private static final Pattern SMILES_TOKEN = Pattern.compile("[A-Za-z0-9@+\\-\\[\\]()=#$:.*%/\\\\~&^]+");
+
+
+    private MoleculeFormatDetector() {
+    }
+
+
+    /**
+     * Inspects the magic number at the beginning of the given stream without consuming it
+     * @param in stream positioned at the beginning of the file, has to support mark and reset
+     * @return the compression of the content
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not support mark and reset
+     */
+    public static Compression detectCompression(InputStream in) throws IOException, IllegalArgumentException {
+        byte[] head = new byte[4];
+        int length = peek(in, head);
+        if (length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+            return Compression.GZIP;
+        }
+        if (length == 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            return Compression.ZIP;
+        }
+        return Compression.NONE;
+    }
+
+    /**
+     * Inspects the beginning of the given stream without consuming it
+     * @param in stream positioned at the beginning of the file, has to support mark and reset
+     * @param fileName name of the file, only consulted if the content is not recognised
+     * @return the detected format or null if the file is in none of the accepted formats
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not support mark and reset
+     */
+    public static MoleculeFormat detect(InputStream in, String fileName) throws IOException, IllegalArgumentException {
+        byte[] head = new byte[SNIFF_LENGTH];
+        int length = peek(in, head);
+        return detect(head, length, fileName);
+    }
+
+    /**
+     * @param head the first bytes of the file
+     * @param length number of valid bytes in head
+     * @param fileName name of the file, only consulted if the content is not recognised, may be null
+     * @return the detected format or null if the file is in none of the accepted formats
+     */
+    public static MoleculeFormat detect(byte[] head, int length, String fileName) {
+        MoleculeFormat byName = fileName == null ? null : MoleculeFormat.forFileName(fileName);
+        MoleculeFormat format = detectContent(head, length, byName);
+        return format == null ? byName : format;
+    }
+
+
+    private static int peek(InputStream in, byte[] head) throws IOException, IllegalArgumentException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Given stream does not support mark and reset.");
+        }
+        in.mark(head.length);
+        int length = 0;
+        try {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+        } finally {
+            in.reset();
+        }
+        return length;
+    }
+
+    private static MoleculeFormat detectContent(byte[] head, int length, MoleculeFormat byName) {
+        for (int i = 0; i < length; i++) {
+            if (head[i] == 0) {
+                //binary content
+                return null;
+            }
+        }
+        String[] lines = new String(head, 0, length, StandardCharsets.ISO_8859_1).split("\r?\n|\r", -1);
+        //the last line may be cut off if the file is longer than the inspected part
+        int completeLines = length == head.length ? lines.length - 1 : lines.length;
+        boolean molfile = completeLines > 3 && isCountsLine(lines[3]);
+        boolean sdfDelimiter = false;
+        boolean multipleRecords = false;
+        for (int i = 0; i < completeLines; i++) {
+            String line = lines[i].trim();
+            if (line.equals("M  END")) {
+                molfile = true;
+            } else if (line.equals("$$$$")) {
+                sdfDelimiter = true;
+            } else if (sdfDelimiter && !line.isEmpty()) {
+                multipleRecords = true;
+            }
+        }
+        if (molfile) {
+            //MOL and SD files only differ in how their records are labelled, a single record keeps the name's format
+            if (multipleRecords || byName == MoleculeFormat.SDF) {
+                return MoleculeFormat.SDF;
+            }
+            return MoleculeFormat.MOL;
+        }
+        for (int i = 0; i < completeLines; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.contains("smiles")) {
+                continue;
+            }
+            return isSmilesLine(line) ? MoleculeFormat.SMILES : null;
+        }
+        return null;
+    }
+
+    private static boolean isCountsLine(String line) {
+        String trimmed = line.trim();
+        return trimmed.endsWith("V2000") || trimmed.endsWith("V3000");
+    }
+
+    private static boolean isSmilesLine(String line) {
+        String token = line.split("\\s+", 2)[0];
+        if (!SMILES_TOKEN.matcher(token).matches()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (Character.isLetter(c) || c == '*') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
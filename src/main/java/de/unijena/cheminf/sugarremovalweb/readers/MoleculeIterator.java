@@ -0,0 +1,31 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Molecules of a file that are read one at a time, while they are consumed. Has to be closed to release the file.
+ */
+public interface MoleculeIterator extends Iterator<IAtomContainer>, Closeable {
+
+    @Override
+    void close();
+
+    /**
+     * @return an iterator without molecules
+     */
+    static MoleculeIterator empty() {
+        return new AbstractMoleculeIterator() {
+            @Override
+            protected IAtomContainer readNext() {
+                return null;
+            }
+
+            @Override
+            protected void closeSource() {
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Records of a file in one format, parsed one at a time. A record that cannot be parsed is reported with an exception
+ * and skipped, the next call continues with the following record.
+ */
+public interface MoleculeRecordIterator extends Closeable {
+
+    /**
+     * @return whether there is another record
+     * @throws IOException if the content cannot be read
+     */
+    boolean hasNextRecord() throws IOException;
+
+    /**
+     * @return the molecule of the next record as it was parsed, never null
+     * @throws CDKException if the record cannot be parsed
+     */
+    IAtomContainer nextRecord() throws CDKException;
+}
@@ -0,0 +1,78 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import de.unijena.cheminf.sugarremovalweb.misc.MoleculeChecker;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Standardization stage of the ingest pipeline, applied to the parsed molecules of every format: adds the provenance
+ * properties, assigns an ID if the record has none and runs the {@link MoleculeChecker}. Shared by all requests and
+ * ingest threads, it keeps no state.
+ */
+@Service
+public class MoleculeStandardizer {
+
+    private final MoleculeChecker moleculeChecker;
+
+
+    @Autowired
+    public MoleculeStandardizer(MoleculeChecker moleculeChecker) {
+        this.moleculeChecker = moleculeChecker;
+    }
+
+
+    /**
+     * @param molecule a parsed record of a file
+     * @param recordLabel MOL_NUMBER_IN_FILE of the record
+     * @param origin FILE_ORIGIN of the record
+     * @param acquisitionDate ACQUISITION_DATE of the record
+     * @return the standardized molecule, which may be a different instance, or null if it is rejected
+     */
+    public IAtomContainer standardize(IAtomContainer molecule, String recordLabel, String origin,
+                                      String acquisitionDate) {
+        molecule.setProperty("MOL_NUMBER_IN_FILE", recordLabel);
+        molecule.setProperty("FILE_ORIGIN", origin);
+        molecule.setProperty("ACQUISITION_DATE", acquisitionDate);
+        return standardize(molecule);
+    }
+
+    /**
+     * @param molecule a parsed molecule
+     * @return the standardized molecule, which may be a different instance, or null if it is rejected
+     */
+    public IAtomContainer standardize(IAtomContainer molecule) {
+        assignIdIfMissing(molecule);
+        return moleculeChecker.checkMolecule(molecule);
+    }
+
+
+    /**
+     * ID workaround: takes the ID from the last property whose name contains "id" or generates one from the
+     * molecular formula
+     * @param molecule
+     */
+    private static void assignIdIfMissing(IAtomContainer molecule) {
+        if (!isMissing(molecule.getID())) {
+            return;
+        }
+        for (Map.Entry<Object, Object> property : molecule.getProperties().entrySet()) {
+            if (property.getKey().toString().toLowerCase().contains("id")) {
+                molecule.setID(property.getValue() == null ? null : property.getValue().toString());
+            }
+        }
+        if (isMissing(molecule.getID())) {
+            String id = UUID.randomUUID().toString().substring(0, 3).toUpperCase() + "-("
+                    + MolecularFormulaManipulator.getString(MolecularFormulaManipulator.getMolecularFormula(molecule)) + ")";
+            molecule.setID(id);
+        }
+    }
+
+    private static boolean isMissing(String id) {
+        return id == null || id.isEmpty();
+    }
+}
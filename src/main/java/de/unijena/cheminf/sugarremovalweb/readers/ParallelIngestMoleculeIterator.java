@@ -0,0 +1,155 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Ingest pipeline for one file whose records are parsed on several threads. The records are split off the file in
+ * chunks on the consuming thread, where they are also numbered, and every chunk is parsed and standardized on the
+ * ingest thread pool. The molecules are returned in the order of the file, at most the given number of chunks is
+ * parsed ahead.
+ */
+final class ParallelIngestMoleculeIterator extends AbstractMoleculeIterator {
+
+    private final RecordSplitter splitter;
+
+    private final SplittableReader reader;
+
+    private final MoleculeFormat format;
+
+    private final String fileName;
+
+    private final String origin;
+
+    private final String acquisitionDate;
+
+    private final RecordLimit limit;
+
+    private final MoleculeStandardizer standardizer;
+
+    private final ExecutorService executor;
+
+    private final int chunkSize;
+
+    private final int maxChunksInFlight;
+
+    private final ArrayDeque<Future<List<IAtomContainer>>> window;
+
+    private Iterator<IAtomContainer> current = Collections.emptyIterator();
+
+    private boolean split = false;
+
+    private int count = 1;
+
+
+    /**
+     * @param splitter records of the file, closed with this iterator
+     * @param reader parses the records
+     * @param format format of the file
+     * @param fileName name of the file the records are labelled with
+     * @param limit number of records that may still be read, counted down while the records are split
+     * @param standardizer
+     * @param executor ingest thread pool
+     * @param chunkSize number of records parsed in one task
+     * @param maxChunksInFlight number of chunks parsed ahead of the consumer
+     */
+    ParallelIngestMoleculeIterator(RecordSplitter splitter, SplittableReader reader, MoleculeFormat format,
+                                   String fileName, RecordLimit limit, MoleculeStandardizer standardizer,
+                                   ExecutorService executor, int chunkSize, int maxChunksInFlight) {
+        this.splitter = splitter;
+        this.reader = reader;
+        this.format = format;
+        this.fileName = fileName;
+        this.origin = format.getOrigin(fileName);
+        this.acquisitionDate = IngestMoleculeIterator.ACQUISITION_DATE_FORMAT.format(LocalDate.now());
+        this.limit = limit;
+        this.standardizer = standardizer;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+        this.window = new ArrayDeque<>(this.maxChunksInFlight);
+    }
+
+
+    @Override
+    protected IAtomContainer readNext() throws IOException {
+        while (true) {
+            if (current.hasNext()) {
+                return current.next();
+            }
+            while (!split && window.size() < maxChunksInFlight) {
+                submitChunk();
+            }
+            Future<List<IAtomContainer>> chunk = window.poll();
+            if (chunk == null) {
+                return null;
+            }
+            try {
+                current = chunk.get().iterator();
+            } catch (ExecutionException e) {
+                //the standardization of single records is guarded, so this is unexpected
+                e.getCause().printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    @Override
+    protected void closeSource() throws IOException {
+        for (Future<List<IAtomContainer>> chunk : window) {
+            chunk.cancel(true);
+        }
+        window.clear();
+        current = Collections.emptyIterator();
+        splitter.close();
+    }
+
+
+    private void submitChunk() throws IOException {
+        List<CharSequence> records = new ArrayList<>(chunkSize);
+        int firstNumber = count;
+        CharSequence record;
+        while (records.size() < chunkSize && !limit.isReached() && (record = splitter.nextRecord()) != null) {
+            limit.countRecord();
+            records.add(record);
+            count++;
+        }
+        if (records.size() < chunkSize) {
+            split = true;
+        }
+        if (!records.isEmpty()) {
+            window.add(executor.submit(() -> parseChunk(records, firstNumber)));
+        }
+    }
+
+    private List<IAtomContainer> parseChunk(List<CharSequence> records, int firstNumber) {
+        List<IAtomContainer> molecules = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                IAtomContainer molecule = standardizer.standardize(reader.parseRecord(records.get(i)),
+                        format.getRecordLabel(fileName, firstNumber + i), origin, acquisitionDate);
+                if (molecule != null) {
+                    molecules.add(molecule);
+                }
+            } catch (CDKException ex) {
+                //record cannot be parsed
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return molecules;
+    }
+}
@@ -1,25 +1,32 @@
 package de.unijena.cheminf.sugarremovalweb.readers;
 
 
-import org.openscience.cdk.interfaces.IAtomContainer;
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Hashtable;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 
 @Service
 public class ReaderService {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-
-    public ArrayList<IAtomContainer> readMolecules;
-
-    public File molecularFile;
-
-    private String submittedFileFormat ;
+    /**
+     * An archive or gzip file inside another one is read, anything nested deeper is skipped
+     */
+    private static final int MAX_ARCHIVE_DEPTH = 2;
 
 
 
@@ -33,70 +40,175 @@ public class ReaderService {
 
 
 
-    public boolean startService(String file){
-        this.molecularFile = new File(file);
+    @Autowired
+    SugarRemovalProperties sugarRemovalProperties;
 
-        System.out.println("\n\n Working on: "+this.molecularFile.getAbsolutePath() + "\n\n");
-
-        boolean acceptFileFormat = acceptFile(molecularFile.getName());
-
-        if(acceptFileFormat){
-            return true;
-        }
-        else{
-            return false;
-        }
-    }
+    @Autowired
+    MoleculeStandardizer moleculeStandardizer;
 
+    @Autowired
+    @Qualifier("sugarRemovalIngestExecutor")
+    ExecutorService ingestExecutor;
 
 
 
+    /**
+     * Opens the given file for lazy reading, at most the configured number of molecules per file is read.
+     * @param file
+     * @return the molecules of the file, empty if the file format is not accepted or the file cannot be opened
+     */
+    public MoleculeIterator readMoleculesFromFile(String file){
+        return readMoleculesFromFile(file, false);
+    }
 
-    private boolean acceptFile(String filename) {
-        filename = filename.toLowerCase();
-        if (filename.endsWith("sdf") || filename.toLowerCase().contains("sdf".toLowerCase())) {
-            this.submittedFileFormat="sdf";
-            return true;
-        } else if (filename.endsWith("smi")  ||
-                filename.toLowerCase().contains("smi".toLowerCase()) ||
-                filename.toLowerCase().contains("smiles".toLowerCase()) ||
-                filename.toLowerCase().contains("smile".toLowerCase())) {
-            this.submittedFileFormat="smi";
-            return true;
-        } else if (filename.endsWith("json")) {
-            return false;
+    /**
+     * Opens the given file for lazy reading. The format is detected from the content of the file, the records are
+     * parsed by the reader of the format and standardized the same way for every format. The service is shared by
+     * all requests, so everything needed for one file is kept in the returned iterator, which has to be closed by the
+     * caller.
+     * @param file
+     * @param largeFile whether the large-file limit applies instead of the regular one
+     * @return the molecules of the file, empty if the file format is not accepted or the file cannot be opened
+     */
+    public MoleculeIterator readMoleculesFromFile(String file, boolean largeFile){
+        File molecularFile = new File(file);
+
+        System.out.println("\n\n Working on: "+molecularFile.getAbsolutePath() + "\n\n");
+
+        int maxMolecules = getMaxMolecules(largeFile);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(molecularFile);
+            return open(in, molecularFile.getName(), molecularFile.toPath(), new RecordLimit(maxMolecules), 0);
+        } catch (IOException ex) {
+            System.out.println("Oops ! File not found. Please check if the -in file or -out directory is correct");
+            ex.printStackTrace();
+            closeQuietly(in);
+            return MoleculeIterator.empty();
         }
-        else if (filename.endsWith("mol")  ||
-                filename.toLowerCase().contains("mol".toLowerCase())
-                || filename.toLowerCase().contains("molfile".toLowerCase())) {
-            this.submittedFileFormat="mol";
-            return true;
-        }
-
+    }
 
-        return false;
+    /**
+     * Reads the molecules of an upload straight from the multipart stream, without storing it first. The multipart
+     * file stays readable until the request has completed, also for asynchronous responses.
+     * @param file
+     * @param largeFile whether the large-file limit applies instead of the regular one
+     * @return the molecules of the upload, empty if its format is not accepted or it cannot be read
+     */
+    public MoleculeIterator readMolecules(MultipartFile file, boolean largeFile){
+        System.out.println("\n\n Working on upload: " + file.getOriginalFilename() + "\n\n");
+
+        InputStream in = null;
+        try {
+            in = file.getInputStream();
+            return readMolecules(in, file.getOriginalFilename(), getMaxMolecules(largeFile));
+        } catch (IOException ex) {
+            System.out.println("Oops ! The upload cannot be read.");
+            ex.printStackTrace();
+            closeQuietly(in);
+            return MoleculeIterator.empty();
+        }
     }
 
+    /**
+     * Reads the molecules of the given content lazily. Gzip compressed content and zip archives are decompressed
+     * while they are parsed, the decompressed data is never written to disk. Every entry of an archive is read as a
+     * file of its own, the limit applies to all entries together.
+     * @param in content of the file, closed with the returned iterator
+     * @param name name of the file, labels the records and helps the format detection
+     * @param maxMolecules number of records read at most, 0 or less for all
+     * @return the molecules of the content, empty if its format is not accepted
+     * @throws IOException if the content cannot be read
+     */
+    public MoleculeIterator readMolecules(InputStream in, String name, int maxMolecules) throws IOException {
+        return open(in, name, null, new RecordLimit(maxMolecules), 0);
+    }
 
-    public void doWorkWithFile(){
 
-        IReader reader = null;
-        if(this.submittedFileFormat.equals("mol")){
-            reader = new MOLReader();
-        }
-        else if(this.submittedFileFormat.equals("sdf")){
-            reader = new SDFReader();
+    /**
+     * @param file the file on disk the content is read from, null if it is not a plain file
+     */
+    private MoleculeIterator open(InputStream in, String name, Path file, RecordLimit limit, int depth)
+            throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        boolean opened = false;
+        try {
+            MoleculeFormatDetector.Compression compression = MoleculeFormatDetector.detectCompression(buffered);
+            if (compression != MoleculeFormatDetector.Compression.NONE && depth >= MAX_ARCHIVE_DEPTH) {
+                System.out.println("Skipping nested archive " + name);
+                return MoleculeIterator.empty();
+            }
+            long maxBytes = sugarRemovalProperties.getMaxDecompressedMegabytes() * 1024L * 1024L;
+            MoleculeIterator molecules;
+            switch (compression) {
+                case GZIP:
+                    molecules = open(new BoundedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), maxBytes, name),
+                            removeGzipExtension(name), null, limit, depth + 1);
+                    break;
+                case ZIP:
+                    molecules = new ArchiveMoleculeIterator(new ZipInputStream(buffered), limit, (entry, entryName) ->
+                            open(new BoundedInputStream(entry, maxBytes, entryName), entryName, null, limit,
+                                    depth + 1));
+                    break;
+                default:
+                    MoleculeFormat format = MoleculeFormatDetector.detect(buffered, name);
+                    if (format == null) {
+                        System.out.println("Unknown format of " + name);
+                        return MoleculeIterator.empty();
+                    }
+                    IReader reader = format.createReader();
+                    int ingestThreads = sugarRemovalProperties.getEffectiveIngestThreads();
+                    if (reader instanceof SplittableReader && ingestThreads > 1) {
+                        SplittableReader splittableReader = (SplittableReader) reader;
+                        RecordSplitter splitter;
+                        if (file != null) {
+                            //the reader accesses the file directly, e.g. memory-mapped
+                            buffered.close();
+                            splitter = splittableReader.split(file);
+                        } else {
+                            splitter = splittableReader.split(buffered);
+                        }
+                        molecules = new ParallelIngestMoleculeIterator(splitter,
+                                splittableReader, format, name, limit, moleculeStandardizer, ingestExecutor,
+                                sugarRemovalProperties.getIngestChunkRecords(), ingestThreads * 2);
+                    } else {
+                        molecules = new IngestMoleculeIterator(reader.open(buffered), format, name, limit,
+                                moleculeStandardizer);
+                    }
+            }
+            opened = true;
+            return molecules;
+        } finally {
+            if (!opened) {
+                closeQuietly(buffered);
+            }
         }
-        else if(this.submittedFileFormat.equals("smi")){
-            reader = new SMILESReader();
-        }
-
-        this.readMolecules = reader.readMoleculesFromFile(this.molecularFile);
-
     }
 
+    private int getMaxMolecules(boolean largeFile) {
+        return largeFile ? sugarRemovalProperties.getLargeFileMaxMolecules()
+                : sugarRemovalProperties.getMaxMoleculesPerFile();
+    }
 
+    private static String removeGzipExtension(String name) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if (lowerCaseName.endsWith(".gz")) {
+            return name.substring(0, name.length() - 3);
+        }
+        if (lowerCaseName.endsWith(".gzip")) {
+            return name.substring(0, name.length() - 5);
+        }
+        return name;
+    }
 
-    public ArrayList<IAtomContainer> getReadMolecules(){return readMolecules; }
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
 }
@@ -0,0 +1,28 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+/**
+ * Number of records that may still be read from one upload, shared by all files of an archive
+ */
+final class RecordLimit {
+
+    private final int maxRecords;
+
+    private int recordCount = 0;
+
+
+    /**
+     * @param maxRecords number of records read at most, 0 or less for all
+     */
+    RecordLimit(int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+
+    boolean isReached() {
+        return maxRecords > 0 && recordCount >= maxRecords;
+    }
+
+    void countRecord() {
+        recordCount++;
+    }
+}
@@ -0,0 +1,17 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Records of a file as text, split off one at a time. A record may be a view of the file that is only decoded when it
+ * is read.
+ */
+public interface RecordSplitter extends Closeable {
+
+    /**
+     * @return the next record or null if the content is exhausted
+     * @throws IOException if the content cannot be read
+     */
+    CharSequence nextRecord() throws IOException;
+}
@@ -2,115 +2,76 @@ package de.unijena.cheminf.sugarremovalweb.readers;
 
 
 
-import de.unijena.cheminf.sugarremovalweb.misc.BeanUtil;
-import de.unijena.cheminf.sugarremovalweb.misc.MoleculeChecker;
-import net.sf.jniinchi.INCHI_OPTION;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.inchi.InChIGenerator;
-import org.openscience.cdk.inchi.InChIGeneratorFactory;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.io.iterator.IteratingSDFReader;
-import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.List;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 /**
  * @author mSorok
- * Reads SDF files, processes the molecules and inserts in database
+ * Parses SD files and single MOL files. The records are split off at their "$$$$" lines and parsed one by one, on the
+ * reading thread or on several threads, a file on disk is then scanned memory-mapped. A record that cannot be parsed
+ * is skipped but keeps its number.
  */
-public class SDFReader implements IReader {
+public class SDFReader implements SplittableReader {
 
-    ArrayList<IAtomContainer> molecules;
-    MoleculeChecker moleculeChecker;
+    static final String RECORD_DELIMITER = "$$$$";
 
-
-    public SDFReader() {
-        this.molecules = new ArrayList<>();
-        moleculeChecker = BeanUtil.getBean(MoleculeChecker.class);
-    }
+    /**
+     * Parses single records; CDK readers are not thread-safe, reusing them keeps their MDL readers
+     */
+    private static final ThreadLocal<IteratingSDFReader> RECORD_READER = ThreadLocal.withInitial(
+            () -> new IteratingSDFReader(new StringReader(""), DefaultChemObjectBuilder.getInstance()));
 
     @Override
-    public ArrayList<IAtomContainer> readMoleculesFromFile(File file) {
-        int count = 1;
-        MolecularFormulaManipulator mfm = new MolecularFormulaManipulator();
-        try {
-            IteratingSDFReader reader = new IteratingSDFReader(new FileInputStream(file), DefaultChemObjectBuilder.getInstance());
-            reader.setSkip(true);
+    public RecordSplitter split(InputStream in) {
+        BufferedReader sdfReader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
 
-            while (reader.hasNext() && count <= 1000) {
-                try {
-                    IAtomContainer molecule = reader.next();
+        return new RecordSplitter() {
 
-                    molecule.setProperty("MOL_NUMBER_IN_FILE", file.getName() + " " + Integer.toString(count));
-                    molecule.setProperty("FILE_ORIGIN", file.getName().replace(".sdf", ""));
-                    DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd");
-                    LocalDate localDate = LocalDate.now();
-                    molecule.setProperty("ACQUISITION_DATE", dtf.format(localDate));
-
-                    // ID workaround
-                    String id = "";
-                    if (molecule.getID() == "" || molecule.getID() == null) {
-                        for (Object p : molecule.getProperties().keySet()) {
-                            if (p.toString().toLowerCase().contains("id")) {
-                                molecule.setID(molecule.getProperty(p.toString()));
-                                id = molecule.getProperty(p.toString());
-                            }
-                        }
-                        if (molecule.getID() == "" || molecule.getID() == null) {
-                            UUID uidlong = UUID.randomUUID();
-                            id = uidlong.toString().substring(0, 3).toUpperCase() + "-(" + mfm.getString(mfm.getMolecularFormula(molecule)) + ")";
-                            molecule.setID(id);
-                        }
+            @Override
+            public CharSequence nextRecord() throws IOException {
+                StringBuilder record = new StringBuilder(4096);
+                boolean blank = true;
+                String line;
+                while ((line = sdfReader.readLine()) != null) {
+                    record.append(line).append('\n');
+                    if (line.trim().equals(RECORD_DELIMITER)) {
+                        return record;
                     }
-                    molecule = moleculeChecker.checkMolecule(molecule);
-                    if (molecule != null) {
-                        try {
-                            List options = new ArrayList();
-                            options.add(INCHI_OPTION.SNon);
-                            options.add(INCHI_OPTION.ChiralFlagOFF);
-                            options.add(INCHI_OPTION.AuxNone);
-                            InChIGenerator gen = InChIGeneratorFactory.getInstance().getInChIGenerator(molecule, options);
-
-                            molecule.setProperty("INCHIKEY", gen.getInchiKey());
-                        } catch (CDKException e) {
-                            Integer totalBonds = molecule.getBondCount();
-                            Integer ib = 0;
-                            while (ib < totalBonds) {
-
-                                IBond b = molecule.getBond(ib);
-                                if (b.getOrder() == IBond.Order.UNSET) {
-                                    b.setOrder(IBond.Order.SINGLE);
-                                }
-                                ib++;
-                            }
-                            List options = new ArrayList();
-                            options.add(INCHI_OPTION.SNon);
-                            options.add(INCHI_OPTION.ChiralFlagOFF);
-                            options.add(INCHI_OPTION.AuxNone);
-                            InChIGenerator gen = InChIGeneratorFactory.getInstance().getInChIGenerator(molecule, options);
-                            molecule.setProperty("INCHIKEY", gen.getInchiKey());
-                        }
-                        this.molecules.add( molecule);
-                    }
-                } catch (Exception ex) {
-                    //ex.printStackTrace();
+                    blank = blank && line.trim().isEmpty();
                 }
-                count++;
+                //the last record may lack its delimiter
+                return blank ? null : record;
+            }
+
+            @Override
+            public void close() throws IOException {
+                sdfReader.close();
             }
-        } catch (IOException ex) {
-            System.out.println("Oops ! File not found. Please check if the -in file or -out directory is correct");
-            ex.printStackTrace();
+        };
+    }
+
+    @Override
+    public RecordSplitter split(Path file) throws IOException {
+        return new MappedRecordSplitter(file);
+    }
+
+    @Override
+    public IAtomContainer parseRecord(CharSequence record) throws CDKException {
+        IteratingSDFReader reader = RECORD_READER.get();
+        reader.setReader(new StringReader(record.toString()));
+        if (!reader.hasNext()) {
+            throw new CDKException("Record cannot be parsed.");
         }
-        return this.molecules;
+        return reader.next();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reader of a format whose records can be split off the content as text without parsing them. The records are split
+ * on one thread and can then be parsed on several.
+ */
+public interface SplittableReader extends IReader {
+
+    /**
+     * Parses the records split off the content one after the other, so a file is read record by record on one thread
+     * exactly like it is split for several threads, including the records that cannot be parsed
+     */
+    @Override
+    default MoleculeRecordIterator open(InputStream in) throws IOException {
+        RecordSplitter splitter = split(in);
+
+        return new MoleculeRecordIterator() {
+
+            private CharSequence record;
+
+            @Override
+            public boolean hasNextRecord() throws IOException {
+                if (record == null) {
+                    record = splitter.nextRecord();
+                }
+                return record != null;
+            }
+
+            @Override
+            public IAtomContainer nextRecord() throws CDKException {
+                CharSequence next = record;
+                record = null;
+                return parseRecord(next);
+            }
+
+            @Override
+            public void close() throws IOException {
+                splitter.close();
+            }
+        };
+    }
+
+    /**
+     * @param in content of the file, closed together with the returned splitter
+     * @return the records of the content as text, in the order of the file
+     * @throws IOException if the content cannot be opened
+     */
+    RecordSplitter split(InputStream in) throws IOException;
+
+    /**
+     * Splits a file on disk, readers may access the file more efficiently than through a stream
+     * @param file
+     * @return the records of the file as text, in the order of the file
+     * @throws IOException if the file cannot be opened
+     */
+    default RecordSplitter split(Path file) throws IOException {
+        return split(new BufferedInputStream(Files.newInputStream(file)));
+    }
+
+    /**
+     * Parses one record split off by this reader, may be called from several threads at once
+     * @param record
+     * @return the parsed molecule, never null
+     * @throws CDKException if the record cannot be parsed
+     */
+    IAtomContainer parseRecord(CharSequence record) throws CDKException;
+}
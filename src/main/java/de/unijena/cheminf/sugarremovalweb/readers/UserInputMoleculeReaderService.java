@@ -1,17 +1,37 @@
 package de.unijena.cheminf.sugarremovalweb.readers;
 
+import de.unijena.cheminf.sugarremovalweb.model.SubmittedMoleculeData;
+import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
+import java.time.LocalDate;
 import java.util.Calendar;
 
+/**
+ * Reads the molecules typed or drawn by the user. They are parsed in memory by the reader of their format and
+ * standardized like the records of uploaded files, with the provenance they got when they were written to a file.
+ */
 @Service
 public class UserInputMoleculeReaderService {
 
+    private final MoleculeStandardizer moleculeStandardizer;
+
+    private final SplittableReader smilesReader = (SplittableReader) MoleculeFormat.SMILES.createReader();
+
+    private final SplittableReader molReader = (SplittableReader) MoleculeFormat.MOL.createReader();
+
+
+    @Autowired
+    public UserInputMoleculeReaderService(MoleculeStandardizer moleculeStandardizer) {
+        this.moleculeStandardizer = moleculeStandardizer;
+    }
+
+
     public boolean verifySMILES(String smiles){
 
         if(smiles.equals("")){
@@ -32,74 +52,84 @@ public class UserInputMoleculeReaderService {
     }
 
 
-
-    public String transformToSMI(String smiles){
-
-        String localSmiFile = "upload-dir/pasted_molecule_"+ Calendar.getInstance().getTime().getTime()+".smi";
-
-        smiles = smiles.replaceAll("\\r|\\n", "");
-
-        smiles = smiles + " "+"UI_"+Calendar.getInstance().getTime().getTime();
-
-        try {
-
-
-            File f = new File(localSmiFile);
-            f.createNewFile();
-
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter( new FileOutputStream(f)));
-
-            bw.write(smiles);
-            bw.newLine();
-
-            bw.close();
-
-
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Reads the molecule of a JSON submission, a molfile if the data string contains one and a SMILES otherwise
+     * @param submittedMoleculeData
+     * @return the standardized molecule or null if the standardization rejects it
+     * @throws CDKException if the data string cannot be parsed
+     */
+    public IAtomContainer readMolecule(SubmittedMoleculeData submittedMoleculeData) throws CDKException {
+        String dataString = submittedMoleculeData.getDataString();
+        if (dataString == null) {
+            throw new CDKException("No molecule submitted.");
         }
-
-        return localSmiFile;
+        if (dataString.contains("M  END")) {
+            return readMolfile(dataString);
+        }
+        return readSmiles(dataString);
     }
 
+    /**
+     * Parses a pasted SMILES like a line of a SMILES file, a name after the SMILES becomes the ID
+     * @param smiles
+     * @return the standardized molecule or null if the standardization rejects it
+     * @throws CDKException if the SMILES cannot be parsed
+     */
+    public IAtomContainer readSmiles(String smiles) throws CDKException {
+        //remove the weird characters
+        String record = smiles.replaceAll("\\r|\\n", "").replace("\"", "").replace("'", "").trim();
+        if (record.isEmpty()) {
+            throw new CDKException("No SMILES submitted.");
+        }
+        long time = Calendar.getInstance().getTime().getTime();
+        IAtomContainer molecule = smilesReader.parseRecord(record);
+        if (molecule.getID() == null) {
+            molecule.setID("UI_" + time);
+        }
+        String fileName = "pasted_molecule_" + time + ".smi";
+        return standardize(molecule, MoleculeFormat.SMILES.getRecordLabel(fileName, 1),
+                MoleculeFormat.SMILES.getOrigin(fileName));
+    }
 
-    public String transformToMOL(String jsonMol){
-        String localMolFile = "upload-dir/sketched_molecule_"+ Calendar.getInstance().getTime().getTime()+".mol";
-        System.out.println(localMolFile);
-
-        jsonMol = jsonMol.replace("\"", "");
-        jsonMol = jsonMol.replace("\\n", "@");
-
-        String [] lines = jsonMol.split("@");
-        System.out.println(lines[0]);
-
-        System.out.println(lines);
-
-        try {
-            File f = new File(localMolFile);
-            //f.getParentFile().mkdirs();
-            f.createNewFile();
-
-
-            FileOutputStream fos = new FileOutputStream(f);
-
-            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-
-            for (int i = 0; i < lines.length; i++) {
-                bw.write(lines[i]);
-                bw.newLine();
-            }
-
-            bw.close();
-
-
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Parses a SMILES of a batch request, labelled like the line of a SMILES file
+     * @param smiles
+     * @param id the submitted ID, null to let the standardization assign one
+     * @param origin name of the batch
+     * @param recordNumber position of the molecule in the batch, starting with 1
+     * @return the standardized molecule or null if the standardization rejects it
+     * @throws CDKException if the SMILES cannot be parsed
+     */
+    public IAtomContainer readSmiles(String smiles, String id, String origin, int recordNumber) throws CDKException {
+        if (smiles == null || smiles.trim().isEmpty()) {
+            throw new CDKException("No SMILES submitted.");
+        }
+        IAtomContainer molecule = smilesReader.parseRecord(smiles.trim());
+        if (id != null) {
+            molecule.setID(id);
         }
+        return standardize(molecule, MoleculeFormat.SMILES.getRecordLabel(origin, recordNumber), origin);
+    }
 
-        return  localMolFile;
+    /**
+     * Parses a drawn molecule. The molfile may still be JSON-encoded, with quotes and escaped line breaks.
+     * @param molfile
+     * @return the standardized molecule or null if the standardization rejects it
+     * @throws CDKException if the molfile cannot be parsed
+     */
+    public IAtomContainer readMolfile(String molfile) throws CDKException {
+        String record = molfile.replace("\"", "").replace("\\n", "\n");
+        long time = Calendar.getInstance().getTime().getTime();
+        IAtomContainer molecule = molReader.parseRecord(record);
+        String fileName = "sketched_molecule_" + time + ".mol";
+        return standardize(molecule, MoleculeFormat.MOL.getRecordLabel(fileName, 1),
+                MoleculeFormat.MOL.getOrigin(fileName));
+    }
 
 
+    private IAtomContainer standardize(IAtomContainer molecule, String recordLabel, String origin) {
+        return moleculeStandardizer.standardize(molecule, recordLabel, origin,
+                IngestMoleculeIterator.ACQUISITION_DATE_FORMAT.format(LocalDate.now()));
     }
 
 }
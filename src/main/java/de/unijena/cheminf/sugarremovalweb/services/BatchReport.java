@@ -0,0 +1,124 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import java.util.Locale;
+
+/**
+ * Throughput figures of one batch of molecules processed by the {@link ParallelBatchProcessor}
+ */
+public final class BatchReport {
+
+    private final int submittedCount;
+    private final int resultCount;
+    private final int duplicateCount;
+    private final int workerThreads;
+    private final long wallTimeNanos;
+    private final long busyTimeNanos;
+
+
+    public BatchReport(int submittedCount, int resultCount, int workerThreads, long wallTimeNanos, long busyTimeNanos) {
+        this(submittedCount, resultCount, 0, workerThreads, wallTimeNanos, busyTimeNanos);
+    }
+
+    /**
+     * @param submittedCount
+     * @param resultCount
+     * @param duplicateCount molecules that got the result of an earlier molecule with the same structure
+     * @param workerThreads
+     * @param wallTimeNanos
+     * @param busyTimeNanos
+     */
+    public BatchReport(int submittedCount, int resultCount, int duplicateCount, int workerThreads, long wallTimeNanos,
+                       long busyTimeNanos) {
+        this.submittedCount = submittedCount;
+        this.resultCount = resultCount;
+        this.duplicateCount = duplicateCount;
+        this.workerThreads = workerThreads;
+        this.wallTimeNanos = wallTimeNanos;
+        this.busyTimeNanos = busyTimeNanos;
+    }
+
+
+    public int getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    /**
+     * @return the number of molecules that were not processed because an earlier molecule of the batch has the same
+     * structure
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return the number of distinct structures the removal actually ran on
+     */
+    public int getUniqueCount() {
+        return submittedCount - duplicateCount;
+    }
+
+    /**
+     * @return the fraction of the submitted molecules that did not need a removal run of their own
+     */
+    public double getDeduplicationRatio() {
+        if (submittedCount <= 0) {
+            return 0.0;
+        }
+        return (double) duplicateCount / submittedCount;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public long getWallTimeMillis() {
+        return wallTimeNanos / 1_000_000L;
+    }
+
+    /**
+     * @return the time all workers spent on the molecules of the batch, summed up
+     */
+    public long getBusyTimeMillis() {
+        return busyTimeNanos / 1_000_000L;
+    }
+
+    public double getMoleculesPerSecond() {
+        if (wallTimeNanos <= 0) {
+            return 0.0;
+        }
+        return submittedCount / (wallTimeNanos / 1_000_000_000.0);
+    }
+
+    /**
+     * @return busy time divided by wall time, i.e. the speedup over processing the batch on a single thread
+     */
+    public double getSpeedup() {
+        if (wallTimeNanos <= 0) {
+            return 0.0;
+        }
+        return (double) busyTimeNanos / wallTimeNanos;
+    }
+
+    /**
+     * @return the speedup divided by the number of worker threads
+     */
+    public double getEfficiency() {
+        if (workerThreads <= 0) {
+            return 0.0;
+        }
+        return getSpeedup() / workerThreads;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d molecules (%d results, %d duplicates, %.0f%% of removal runs saved) in %d ms on %d threads: "
+                        + "%.1f mol/s, speedup %.2f, efficiency %.0f%%",
+                submittedCount, resultCount, duplicateCount, getDeduplicationRatio() * 100.0, getWallTimeMillis(),
+                workerThreads, getMoleculesPerSecond(), getSpeedup(), getEfficiency() * 100.0);
+    }
+}
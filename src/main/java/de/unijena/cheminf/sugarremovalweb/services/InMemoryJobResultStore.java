@@ -0,0 +1,39 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the results of a job on the heap, used for files within the regular molecule limit
+ */
+public class InMemoryJobResultStore implements JobResultStore {
+
+    private final List<ProcessedMolecule> results = new ArrayList<>();
+
+
+    @Override
+    public synchronized void add(ProcessedMolecule processedMolecule) {
+        results.add(processedMolecule);
+    }
+
+    @Override
+    public synchronized int size() {
+        return results.size();
+    }
+
+    @Override
+    public synchronized List<ProcessedMolecule> get(int fromIndex, int maxCount) {
+        if (fromIndex < 0 || fromIndex >= results.size() || maxCount <= 0) {
+            return new ArrayList<>();
+        }
+        int toIndex = (int) Math.min((long) fromIndex + maxCount, results.size());
+        return new ArrayList<>(results.subList(fromIndex, toIndex));
+    }
+
+    @Override
+    public synchronized void close() {
+        results.clear();
+    }
+}
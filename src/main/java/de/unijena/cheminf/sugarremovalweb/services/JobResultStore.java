@@ -0,0 +1,28 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.util.List;
+
+/**
+ * Results of a job in the order they were added. Written by the job thread and read by the polling requests at the
+ * same time.
+ */
+public interface JobResultStore {
+
+    void add(ProcessedMolecule processedMolecule);
+
+    int size();
+
+    /**
+     * @param fromIndex
+     * @param maxCount
+     * @return at most maxCount results starting at fromIndex, empty if there are none (yet)
+     */
+    List<ProcessedMolecule> get(int fromIndex, int maxCount);
+
+    /**
+     * Releases the resources of the store, it must not be used afterwards
+     */
+    void close();
+}
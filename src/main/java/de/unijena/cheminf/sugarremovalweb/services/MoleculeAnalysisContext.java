@@ -0,0 +1,166 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.ringsearch.RingSearch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes what the sugar detection derives from one molecule: the adjacency list, the ring search, the primitive
+ * {@link MoleculeGraph} and the potential sugar cycles. Each of these is computed at most once per state of the
+ * molecule. The sugar removal only changes the molecule by removing atoms and with them their bonds, so the state is
+ * tracked by the atom and bond counts and everything is discarded as soon as one of them changes.
+ * <br>The context counts how often a value had to be computed and how often it was reused. It must not be shared
+ * between threads.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public class MoleculeAnalysisContext {
+
+    private final IAtomContainer molecule;
+
+    private int atomCount;
+
+    private int bondCount;
+
+    private int[][] adjacencyList;
+
+    private RingSearch ringSearch;
+
+    private MoleculeGraph graph;
+
+    /**
+     * The potential sugar cycles only depend on the reference ring sugars, so they are kept for the last pattern set
+     */
+    private SugarReferencePatterns potentialSugarCyclesPatterns;
+
+    private List<IAtomContainer> potentialSugarCycles;
+
+    private long computationCount;
+
+    private long reuseCount;
+
+    private long invalidationCount;
+
+
+    /**
+     * @param aMolecule the molecule to analyse, the context follows its changes
+     * @throws NullPointerException if the molecule is null
+     */
+    public MoleculeAnalysisContext(IAtomContainer aMolecule) throws NullPointerException {
+        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        this.molecule = aMolecule;
+        this.atomCount = aMolecule.getAtomCount();
+        this.bondCount = aMolecule.getBondCount();
+    }
+
+
+    public IAtomContainer getMolecule() {
+        return this.molecule;
+    }
+
+    public int[][] getAdjacencyList() {
+        this.checkState();
+        if (Objects.isNull(this.adjacencyList)) {
+            this.computationCount++;
+            this.adjacencyList = GraphUtil.toAdjList(this.molecule);
+        } else {
+            this.reuseCount++;
+        }
+        return this.adjacencyList;
+    }
+
+    public RingSearch getRingSearch() {
+        this.checkState();
+        if (Objects.isNull(this.ringSearch)) {
+            //also counts the computation of the adjacency list if it is not there yet
+            this.ringSearch = new RingSearch(this.molecule, this.getAdjacencyList());
+            this.computationCount++;
+        } else {
+            this.reuseCount++;
+        }
+        return this.ringSearch;
+    }
+
+    public MoleculeGraph getGraph() {
+        this.checkState();
+        if (Objects.isNull(this.graph)) {
+            this.computationCount++;
+            this.graph = new MoleculeGraph(this.molecule);
+        } else {
+            this.reuseCount++;
+        }
+        return this.graph;
+    }
+
+    /**
+     * @param aPatterns the reference patterns the cycles are determined with
+     * @param aComputation determines the potential sugar cycles of the molecule in its current state
+     * @return the memoized potential sugar cycles, unmodifiable
+     * @throws NullPointerException if one of the arguments is null
+     */
+    public List<IAtomContainer> getPotentialSugarCycles(SugarReferencePatterns aPatterns,
+                                                        Supplier<List<IAtomContainer>> aComputation)
+            throws NullPointerException {
+        Objects.requireNonNull(aPatterns, "Given patterns are 'null'.");
+        Objects.requireNonNull(aComputation, "Given computation is 'null'.");
+        this.checkState();
+        if (Objects.isNull(this.potentialSugarCycles) || this.potentialSugarCyclesPatterns != aPatterns) {
+            this.computationCount++;
+            this.potentialSugarCycles = Collections.unmodifiableList(aComputation.get());
+            this.potentialSugarCyclesPatterns = aPatterns;
+        } else {
+            this.reuseCount++;
+        }
+        return this.potentialSugarCycles;
+    }
+
+    /**
+     * @return how often a value had to be computed
+     */
+    public long getComputationCount() {
+        return this.computationCount;
+    }
+
+    /**
+     * @return how often a value computed before was returned again
+     */
+    public long getReuseCount() {
+        return this.reuseCount;
+    }
+
+    /**
+     * @return how often the memoized values were discarded because the molecule changed
+     */
+    public long getInvalidationCount() {
+        return this.invalidationCount;
+    }
+
+
+    /**
+     * Discards all memoized values if atoms or bonds have been removed since they were computed.
+     */
+    private void checkState() {
+        int tmpAtomCount = this.molecule.getAtomCount();
+        int tmpBondCount = this.molecule.getBondCount();
+        if (tmpAtomCount == this.atomCount && tmpBondCount == this.bondCount) {
+            return;
+        }
+        this.atomCount = tmpAtomCount;
+        this.bondCount = tmpBondCount;
+        if (Objects.nonNull(this.adjacencyList) || Objects.nonNull(this.ringSearch) || Objects.nonNull(this.graph)
+                || Objects.nonNull(this.potentialSugarCycles)) {
+            this.invalidationCount++;
+        }
+        this.adjacencyList = null;
+        this.ringSearch = null;
+        this.graph = null;
+        this.potentialSugarCycles = null;
+        this.potentialSugarCyclesPatterns = null;
+    }
+}
@@ -0,0 +1,244 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.config.Elements;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact primitive form of one state of a molecule for the sugar detection checks. The molecule is translated once
+ * into int adjacency arrays with the bond order of every adjacency entry and the atomic number of every atom.
+ * Substructures are represented as BitSets of atom indices, so that comparing them and testing atoms for membership
+ * does not allocate.
+ * <br>The graph has to be recreated whenever atoms or bonds of the molecule change and must not be shared between
+ * threads.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public class MoleculeGraph {
+
+    private final IAtomContainer molecule;
+
+    /**
+     * Atoms are looked up by equality, like IAtomContainer.contains() does, so that atom references of other
+     * containers resolve to the same index as the atoms of the molecule
+     */
+    private final HashMap<IAtom, Integer> atomIndices;
+
+    private final int[][] adjacency;
+
+    /**
+     * Numeric order of the bond behind every entry of the adjacency arrays, 0 for bonds with an unset order
+     */
+    private final int[][] bondOrders;
+
+    private final int[] atomicNumbers;
+
+    private final int[] stack;
+
+
+    /**
+     * @param aMolecule the molecule in its current state
+     * @throws NullPointerException if the molecule is null
+     * @throws IllegalArgumentException if a bond of the molecule connects an atom that is not part of it
+     */
+    public MoleculeGraph(IAtomContainer aMolecule) throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        this.molecule = aMolecule;
+        int tmpAtomCount = aMolecule.getAtomCount();
+        this.atomIndices = new HashMap<>(tmpAtomCount * 2);
+        this.atomicNumbers = new int[tmpAtomCount];
+        for (int i = 0; i < tmpAtomCount; i++) {
+            IAtom tmpAtom = aMolecule.getAtom(i);
+            this.atomIndices.put(tmpAtom, i);
+            this.atomicNumbers[i] = MoleculeGraph.atomicNumberOf(tmpAtom);
+        }
+        int tmpBondCount = aMolecule.getBondCount();
+        int[] tmpDegrees = new int[tmpAtomCount];
+        int[] tmpBegins = new int[tmpBondCount];
+        int[] tmpEnds = new int[tmpBondCount];
+        int[] tmpOrders = new int[tmpBondCount];
+        for (int i = 0; i < tmpBondCount; i++) {
+            IBond tmpBond = aMolecule.getBond(i);
+            int tmpBegin = this.indexOf(tmpBond.getBegin());
+            int tmpEnd = this.indexOf(tmpBond.getEnd());
+            if (tmpBegin < 0 || tmpEnd < 0) {
+                throw new IllegalArgumentException("A bond of the given molecule connects an atom that is not part of it.");
+            }
+            tmpBegins[i] = tmpBegin;
+            tmpEnds[i] = tmpEnd;
+            //same semantics as BondManipulator.getMaximumBondOrder(), unset orders never count as higher than single
+            tmpOrders[i] = Objects.isNull(tmpBond.getOrder()) ? 0 : tmpBond.getOrder().numeric();
+            tmpDegrees[tmpBegin]++;
+            tmpDegrees[tmpEnd]++;
+        }
+        this.adjacency = new int[tmpAtomCount][];
+        this.bondOrders = new int[tmpAtomCount][];
+        for (int i = 0; i < tmpAtomCount; i++) {
+            this.adjacency[i] = new int[tmpDegrees[i]];
+            this.bondOrders[i] = new int[tmpDegrees[i]];
+            tmpDegrees[i] = 0;
+        }
+        for (int i = 0; i < tmpBondCount; i++) {
+            int tmpBegin = tmpBegins[i];
+            int tmpEnd = tmpEnds[i];
+            this.bondOrders[tmpBegin][tmpDegrees[tmpBegin]] = tmpOrders[i];
+            this.adjacency[tmpBegin][tmpDegrees[tmpBegin]++] = tmpEnd;
+            this.bondOrders[tmpEnd][tmpDegrees[tmpEnd]] = tmpOrders[i];
+            this.adjacency[tmpEnd][tmpDegrees[tmpEnd]++] = tmpBegin;
+        }
+        this.stack = new int[tmpAtomCount];
+    }
+
+
+    public IAtomContainer getMolecule() {
+        return this.molecule;
+    }
+
+    public int getAtomCount() {
+        return this.adjacency.length;
+    }
+
+    public IAtom getAtom(int anIndex) {
+        return this.molecule.getAtom(anIndex);
+    }
+
+    /**
+     * @param anAtom
+     * @return the index of the given atom in the molecule or -1 if it is not part of it
+     */
+    public int indexOf(IAtom anAtom) {
+        Integer tmpIndex = this.atomIndices.get(anAtom);
+        return Objects.isNull(tmpIndex) ? -1 : tmpIndex;
+    }
+
+    /**
+     * @param anAtom
+     * @return true if the given atom object is part of the molecule
+     */
+    public boolean contains(IAtom anAtom) {
+        return this.atomIndices.containsKey(anAtom);
+    }
+
+    /**
+     * @param aSubstructure
+     * @return true if all atoms of the given substructure are part of the molecule
+     */
+    public boolean containsAll(IAtomContainer aSubstructure) {
+        for (IAtom tmpAtom : aSubstructure.atoms()) {
+            if (!this.contains(tmpAtom)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param anIndex
+     * @return the indices of the neighbours of the given atom, the returned array must not be modified
+     */
+    public int[] getNeighbors(int anIndex) {
+        return this.adjacency[anIndex];
+    }
+
+    /**
+     * @param anIndex
+     * @return the numeric bond orders in the same order as the neighbours of the given atom, 0 for unset orders, the
+     * returned array must not be modified
+     */
+    public int[] getBondOrders(int anIndex) {
+        return this.bondOrders[anIndex];
+    }
+
+    public int getDegree(int anIndex) {
+        return this.adjacency[anIndex].length;
+    }
+
+    public int getAtomicNumber(int anIndex) {
+        return this.atomicNumbers[anIndex];
+    }
+
+    /**
+     * @param aSubstructure
+     * @return the indices of the atoms of the given substructure, atoms that are not part of the molecule are ignored
+     * @throws NullPointerException if the substructure is null
+     */
+    public BitSet toAtomSet(IAtomContainer aSubstructure) throws NullPointerException {
+        Objects.requireNonNull(aSubstructure, "Given substructure is 'null'.");
+        BitSet tmpAtomSet = new BitSet(this.adjacency.length);
+        for (IAtom tmpAtom : aSubstructure.atoms()) {
+            int tmpIndex = this.indexOf(tmpAtom);
+            if (tmpIndex >= 0) {
+                tmpAtomSet.set(tmpIndex);
+            }
+        }
+        return tmpAtomSet;
+    }
+
+    /**
+     * Labels the connected components of the molecule without the given atoms. Removed atoms are labelled with -1.
+     * @param aRemovedAtoms
+     * @param aComponentOfAtom receives the label of every atom, must be at least as long as the atom count
+     * @return the number of components
+     */
+    public int labelComponentsWithout(BitSet aRemovedAtoms, int[] aComponentOfAtom) {
+        int tmpAtomCount = this.adjacency.length;
+        for (int i = 0; i < tmpAtomCount; i++) {
+            aComponentOfAtom[i] = aRemovedAtoms.get(i) ? -1 : Integer.MAX_VALUE;
+        }
+        int tmpComponentCount = 0;
+        for (int tmpStart = 0; tmpStart < tmpAtomCount; tmpStart++) {
+            if (aComponentOfAtom[tmpStart] != Integer.MAX_VALUE) {
+                continue;
+            }
+            int tmpStackSize = 0;
+            this.stack[tmpStackSize++] = tmpStart;
+            aComponentOfAtom[tmpStart] = tmpComponentCount;
+            while (tmpStackSize > 0) {
+                int tmpAtom = this.stack[--tmpStackSize];
+                for (int tmpNeighbor : this.adjacency[tmpAtom]) {
+                    if (aComponentOfAtom[tmpNeighbor] == Integer.MAX_VALUE) {
+                        aComponentOfAtom[tmpNeighbor] = tmpComponentCount;
+                        this.stack[tmpStackSize++] = tmpNeighbor;
+                    }
+                }
+            }
+            tmpComponentCount++;
+        }
+        return tmpComponentCount;
+    }
+
+    /**
+     * @param aComponentOfAtom labels as produced by labelComponentsWithout()
+     * @param aComponentCount
+     * @return one atom container per labelled component, holding the atoms of the molecule, not copies, and no bonds
+     */
+    public List<IAtomContainer> buildComponents(int[] aComponentOfAtom, int aComponentCount) {
+        List<IAtomContainer> tmpComponents = new ArrayList<>(aComponentCount);
+        for (int i = 0; i < aComponentCount; i++) {
+            tmpComponents.add(this.molecule.getBuilder().newAtomContainer());
+        }
+        for (int i = 0; i < this.adjacency.length; i++) {
+            if (aComponentOfAtom[i] >= 0) {
+                tmpComponents.get(aComponentOfAtom[i]).addAtom(this.molecule.getAtom(i));
+            }
+        }
+        return tmpComponents;
+    }
+
+
+    private static int atomicNumberOf(IAtom anAtom) {
+        Integer tmpAtomicNumber = anAtom.getAtomicNumber();
+        if (Objects.nonNull(tmpAtomicNumber)) {
+            return tmpAtomicNumber;
+        }
+        return Objects.isNull(anAtom.getSymbol()) ? 0 : Elements.ofString(anAtom.getSymbol()).number();
+    }
+}
@@ -0,0 +1,174 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import net.sf.jniinchi.INCHI_OPTION;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.inchi.InChIGenerator;
+import org.openscience.cdk.inchi.InChIGeneratorFactory;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Structure identity of the molecules read from files, used to recognise records with the same structure. The
+ * identity is only computed when a feature asks for it and is then kept in the properties of the molecule, so the
+ * readers do not pay for it up front.
+ * <br>The strategy decides how expensive the identity is: the InChIKey needs a JNI call to the InChI library, the
+ * SMILES hash only the unique SMILES that the sugar removal generates anyway and that is kept for it.
+ */
+@Service
+public class MoleculeIdentityService {
+
+    public enum Strategy {
+        /**
+         * No identity, records are never recognised as the same structure
+         */
+        NONE,
+        /**
+         * SHA-256 of the unique SMILES, i.e. without stereo and isotope information like the results
+         */
+        SMILES_HASH,
+        /**
+         * Standard InChIKey without stereo information, also recognises some tautomers as the same structure
+         */
+        INCHIKEY
+    }
+
+    /**
+     * Property holding the identity of a molecule once it was computed
+     */
+    public static final String IDENTITY_PROPERTY_KEY = "sugarremoval:Identity";
+
+    /**
+     * Property holding the unique SMILES of a molecule once it was computed, read by the sugar removal
+     */
+    public static final String UNIQUE_SMILES_PROPERTY_KEY = "sugarremoval:UniqueSmiles";
+
+    /**
+     * SMILES generators are not thread-safe
+     */
+    private static final ThreadLocal<SmilesGenerator> SMILES_GENERATOR =
+            ThreadLocal.withInitial(() -> new SmilesGenerator(SmiFlavor.Unique));
+
+    private final Strategy strategy;
+
+
+    @Autowired
+    public MoleculeIdentityService(SugarRemovalProperties properties) {
+        this(properties.getIdentityStrategy());
+    }
+
+    public MoleculeIdentityService(Strategy strategy) {
+        this.strategy = strategy == null ? Strategy.NONE : strategy;
+    }
+
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Computes the identity of the given molecule according to the strategy, or returns the one computed before
+     * @param molecule
+     * @return the identity or null if the strategy is NONE or the identity cannot be computed
+     */
+    public String getIdentity(IAtomContainer molecule) {
+        if (strategy == Strategy.NONE) {
+            return null;
+        }
+        String identity = molecule.getProperty(IDENTITY_PROPERTY_KEY);
+        if (identity != null) {
+            return identity;
+        }
+        try {
+            if (strategy == Strategy.INCHIKEY) {
+                identity = getInchikey(molecule);
+            } else {
+                identity = sha256(getUniqueSmiles(molecule));
+            }
+        } catch (CDKException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (identity != null) {
+            molecule.setProperty(IDENTITY_PROPERTY_KEY, identity);
+        }
+        return identity;
+    }
+
+    /**
+     * @param molecule
+     * @return the unique SMILES of the molecule, generated on the first call
+     * @throws CDKException if the SMILES cannot be generated
+     */
+    public String getUniqueSmiles(IAtomContainer molecule) throws CDKException {
+        String smiles = molecule.getProperty(UNIQUE_SMILES_PROPERTY_KEY);
+        if (smiles == null) {
+            smiles = SMILES_GENERATOR.get().create(molecule);
+            molecule.setProperty(UNIQUE_SMILES_PROPERTY_KEY, smiles);
+        }
+        return smiles;
+    }
+
+    /**
+     * Sets the INCHIKEY property on the first call, unset bond orders are set to single if the first attempt fails
+     * @param molecule
+     * @return the InChIKey of the molecule or null if the InChI library gave none
+     * @throws CDKException if the InChI cannot be generated at all
+     */
+    public String getInchikey(IAtomContainer molecule) throws CDKException {
+        String inchikey = molecule.getProperty(SugarRemovalService.INCHIKEY_PROPERTY_KEY);
+        if (inchikey != null) {
+            return inchikey;
+        }
+        try {
+            InChIGenerator gen = InChIGeneratorFactory.getInstance().getInChIGenerator(molecule, inchiOptions());
+            inchikey = gen.getInchiKey();
+        } catch (CDKException e) {
+            for (IBond bond : molecule.bonds()) {
+                if (bond.getOrder() == IBond.Order.UNSET) {
+                    bond.setOrder(IBond.Order.SINGLE);
+                }
+            }
+            //the unique SMILES may have been generated with the unset orders
+            molecule.removeProperty(UNIQUE_SMILES_PROPERTY_KEY);
+            InChIGenerator gen = InChIGeneratorFactory.getInstance().getInChIGenerator(molecule, inchiOptions());
+            inchikey = gen.getInchiKey();
+        }
+        if (inchikey != null) {
+            molecule.setProperty(SugarRemovalService.INCHIKEY_PROPERTY_KEY, inchikey);
+        }
+        return inchikey;
+    }
+
+
+    private static List<INCHI_OPTION> inchiOptions() {
+        List<INCHI_OPTION> options = new ArrayList<>();
+        options.add(INCHI_OPTION.SNon);
+        options.add(INCHI_OPTION.ChiralFlagOFF);
+        options.add(INCHI_OPTION.AuxNone);
+        return options;
+    }
+
+    private static String sha256(String string) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(string.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
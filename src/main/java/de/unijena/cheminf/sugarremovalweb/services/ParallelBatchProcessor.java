@@ -0,0 +1,200 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a task on every molecule of a batch on the sugar removal thread pool. At most the configured number of
+ * molecules is in flight at a time and the results are handed to the consumer in the order of the input, on the
+ * calling thread.
+ */
+@Service
+public class ParallelBatchProcessor {
+
+    private final ExecutorService executor;
+
+    private final SugarRemovalProperties properties;
+
+
+    @Autowired
+    public ParallelBatchProcessor(@Qualifier("sugarRemovalExecutor") ExecutorService executor,
+                                  SugarRemovalProperties properties) {
+        this.executor = executor;
+        this.properties = properties;
+    }
+
+
+    /**
+     * Applies the task to all molecules and passes the results that are not null to the consumer in input order. A
+     * molecule whose task fails is skipped. If the calling thread is interrupted, the remaining molecules are
+     * cancelled and the interrupt flag is restored. An exception thrown by the consumer cancels the remaining
+     * molecules as well and is passed on to the caller.
+     * @param molecules
+     * @param task
+     * @param consumer
+     * @param <R>
+     * @return the throughput figures of the batch
+     */
+    public <R> BatchReport processInOrder(Iterator<IAtomContainer> molecules,
+                                          Function<IAtomContainer, R> task,
+                                          Consumer<R> consumer) {
+        return processInOrder(molecules, task, consumer, () -> { });
+    }
+
+    /**
+     * Like {@link #processInOrder(Iterator, Function, Consumer)}, additionally calls onFailure on the calling thread
+     * for every molecule whose task failed or returned null, at the position of that molecule in the input.
+     * @param molecules
+     * @param task
+     * @param consumer
+     * @param onFailure
+     * @param <R>
+     * @return the throughput figures of the batch
+     */
+    public <R> BatchReport processInOrder(Iterator<IAtomContainer> molecules,
+                                          Function<IAtomContainer, R> task,
+                                          Consumer<R> consumer,
+                                          Runnable onFailure) {
+        return processInOrder(molecules, molecule -> null, task, (result, molecule) -> result, consumer, onFailure);
+    }
+
+    /**
+     * Like {@link #processInOrder(Iterator, Function, Consumer, Runnable)}, but runs the task only once per structure
+     * key. A molecule whose key was seen before in the batch is not submitted, it gets the result of the first
+     * molecule with that key passed through fanOut, on the calling thread, or fails if that molecule failed. The keys
+     * of the most recent structures are remembered, up to the configured limit. Molecules without a key are always
+     * processed.
+     * @param molecules
+     * @param keyFunction returns the structure key of a molecule or null
+     * @param task
+     * @param fanOut adapts the result of the first molecule with a key to a later molecule with the same key, must
+     *               not modify the given result
+     * @param consumer
+     * @param onFailure
+     * @param <R>
+     * @return the throughput figures of the batch, including the number of duplicates
+     */
+    public <R> BatchReport processInOrder(Iterator<IAtomContainer> molecules,
+                                          Function<IAtomContainer, String> keyFunction,
+                                          Function<IAtomContainer, R> task,
+                                          BiFunction<R, IAtomContainer, R> fanOut,
+                                          Consumer<R> consumer,
+                                          Runnable onFailure) {
+        Objects.requireNonNull(molecules, "Given molecules are 'null'.");
+        Objects.requireNonNull(keyFunction, "Given key function is 'null'.");
+        Objects.requireNonNull(task, "Given task is 'null'.");
+        Objects.requireNonNull(fanOut, "Given fan-out function is 'null'.");
+        Objects.requireNonNull(consumer, "Given consumer is 'null'.");
+        Objects.requireNonNull(onFailure, "Given failure callback is 'null'.");
+
+        int maxInFlight = properties.getEffectiveMaxMoleculesInFlight();
+        int maxKeys = properties.getBatchDedupMaxStructures();
+        ArrayDeque<Pending<R>> window = new ArrayDeque<>(maxInFlight);
+        LinkedHashMap<String, Future<R>> firstOccurrences = new LinkedHashMap<String, Future<R>>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<R>> eldest) {
+                return size() > maxKeys;
+            }
+        };
+        AtomicLong busyNanos = new AtomicLong();
+        int submitted = 0;
+        int duplicates = 0;
+        int results = 0;
+        long start = System.nanoTime();
+
+        try {
+            while (molecules.hasNext()) {
+                IAtomContainer molecule = molecules.next();
+                String key = maxKeys > 0 ? keyFunction.apply(molecule) : null;
+                Future<R> firstOccurrence = key == null ? null : firstOccurrences.get(key);
+                if (firstOccurrence != null) {
+                    window.add(new Pending<>(firstOccurrence, molecule));
+                    duplicates++;
+                } else {
+                    Future<R> future = executor.submit(() -> {
+                        long taskStart = System.nanoTime();
+                        try {
+                            return task.apply(molecule);
+                        } finally {
+                            busyNanos.addAndGet(System.nanoTime() - taskStart);
+                        }
+                    });
+                    if (key != null) {
+                        firstOccurrences.put(key, future);
+                    }
+                    window.add(new Pending<>(future, null));
+                }
+                submitted++;
+                if (window.size() >= maxInFlight) {
+                    results += collect(window.poll(), fanOut, consumer, onFailure);
+                }
+            }
+            while (!window.isEmpty()) {
+                results += collect(window.poll(), fanOut, consumer, onFailure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //only left over if the batch was interrupted or the consumer threw, e.g. because the client went away
+            for (Pending<R> pending : window) {
+                pending.future.cancel(true);
+            }
+        }
+
+        return new BatchReport(submitted, results, duplicates, properties.getEffectiveWorkerThreads(),
+                System.nanoTime() - start, busyNanos.get());
+    }
+
+
+    private <R> int collect(Pending<R> pending, BiFunction<R, IAtomContainer, R> fanOut, Consumer<R> consumer,
+                            Runnable onFailure) throws InterruptedException {
+        try {
+            R result = pending.future.get();
+            if (result != null && pending.duplicate != null) {
+                result = fanOut.apply(result, pending.duplicate);
+            }
+            if (result != null) {
+                consumer.accept(result);
+                return 1;
+            }
+        } catch (ExecutionException e) {
+            //the failure of the first occurrence was printed already
+            if (pending.duplicate == null) {
+                e.getCause().printStackTrace();
+            }
+        }
+        onFailure.run();
+        return 0;
+    }
+
+
+    /**
+     * Result of a molecule in the window, duplicate is the molecule if it shares the task of an earlier one
+     */
+    private static final class Pending<R> {
+
+        private final Future<R> future;
+
+        private final IAtomContainer duplicate;
+
+        private Pending(Future<R> future, IAtomContainer duplicate) {
+            this.future = future;
+            this.duplicate = duplicate;
+        }
+    }
+}
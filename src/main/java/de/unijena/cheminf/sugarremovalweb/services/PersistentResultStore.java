@@ -0,0 +1,601 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured store of finished sugar removal results on the local disk, the second level below the
+ * {@link ProcessedMoleculeCache}. Results are appended to a single file as records of key and JSON result, only the
+ * file position of every key is held in memory. The file is scanned once at startup, so results survive restarts and
+ * redeploys that keep the store location.
+ * <br>A record that was not written completely, e.g. because of a crash, ends the log and is cut off at startup.
+ * Results that were replaced by a newer record of the same key are dropped when the log is compacted; if the file
+ * outgrows the configured maximum size, the compaction drops the oldest results as well.
+ * <br>The results are encoded by the calling threads and appended by a single writer thread, so the workers of the
+ * removal never wait for the disk; until a result is appended, it is returned from memory. If the disk cannot keep up
+ * and too many results are waiting, further results are not stored. Compactions run on the writer thread as well and
+ * only hold the lock to replace the file, lookups are answered from the old file meanwhile.
+ * <br>The header carries the version of the stored results. It has to be increased whenever a change of the removal
+ * gives different results, the existing file is discarded then.
+ */
+@Service
+public class PersistentResultStore {
+
+    private static final int MAGIC = 0x53525752;
+
+    /**
+     * Increase when the results of the sugar removal change, stored results of other versions are discarded
+     */
+    private static final int RESULT_VERSION = 1;
+
+    private static final int FILE_HEADER_BYTES = 8;
+
+    /**
+     * Key length, result length, creation time in milliseconds and CRC32 of key and result
+     */
+    private static final int RECORD_HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private static final String FILE_NAME = "results.log";
+
+    /**
+     * The log is only compacted for replaced records once it is at least this large
+     */
+    private static final long MIN_COMPACTION_BYTES = 1024L * 1024L;
+
+    /**
+     * Results waiting for the writer thread, further results are not stored while the queue is full
+     */
+    private static final int MAX_PENDING_RECORDS = 4096;
+
+    /**
+     * Results appended with one write
+     */
+    private static final int MAX_RECORDS_PER_WRITE = 256;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 30L;
+
+    /**
+     * Ends the writer thread after the results queued before it are appended
+     */
+    private static final Record END_OF_QUEUE = new Record(null, null, 0L);
+
+    private final ObjectMapper objectMapper;
+
+    private final Path file;
+
+    private final long maxBytes;
+
+    private final long timeToLiveMillis;
+
+    private final HashMap<String, Location> index = new HashMap<>();
+
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>(MAX_PENDING_RECORDS);
+
+    /**
+     * Results in the queue by key, read by lookups until they are appended
+     */
+    private final ConcurrentHashMap<String, Record> pending = new ConcurrentHashMap<>();
+
+    private Thread writerThread;
+
+    private volatile boolean closing = false;
+
+    private FileChannel channel;
+
+    private long endOfLog;
+
+    /**
+     * Bytes of the records that are still referenced by the index
+     */
+    private long liveBytes;
+
+    /**
+     * Counted without the lock, so that lookups of queued results never wait for the writer thread
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private long missCount = 0L;
+
+    private long compactionCount = 0L;
+
+    private long droppedCount = 0L;
+
+    private long skippedCount = 0L;
+
+
+    @Autowired
+    public PersistentResultStore(SugarRemovalProperties properties, ObjectMapper objectMapper) {
+        this(properties.getResultStoreLocation() == null || properties.getResultStoreLocation().trim().isEmpty()
+                        ? null : Paths.get(properties.getResultStoreLocation(), FILE_NAME),
+                properties.getResultStoreMaxMegabytes() * 1024L * 1024L,
+                properties.getResultCacheTtlMinutes() * 60L * 1000L, objectMapper);
+    }
+
+    /**
+     * Opens the store and reads the positions of all stored results. If the file cannot be opened, the store stays
+     * disabled and the cause is printed.
+     * @param file the log file, null disables the store
+     * @param maxBytes maximum size of the log file, 0 disables the store
+     * @param timeToLiveMillis time after which a stored result is no longer returned, 0 for no expiry
+     * @param objectMapper
+     */
+    public PersistentResultStore(Path file, long maxBytes, long timeToLiveMillis, ObjectMapper objectMapper) {
+        this.file = file;
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.timeToLiveMillis = Math.max(0L, timeToLiveMillis);
+        this.objectMapper = objectMapper;
+        if (file == null || this.maxBytes == 0L) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            load();
+        } catch (IOException e) {
+            e.printStackTrace();
+            disable();
+            return;
+        }
+        writerThread = new Thread(this::writeQueuedRecords, "result-store-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+
+    public synchronized boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * @param key
+     * @return the stored result or null if there is none, it expired or it cannot be read
+     */
+    public ProcessedMolecule get(String key) {
+        Record pendingRecord = key == null ? null : pending.get(key);
+        byte[] record;
+        if (pendingRecord != null) {
+            record = pendingRecord.bytes;
+            hitCount.incrementAndGet();
+        } else {
+            synchronized (this) {
+                if (channel == null) {
+                    return null;
+                }
+                Location location = index.get(key);
+                if (location == null || isExpired(location)) {
+                    missCount++;
+                    return null;
+                }
+                try {
+                    record = read(channel, location.position, location.length).array();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    disable();
+                    return null;
+                }
+                hitCount.incrementAndGet();
+            }
+        }
+        try {
+            ByteBuffer header = ByteBuffer.wrap(record);
+            return objectMapper.readValue(record, RECORD_HEADER_BYTES + header.getInt(0), header.getInt(4),
+                    ProcessedMolecule.class);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Queues the given result to be appended by the writer thread, where it replaces an older result of the same key.
+     * The result is encoded right away, later changes of it are not stored.
+     * @param key
+     * @param processedMolecule
+     */
+    public void put(String key, ProcessedMolecule processedMolecule) {
+        if (writerThread == null || closing || key == null || processedMolecule == null) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] resultBytes;
+        try {
+            resultBytes = objectMapper.writeValueAsBytes(processedMolecule);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        int length = RECORD_HEADER_BYTES + keyBytes.length + resultBytes.length;
+        if (FILE_HEADER_BYTES + length > maxBytes) {
+            return;
+        }
+        long createdMillis = System.currentTimeMillis();
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(keyBytes.length).putInt(resultBytes.length).putLong(createdMillis)
+                .putInt(checksum(keyBytes, resultBytes)).put(keyBytes).put(resultBytes);
+        Record record = new Record(key, buffer.array(), createdMillis);
+        pending.put(key, record);
+        if (!queue.offer(record)) {
+            pending.remove(key, record);
+            synchronized (this) {
+                skippedCount++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the current size of the log file
+     */
+    public synchronized long getFileBytes() {
+        return channel == null ? 0L : endOfLog;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * @return the number of results dropped by compactions to stay within the maximum size
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of results that were not stored because too many results were waiting to be appended
+     */
+    public synchronized long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Appends the queued results and closes the file
+     */
+    @PreDestroy
+    public void close() {
+        closing = true;
+        if (writerThread != null) {
+            try {
+                queue.put(END_OF_QUEUE);
+                writerThread.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (channel == null) {
+            return "disabled";
+        }
+        return String.format(Locale.ROOT, "%d results (%d KB on disk), %d hits, %d misses, %d compactions, %d dropped, %d not stored",
+                index.size(), endOfLog / 1024L, hitCount.get(), missCount, compactionCount, droppedCount, skippedCount);
+    }
+
+
+    /**
+     * Loop of the writer thread: appends the queued results in batches and compacts the log when it is due
+     */
+    private void writeQueuedRecords() {
+        List<Record> batch = new ArrayList<>(MAX_RECORDS_PER_WRITE);
+        boolean ended = false;
+        while (!ended) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_RECORDS_PER_WRITE - 1);
+            int end = batch.indexOf(END_OF_QUEUE);
+            if (end >= 0) {
+                batch.subList(end, batch.size()).clear();
+                ended = true;
+            }
+            try {
+                if (append(batch)) {
+                    compact();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    disable();
+                }
+            } finally {
+                for (Record record : batch) {
+                    pending.remove(record.key, record);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Appends the given results with one write
+     * @return whether the log should be compacted now
+     */
+    private synchronized boolean append(List<Record> records) throws IOException {
+        if (channel == null || records.isEmpty()) {
+            return false;
+        }
+        int length = 0;
+        for (Record record : records) {
+            length += record.bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Record record : records) {
+            buffer.put(record.bytes);
+        }
+        buffer.flip();
+        write(buffer, endOfLog);
+        for (Record record : records) {
+            Location replaced = index.put(record.key,
+                    new Location(endOfLog, record.bytes.length, record.createdMillis));
+            if (replaced != null) {
+                liveBytes -= replaced.length;
+            }
+            liveBytes += record.bytes.length;
+            endOfLog += record.bytes.length;
+        }
+        return endOfLog > maxBytes
+                || (endOfLog >= MIN_COMPACTION_BYTES && endOfLog - FILE_HEADER_BYTES > 2 * liveBytes);
+    }
+
+    /**
+     * Builds the index from the log. A file of another version is emptied, a damaged or incomplete record and
+     * everything after it is cut off.
+     */
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < FILE_HEADER_BYTES || read(channel, 0L, FILE_HEADER_BYTES).getInt(0) != MAGIC
+                || read(channel, 0L, FILE_HEADER_BYTES).getInt(4) != RESULT_VERSION) {
+            reset();
+            return;
+        }
+        long position = FILE_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= fileSize) {
+            ByteBuffer header = read(channel, position, RECORD_HEADER_BYTES);
+            int keyLength = header.getInt(0);
+            int resultLength = header.getInt(4);
+            long length = (long) RECORD_HEADER_BYTES + keyLength + resultLength;
+            if (keyLength < 0 || resultLength < 0 || position + length > fileSize) {
+                break;
+            }
+            ByteBuffer record = read(channel, position, (int) length);
+            byte[] bytes = record.array();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, RECORD_HEADER_BYTES, keyLength + resultLength);
+            if ((int) crc.getValue() != record.getInt(16)) {
+                break;
+            }
+            String key = new String(bytes, RECORD_HEADER_BYTES, keyLength, StandardCharsets.UTF_8);
+            Location replaced = index.put(key, new Location(position, (int) length, record.getLong(8)));
+            if (replaced != null) {
+                liveBytes -= replaced.length;
+            }
+            liveBytes += length;
+            position += length;
+        }
+        endOfLog = position;
+        if (endOfLog < fileSize) {
+            System.out.println("Result store " + file + ": cut off " + (fileSize - endOfLog)
+                    + " bytes of incomplete records");
+            channel.truncate(endOfLog);
+        }
+        if (endOfLog > maxBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the current results to a new log file that replaces the old one. If the results do not fit into three
+     * quarters of the maximum size, the oldest ones are dropped, so that the next compaction is not due right away.
+     * <br>Only called by the writer thread, or before it is started, so the results cannot change meanwhile. The new
+     * file is written without holding the lock, lookups read the old file until it is replaced.
+     */
+    private void compact() throws IOException {
+        FileChannel source;
+        List<Map.Entry<String, Location>> entries;
+        long keptBytes;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            source = channel;
+            entries = new ArrayList<>(index.entrySet());
+            keptBytes = liveBytes;
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().position));
+        long targetBytes = maxBytes - maxBytes / 4;
+        int first = 0;
+        long now = System.currentTimeMillis();
+        while (first < entries.size() && (FILE_HEADER_BYTES + keptBytes > targetBytes
+                || isExpired(entries.get(first).getValue(), now))) {
+            keptBytes -= entries.get(first).getValue().length;
+            first++;
+        }
+        Path compactedFile = file.resolveSibling(FILE_NAME + ".compacting");
+        HashMap<String, Location> compactedIndex = new HashMap<>();
+        long position = FILE_HEADER_BYTES;
+        try (FileChannel compacted = FileChannel.open(compactedFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = fileHeader();
+            while (header.hasRemaining()) {
+                compacted.write(header);
+            }
+            for (Map.Entry<String, Location> entry : entries.subList(first, entries.size())) {
+                Location location = entry.getValue();
+                ByteBuffer record = read(source, location.position, location.length);
+                while (record.hasRemaining()) {
+                    compacted.write(record);
+                }
+                compactedIndex.put(entry.getKey(), new Location(position, location.length, location.createdMillis));
+                position += location.length;
+            }
+            compacted.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(compactedFile);
+            synchronized (this) {
+                if (channel != source) {
+                    //closed meanwhile
+                    return;
+                }
+            }
+            throw e;
+        }
+        synchronized (this) {
+            if (channel != source) {
+                Files.deleteIfExists(compactedFile);
+                return;
+            }
+            channel.close();
+            Files.move(compactedFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            droppedCount += first;
+            compactionCount++;
+            index.clear();
+            index.putAll(compactedIndex);
+            liveBytes = keptBytes;
+            endOfLog = position;
+        }
+    }
+
+    private void reset() throws IOException {
+        channel.truncate(0L);
+        write(fileHeader(), 0L);
+        index.clear();
+        liveBytes = 0L;
+        endOfLog = FILE_HEADER_BYTES;
+    }
+
+    private void disable() {
+        index.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        channel = null;
+    }
+
+    private boolean isExpired(Location location) {
+        return isExpired(location, System.currentTimeMillis());
+    }
+
+    private boolean isExpired(Location location, long now) {
+        return timeToLiveMillis > 0 && now - location.createdMillis > timeToLiveMillis;
+    }
+
+    private ByteBuffer read(FileChannel source, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the result store " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        header.putInt(MAGIC).putInt(RESULT_VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static int checksum(byte[] keyBytes, byte[] resultBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(resultBytes);
+        return (int) crc.getValue();
+    }
+
+
+    private static final class Record {
+
+        private final String key;
+
+        private final byte[] bytes;
+
+        private final long createdMillis;
+
+        private Record(String key, byte[] bytes, long createdMillis) {
+            this.key = key;
+            this.bytes = bytes;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    private static final class Location {
+
+        private final long position;
+
+        private final int length;
+
+        private final long createdMillis;
+
+        private Location(long position, int length, long createdMillis) {
+            this.position = position;
+            this.length = length;
+            this.createdMillis = createdMillis;
+        }
+    }
+}
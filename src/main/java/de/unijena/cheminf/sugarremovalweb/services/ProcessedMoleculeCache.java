@@ -0,0 +1,273 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Bounded in-memory cache of finished sugar removal results, keyed by the unique SMILES of the submitted molecule
+ * and the normalized removal options. Resubmitted structures are answered without running the removal again.
+ * <br>Entries are evicted in least recently used order as soon as the configured number of entries or the estimated
+ * memory limit is exceeded. Entries older than the configured time to live are dropped when they are looked up, until
+ * then they count against the limits like any other entry. The cache hands out copies, so callers may modify the
+ * returned results.
+ * <br>If a {@link PersistentResultStore} is given, every stored result is written through to it and a result that is
+ * not in memory is looked up there, so results computed before a restart are found again.
+ */
+@Service
+public class ProcessedMoleculeCache {
+
+    /**
+     * Rough heap footprint of one entry besides its strings: map node, key, result object and lists
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 256L;
+
+    private final int capacity;
+
+    private final long maxBytes;
+
+    private final long timeToLiveNanos;
+
+    /**
+     * Second level on disk, null if the results are kept in memory only
+     */
+    private final PersistentResultStore store;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes = 0L;
+
+    private long hitCount = 0L;
+
+    private long missCount = 0L;
+
+    private long evictionCount = 0L;
+
+    private long expirationCount = 0L;
+
+
+    @Autowired
+    public ProcessedMoleculeCache(SugarRemovalProperties properties, PersistentResultStore store) {
+        this(properties.getResultCacheCapacity(), properties.getResultCacheMaxMegabytes() * 1024L * 1024L,
+                properties.getResultCacheTtlMinutes() * 60L * 1_000_000_000L, store);
+    }
+
+    /**
+     * Creates a cache that keeps the results in memory only
+     * @param capacity maximum number of entries, 0 disables the cache
+     * @param maxBytes maximum estimated size of all entries, 0 for no limit
+     * @param timeToLiveNanos time after which an entry expires, 0 for no expiry
+     */
+    public ProcessedMoleculeCache(int capacity, long maxBytes, long timeToLiveNanos) {
+        this(capacity, maxBytes, timeToLiveNanos, null);
+    }
+
+    /**
+     * @param capacity maximum number of entries, 0 disables the cache including the store
+     * @param maxBytes maximum estimated size of all entries, 0 for no limit
+     * @param timeToLiveNanos time after which an entry expires, 0 for no expiry
+     * @param store results on disk below the memory, may be null
+     */
+    public ProcessedMoleculeCache(int capacity, long maxBytes, long timeToLiveNanos, PersistentResultStore store) {
+        this.capacity = Math.max(0, capacity);
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.timeToLiveNanos = Math.max(0L, timeToLiveNanos);
+        this.store = store;
+    }
+
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Builds the key of a molecule and the removal options. The options are sorted and duplicates dropped, as the
+     * removal only depends on which options are present.
+     * @param uniqueSmiles unique SMILES of the submitted molecule
+     * @param sugarsToRemove the submitted removal options
+     * @return
+     */
+    public static String createKey(String uniqueSmiles, Collection<String> sugarsToRemove) {
+        Objects.requireNonNull(uniqueSmiles, "Given SMILES is 'null'.");
+        StringBuilder key = new StringBuilder(uniqueSmiles.length() + 64).append(uniqueSmiles);
+        if (sugarsToRemove != null) {
+            for (String option : new TreeSet<>(sugarsToRemove)) {
+                key.append(' ').append(option);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param key
+     * @return a copy of the cached result or null if there is none or it expired, in memory and in the store
+     */
+    public ProcessedMolecule get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ProcessedMolecule cached;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && isExpired(entry, System.nanoTime())) {
+                remove(key);
+                expirationCount++;
+                entry = null;
+            }
+            if (entry != null) {
+                hitCount++;
+                cached = entry.result;
+            } else {
+                missCount++;
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            return new ProcessedMolecule(cached);
+        }
+        if (store == null) {
+            return null;
+        }
+        ProcessedMolecule stored = store.get(key);
+        if (stored != null) {
+            putInMemory(key, stored);
+        }
+        return stored;
+    }
+
+    /**
+     * Stores a copy of the given result in memory and in the store, evicting the least recently used entries if a
+     * limit is exceeded. Results larger than the memory limit are not kept in memory.
+     * @param key
+     * @param processedMolecule
+     */
+    public void put(String key, ProcessedMolecule processedMolecule) {
+        if (!isEnabled() || key == null || processedMolecule == null) {
+            return;
+        }
+        putInMemory(key, processedMolecule);
+        if (store != null) {
+            store.put(key, processedMolecule);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0L;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return currentBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries removed to stay within the entry or memory limit
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getExpirationCount() {
+        return expirationCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hitCount + missCount;
+        return String.format(Locale.ROOT,
+                "%d entries (%d KB), %d hits, %d misses (hit rate %.0f%%), %d evicted, %d expired; store: %s",
+                entries.size(), currentBytes / 1024L, hitCount, missCount,
+                lookups == 0 ? 0.0 : hitCount * 100.0 / lookups, evictionCount, expirationCount,
+                store == null ? "none" : store);
+    }
+
+
+    private void putInMemory(String key, ProcessedMolecule processedMolecule) {
+        ProcessedMolecule copy = new ProcessedMolecule(processedMolecule);
+        long bytes = ENTRY_OVERHEAD_BYTES + sizeOf(key) + sizeOf(copy);
+        if (maxBytes > 0 && bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            remove(key);
+            entries.put(key, new Entry(copy, bytes, System.nanoTime()));
+            currentBytes += bytes;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (eldest.hasNext() && (entries.size() > capacity || (maxBytes > 0 && currentBytes > maxBytes))) {
+                currentBytes -= eldest.next().bytes;
+                eldest.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.bytes;
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return timeToLiveNanos > 0 && now - entry.createdNanos > timeToLiveNanos;
+    }
+
+    private static long sizeOf(ProcessedMolecule processedMolecule) {
+        return sizeOf(processedMolecule.getSmiles()) + sizeOf(processedMolecule.getDisplaySmiles())
+                + sizeOf(processedMolecule.getInchikey()) + sizeOf(processedMolecule.getSubmittedDataType())
+                + sizeOf(processedMolecule.getSugarsToRemove())
+                + sizeOf(processedMolecule.getSugarMoietiesRemovedSmiles())
+                + sizeOf(processedMolecule.getDeglycosylatedMoietiesSmiles());
+    }
+
+    private static long sizeOf(List<String> list) {
+        if (list == null) {
+            return 0L;
+        }
+        long bytes = 16L + 4L * list.size();
+        for (String string : list) {
+            bytes += sizeOf(string);
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(String string) {
+        return string == null ? 0L : 40L + 2L * string.length();
+    }
+
+
+    private static final class Entry {
+
+        private final ProcessedMolecule result;
+
+        private final long bytes;
+
+        private final long createdNanos;
+
+        private Entry(ProcessedMolecule result, long bytes, long createdNanos) {
+            this.result = result;
+            this.bytes = bytes;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
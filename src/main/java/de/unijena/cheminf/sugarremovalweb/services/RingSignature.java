@@ -0,0 +1,181 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.Objects;
+
+/**
+ * Cheap invariants and a canonical code of a ring, used to recognise isolated rings that match a circular reference
+ * sugar without a full isomorphism test.
+ * <br>For simple cycles, the code is the lexicographically smallest of the atom symbol and bond sequences read along
+ * the cycle from every start atom in both directions. Two simple cycles have the same code if and only if the
+ * UniversalIsomorphismTester considers them isomorphic, because it compares atoms by symbol and bonds by order and
+ * aromaticity only. Structures that are not simple cycles get no code and have to be compared with the
+ * UniversalIsomorphismTester.
+ * <br>Instances are immutable.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public final class RingSignature {
+
+    private final int atomCount;
+
+    /**
+     * Number of atoms that are not carbon atoms
+     */
+    private final int heteroAtomCount;
+
+    /**
+     * Number of bonds that are aromatic or not single
+     */
+    private final int nonSingleBondCount;
+
+    /**
+     * Canonical code of the cycle or null if the structure is not a simple cycle
+     */
+    private final String cycleCode;
+
+
+    private RingSignature(int anAtomCount, int aHeteroAtomCount, int aNonSingleBondCount, String aCycleCode) {
+        this.atomCount = anAtomCount;
+        this.heteroAtomCount = aHeteroAtomCount;
+        this.nonSingleBondCount = aNonSingleBondCount;
+        this.cycleCode = aCycleCode;
+    }
+
+
+    /**
+     * @param aRing
+     * @return the signature of the given structure
+     * @throws NullPointerException if the structure is null
+     */
+    public static RingSignature of(IAtomContainer aRing) throws NullPointerException {
+        Objects.requireNonNull(aRing, "Given ring is 'null'.");
+        int tmpAtomCount = aRing.getAtomCount();
+        int tmpHeteroAtomCount = 0;
+        for (IAtom tmpAtom : aRing.atoms()) {
+            if (!"C".equals(tmpAtom.getSymbol())) {
+                tmpHeteroAtomCount++;
+            }
+        }
+        int tmpNonSingleBondCount = 0;
+        for (IBond tmpBond : aRing.bonds()) {
+            if (tmpBond.getFlag(CDKConstants.ISAROMATIC) || tmpBond.getOrder() != IBond.Order.SINGLE) {
+                tmpNonSingleBondCount++;
+            }
+        }
+        return new RingSignature(tmpAtomCount, tmpHeteroAtomCount, tmpNonSingleBondCount,
+                RingSignature.createCycleCode(aRing));
+    }
+
+
+    public int getAtomCount() {
+        return this.atomCount;
+    }
+
+    /**
+     * @return true if the structure is a simple cycle, i.e. if it can be compared by its signature
+     */
+    public boolean isSimpleCycle() {
+        return Objects.nonNull(this.cycleCode);
+    }
+
+    /**
+     * Compares the cheap invariants first and the canonical codes only if they agree. Both structures must be simple
+     * cycles.
+     * @param aSignature
+     * @return true if the two simple cycles are isomorphic
+     * @throws NullPointerException if the given signature is null
+     * @throws IllegalStateException if one of the structures is not a simple cycle
+     */
+    public boolean isIsomorph(RingSignature aSignature) throws NullPointerException, IllegalStateException {
+        Objects.requireNonNull(aSignature, "Given signature is 'null'.");
+        if (!this.isSimpleCycle() || !aSignature.isSimpleCycle()) {
+            throw new IllegalStateException("Only simple cycles can be compared by their signatures.");
+        }
+        return this.atomCount == aSignature.atomCount
+                && this.heteroAtomCount == aSignature.heteroAtomCount
+                && this.nonSingleBondCount == aSignature.nonSingleBondCount
+                && this.cycleCode.equals(aSignature.cycleCode);
+    }
+
+
+    /**
+     * @param aRing
+     * @return the canonical code or null if the structure is not a simple cycle of at least three atoms
+     */
+    private static String createCycleCode(IAtomContainer aRing) {
+        int tmpAtomCount = aRing.getAtomCount();
+        if (tmpAtomCount < 3 || aRing.getBondCount() != tmpAtomCount) {
+            return null;
+        }
+        //the two neighbours of every atom and the codes of the bonds to them
+        int[][] tmpNeighbors = new int[tmpAtomCount][2];
+        String[][] tmpBondCodes = new String[tmpAtomCount][2];
+        int[] tmpDegrees = new int[tmpAtomCount];
+        for (IBond tmpBond : aRing.bonds()) {
+            int tmpBegin = aRing.indexOf(tmpBond.getBegin());
+            int tmpEnd = aRing.indexOf(tmpBond.getEnd());
+            if (tmpBegin < 0 || tmpEnd < 0 || tmpBegin == tmpEnd || tmpDegrees[tmpBegin] == 2 || tmpDegrees[tmpEnd] == 2) {
+                return null;
+            }
+            String tmpBondCode = RingSignature.bondCode(tmpBond);
+            tmpNeighbors[tmpBegin][tmpDegrees[tmpBegin]] = tmpEnd;
+            tmpBondCodes[tmpBegin][tmpDegrees[tmpBegin]++] = tmpBondCode;
+            tmpNeighbors[tmpEnd][tmpDegrees[tmpEnd]] = tmpBegin;
+            tmpBondCodes[tmpEnd][tmpDegrees[tmpEnd]++] = tmpBondCode;
+        }
+        //walking along the cycle, every atom has exactly two bonds now
+        String[] tmpAtomSequence = new String[tmpAtomCount];
+        String[] tmpBondSequence = new String[tmpAtomCount];
+        int tmpPrevious = -1;
+        int tmpCurrent = 0;
+        for (int i = 0; i < tmpAtomCount; i++) {
+            if (i > 0 && tmpCurrent == 0) {
+                //the cycle closed before all atoms were visited, the structure is unconnected
+                return null;
+            }
+            int tmpNext = tmpNeighbors[tmpCurrent][0] == tmpPrevious && i > 0 ? 1 : 0;
+            tmpAtomSequence[i] = String.valueOf(aRing.getAtom(tmpCurrent).getSymbol());
+            tmpBondSequence[i] = tmpBondCodes[tmpCurrent][tmpNext];
+            tmpPrevious = tmpCurrent;
+            tmpCurrent = tmpNeighbors[tmpCurrent][tmpNext];
+        }
+        if (tmpCurrent != 0) {
+            return null;
+        }
+        String tmpSmallestCode = null;
+        for (int tmpStart = 0; tmpStart < tmpAtomCount; tmpStart++) {
+            for (int tmpDirection = 1; tmpDirection >= -1; tmpDirection -= 2) {
+                StringBuilder tmpBuilder = new StringBuilder(tmpAtomCount * 4);
+                for (int i = 0; i < tmpAtomCount; i++) {
+                    int tmpAtomIndex = Math.floorMod(tmpStart + tmpDirection * i, tmpAtomCount);
+                    //bond i connects atom i and atom i + 1 of the sequence
+                    int tmpBondIndex = tmpDirection == 1 ? tmpAtomIndex : Math.floorMod(tmpAtomIndex - 1, tmpAtomCount);
+                    tmpBuilder.append(tmpAtomSequence[tmpAtomIndex]).append('-')
+                            .append(tmpBondSequence[tmpBondIndex]).append('|');
+                }
+                String tmpCode = tmpBuilder.toString();
+                if (Objects.isNull(tmpSmallestCode) || tmpCode.compareTo(tmpSmallestCode) < 0) {
+                    tmpSmallestCode = tmpCode;
+                }
+            }
+        }
+        return tmpSmallestCode;
+    }
+
+    /**
+     * @param aBond
+     * @return "a" for aromatic bonds, the order otherwise, as the UniversalIsomorphismTester distinguishes them
+     */
+    private static String bondCode(IBond aBond) {
+        if (aBond.getFlag(CDKConstants.ISAROMATIC)) {
+            return "a";
+        }
+        return String.valueOf(aBond.getOrder());
+    }
+}
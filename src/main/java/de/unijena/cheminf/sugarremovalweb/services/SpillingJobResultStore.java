@@ -0,0 +1,110 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the results of a job to a newline-delimited JSON file instead of keeping them on the heap. Only the file
+ * offset of every result is held in memory, a page is read back from the file when it is requested.
+ * <br>The file is accessed with a {@link RandomAccessFile}, a file channel would be closed when a job thread that
+ * writes to it is interrupted, e.g. because the job is cancelled, and the results could no longer be read.
+ */
+public class SpillingJobResultStore implements JobResultStore {
+
+    private static final byte NEWLINE = '\n';
+
+    private final Path file;
+
+    private final ObjectMapper objectMapper;
+
+    private final RandomAccessFile randomAccessFile;
+
+    /**
+     * Start offset of every result, offsets[size] is the end of the file
+     */
+    private long[] offsets = new long[1024];
+
+    private int size = 0;
+
+
+    /**
+     * @param file the spill file, created or truncated
+     * @param objectMapper
+     * @throws IOException if the file cannot be created
+     */
+    public SpillingJobResultStore(Path file, ObjectMapper objectMapper) throws IOException {
+        this.file = file;
+        this.objectMapper = objectMapper;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+        this.randomAccessFile.setLength(0L);
+    }
+
+
+    @Override
+    public synchronized void add(ProcessedMolecule processedMolecule) {
+        try {
+            byte[] record = objectMapper.writeValueAsBytes(processedMolecule);
+            byte[] line = Arrays.copyOf(record, record.length + 1);
+            line[record.length] = NEWLINE;
+            long position = offsets[size];
+            randomAccessFile.seek(position);
+            randomAccessFile.write(line);
+            position += line.length;
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            size++;
+            offsets[size] = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized List<ProcessedMolecule> get(int fromIndex, int maxCount) {
+        List<ProcessedMolecule> page = new ArrayList<>();
+        if (fromIndex < 0 || fromIndex >= size || maxCount <= 0) {
+            return page;
+        }
+        int toIndex = (int) Math.min((long) fromIndex + maxCount, size);
+        try {
+            long start = offsets[fromIndex];
+            byte[] bytes = new byte[(int) (offsets[toIndex] - start)];
+            randomAccessFile.seek(start);
+            randomAccessFile.readFully(bytes);
+            for (int i = fromIndex; i < toIndex; i++) {
+                int recordStart = (int) (offsets[i] - start);
+                int recordLength = (int) (offsets[i + 1] - offsets[i]) - 1;
+                page.add(objectMapper.readValue(bytes, recordStart, recordLength, ProcessedMolecule.class));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            randomAccessFile.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the compiled reference sugar patterns. The default set is compiled once when the bean is created, custom sets
+ * are compiled on first use and cached under the key they were requested with.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+@Service
+public class SugarPatternRegistry {
+
+    private final SugarReferencePatterns defaultPatterns;
+
+    private final ConcurrentHashMap<String, SugarReferencePatterns> customPatterns;
+
+
+    public SugarPatternRegistry() {
+        this.defaultPatterns = SugarReferencePatterns.compile(SugarRemovalService.LINEAR_SUGARS_SMILES,
+                SugarRemovalService.RING_SUGARS_SMILES);
+        this.customPatterns = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * @return the patterns compiled from LINEAR_SUGARS_SMILES and RING_SUGARS_SMILES
+     */
+    public SugarReferencePatterns getDefaultPatterns() {
+        return this.defaultPatterns;
+    }
+
+    /**
+     * Returns the custom pattern set cached under the given key, compiling it from the given SMILES if it is not
+     * cached yet. The SMILES are ignored if the key is already known.
+     * @param aKey
+     * @param aLinearSugarsSmiles
+     * @param aRingSugarsSmiles
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     */
+    public SugarReferencePatterns getPatterns(String aKey, String[] aLinearSugarsSmiles, String[] aRingSugarsSmiles)
+            throws NullPointerException {
+        Objects.requireNonNull(aKey, "Given key is 'null'.");
+        Objects.requireNonNull(aLinearSugarsSmiles, "Given linear sugars array is 'null'.");
+        Objects.requireNonNull(aRingSugarsSmiles, "Given ring sugars array is 'null'.");
+        return this.customPatterns.computeIfAbsent(aKey,
+                tmpKey -> SugarReferencePatterns.compile(aLinearSugarsSmiles, aRingSugarsSmiles));
+    }
+
+    /**
+     * @param aKey
+     * @return the custom pattern set cached under the given key or null if there is none
+     */
+    public SugarReferencePatterns getPatterns(String aKey) {
+        if (Objects.isNull(aKey)) {
+            return null;
+        }
+        return this.customPatterns.get(aKey);
+    }
+
+    public void removePatterns(String aKey) {
+        if (Objects.isNull(aKey)) {
+            return;
+        }
+        this.customPatterns.remove(aKey);
+    }
+
+}
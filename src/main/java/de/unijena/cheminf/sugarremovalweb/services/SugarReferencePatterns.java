@@ -0,0 +1,146 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.DfPattern;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.manipulator.AtomContainerComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compiled set of linear and circular reference sugars. Instances are immutable and are only created through
+ * {@link #compile(String[], String[])}, so one compiled set can be used by all requests at the same time.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public final class SugarReferencePatterns {
+
+    private final List<IAtomContainer> linearSugars;
+    private final List<IAtomContainer> ringSugars;
+    private final List<DfPattern> linearSugarPatterns;
+
+    /**
+     * Signatures of the ring sugars, in the same order as the ring sugars
+     */
+    private final List<RingSignature> ringSugarSignatures;
+
+
+    private SugarReferencePatterns(List<IAtomContainer> aLinearSugars,
+                                   List<IAtomContainer> aRingSugars,
+                                   List<DfPattern> aLinearSugarPatterns,
+                                   List<RingSignature> aRingSugarSignatures) {
+        this.linearSugars = Collections.unmodifiableList(aLinearSugars);
+        this.ringSugars = Collections.unmodifiableList(aRingSugars);
+        this.linearSugarPatterns = Collections.unmodifiableList(aLinearSugarPatterns);
+        this.ringSugarSignatures = Collections.unmodifiableList(aRingSugarSignatures);
+    }
+
+
+    /**
+     * Parses the given SMILES, sorts the structures by decreasing size and builds the substructure patterns of the
+     * linear sugars and the signatures of the ring sugars. SMILES strings that cannot be parsed are skipped.
+     * @param aLinearSugarsSmiles
+     * @param aRingSugarsSmiles
+     * @return
+     * @throws NullPointerException if one of the given arrays is null
+     */
+    public static SugarReferencePatterns compile(String[] aLinearSugarsSmiles, String[] aRingSugarsSmiles)
+            throws NullPointerException {
+        Objects.requireNonNull(aLinearSugarsSmiles, "Given linear sugars array is 'null'.");
+        Objects.requireNonNull(aRingSugarsSmiles, "Given ring sugars array is 'null'.");
+        List<IAtomContainer> tmpLinearSugars = new ArrayList<>(aLinearSugarsSmiles.length);
+        List<IAtomContainer> tmpRingSugars = new ArrayList<>(aRingSugarsSmiles.length);
+        List<DfPattern> tmpLinearSugarPatterns = new ArrayList<>(aLinearSugarsSmiles.length);
+
+        SmilesParser tmpSmilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+        //adding linear sugars to list
+        for (String tmpSmiles : aLinearSugarsSmiles) {
+            try {
+                tmpLinearSugars.add(tmpSmilesParser.parseSmiles(tmpSmiles));
+            } catch (Exception anException) {
+                anException.printStackTrace();
+            }
+        }
+        //sorting for size decreasing; the patterns parsed afterwards are not sorted that easily, so sorting is done now
+        Comparator<IAtomContainer> tmpComparator = new AtomContainerComparator().reversed();
+        //note: this can throw various exceptions but they should not appear here
+        tmpLinearSugars.sort(tmpComparator);
+        //adding ring sugars to list
+        for (String tmpSmiles : aRingSugarsSmiles) {
+            try {
+                tmpRingSugars.add(tmpSmilesParser.parseSmiles(tmpSmiles));
+            } catch (Exception anException) {
+                anException.printStackTrace();
+            }
+        }
+        tmpRingSugars.sort(tmpComparator);
+
+        //parsing linear sugars into patterns
+        for(IAtomContainer tmpSugarAC : tmpLinearSugars){
+            try {
+                tmpLinearSugarPatterns.add(DfPattern.findSubstructure(tmpSugarAC));
+            } catch (Exception anException) {
+                anException.printStackTrace();
+            }
+        }
+        List<RingSignature> tmpRingSugarSignatures = new ArrayList<>(tmpRingSugars.size());
+        for (IAtomContainer tmpRingSugar : tmpRingSugars) {
+            tmpRingSugarSignatures.add(RingSignature.of(tmpRingSugar));
+        }
+        return new SugarReferencePatterns(tmpLinearSugars, tmpRingSugars, tmpLinearSugarPatterns,
+                tmpRingSugarSignatures);
+    }
+
+
+    public List<IAtomContainer> getLinearSugars() {
+        return this.linearSugars;
+    }
+
+    public List<IAtomContainer> getRingSugars() {
+        return this.ringSugars;
+    }
+
+    public List<DfPattern> getLinearSugarPatterns() {
+        return this.linearSugarPatterns;
+    }
+
+    /**
+     * @return the signatures of the ring sugars, in the same order as getRingSugars()
+     */
+    public List<RingSignature> getRingSugarSignatures() {
+        return this.ringSugarSignatures;
+    }
+
+    public List<String> getLinearSugarsSmiles() {
+        return SugarReferencePatterns.toSmilesList(this.linearSugars);
+    }
+
+    public List<String> getRingSugarsSmiles() {
+        return SugarReferencePatterns.toSmilesList(this.ringSugars);
+    }
+
+
+    private static List<String> toSmilesList(List<IAtomContainer> aStructureList) {
+        List<String> tmpSmilesList = new ArrayList<>(aStructureList.size());
+        SmilesGenerator tmpSmilesGen = new SmilesGenerator(SmiFlavor.Unique);
+        for (IAtomContainer tmpStructure : aStructureList) {
+            try {
+                tmpSmilesList.add(tmpSmilesGen.create(tmpStructure));
+            } catch (CDKException aCDKException) {
+                aCDKException.printStackTrace();
+            }
+        }
+        return tmpSmilesList;
+    }
+
+}
@@ -0,0 +1,216 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unijena.cheminf.sugarremovalweb.model.JobStatus;
+import de.unijena.cheminf.sugarremovalweb.model.SubmittedMoleculeData;
+import de.unijena.cheminf.sugarremovalweb.model.SugarRemovalJob;
+import de.unijena.cheminf.sugarremovalweb.readers.MoleculeIterator;
+import de.unijena.cheminf.sugarremovalweb.readers.ReaderService;
+import de.unijena.cheminf.sugarremovalweb.storage.StoredFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs file submissions as background jobs on the job thread pool, so that the request returns as soon as the file
+ * is stored. Finished jobs are kept for the configured retention time and dropped on the next submission after it.
+ * Large-file jobs read the whole file and spill their results to disk instead of keeping them on the heap.
+ */
+@Service
+public class SugarRemovalJobService {
+
+    private final ExecutorService jobExecutor;
+
+    private final SugarRemovalService sugarRemovalService;
+
+    private final ReaderService readerService;
+
+    private final SugarRemovalProperties properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, SugarRemovalJob> jobs = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public SugarRemovalJobService(@Qualifier("sugarRemovalJobExecutor") ExecutorService jobExecutor,
+                                  SugarRemovalService sugarRemovalService,
+                                  ReaderService readerService,
+                                  SugarRemovalProperties properties,
+                                  ObjectMapper objectMapper) {
+        this.jobExecutor = jobExecutor;
+        this.sugarRemovalService = sugarRemovalService;
+        this.readerService = readerService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+
+    /**
+     * Queues the processing of a stored upload, its checksum is kept with the job
+     * @param submittedMoleculeData
+     * @param storedFile
+     * @param largeFile whether the large-file molecule limit applies and the results are spilled to disk
+     * @return the queued job
+     * @throws RejectedExecutionException if the job queue is full
+     * @throws UncheckedIOException if the result file of a large-file job cannot be created
+     */
+    public SugarRemovalJob submit(SubmittedMoleculeData submittedMoleculeData, StoredFile storedFile, boolean largeFile)
+            throws RejectedExecutionException, UncheckedIOException {
+        SugarRemovalJob job = submit(submittedMoleculeData, storedFile.getPath().toString(), largeFile);
+        job.setUploadChecksum(storedFile.getChecksum());
+        return job;
+    }
+
+    /**
+     * Queues the processing of an already stored file
+     * @param submittedMoleculeData
+     * @param file path of the stored file
+     * @param largeFile whether the large-file molecule limit applies and the results are spilled to disk
+     * @return the queued job
+     * @throws RejectedExecutionException if the job queue is full
+     * @throws UncheckedIOException if the result file of a large-file job cannot be created
+     */
+    public SugarRemovalJob submit(SubmittedMoleculeData submittedMoleculeData, String file, boolean largeFile)
+            throws RejectedExecutionException, UncheckedIOException {
+        purgeExpiredJobs();
+
+        String jobId = UUID.randomUUID().toString();
+        JobResultStore results;
+        if (largeFile) {
+            try {
+                results = new SpillingJobResultStore(getResultSpillFile(jobId), objectMapper);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            results = new InMemoryJobResultStore();
+        }
+        SugarRemovalJob job = new SugarRemovalJob(jobId, file, largeFile, results);
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(jobExecutor.submit(() -> run(job, submittedMoleculeData, file)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            job.releaseResults();
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @param jobId
+     * @return the job or null if there is no job with this id (any more)
+     */
+    public SugarRemovalJob getJob(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Cancels the job if it is not finished yet and forgets it. A running job is only asked to stop, its thread
+     * finishes it and releases its results once the work has returned.
+     * @param jobId
+     * @return the removed job or null if there is no job with this id
+     */
+    public SugarRemovalJob removeJob(String jobId) {
+        if (jobId == null) {
+            return null;
+        }
+        SugarRemovalJob job = jobs.remove(jobId);
+        if (job == null) {
+            return null;
+        }
+        if (job.requestCancel()) {
+            if (job.getFuture() != null) {
+                job.getFuture().cancel(true);
+            }
+        } else {
+            //queued or finished, the job thread does not touch the job (any more)
+            if (job.getFuture() != null) {
+                job.getFuture().cancel(false);
+            }
+            job.finish(JobStatus.CANCELLED, null);
+            job.releaseResults();
+        }
+        return job;
+    }
+
+
+    private void run(SugarRemovalJob job, SubmittedMoleculeData submittedMoleculeData, String file) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            try (MoleculeIterator molecules = readerService.readMoleculesFromFile(file, job.isLargeFile())) {
+                BatchReport report = sugarRemovalService.doWork(submittedMoleculeData, molecules, job::addResult,
+                        job::addFailure);
+                job.setTotalCount(report.getSubmittedCount());
+                job.setDuplicateCount(report.getDuplicateCount());
+                System.out.println("Sugar removal job " + job.getId() + " for " + file + ": " + report);
+            }
+
+            if (job.isCancelRequested() || Thread.currentThread().isInterrupted()) {
+                job.finish(JobStatus.CANCELLED, null);
+            } else {
+                job.finish(JobStatus.COMPLETED, null);
+            }
+        } catch (Exception e) {
+            if (job.isCancelRequested()) {
+                job.finish(JobStatus.CANCELLED, null);
+            } else {
+                e.printStackTrace();
+                job.finish(JobStatus.FAILED, e.getMessage());
+            }
+        } finally {
+            if (job.end()) {
+                job.releaseResults();
+            }
+        }
+    }
+
+    /**
+     * @return the jobs that are not removed yet, running or finished
+     */
+    public Collection<SugarRemovalJob> getJobs() {
+        return Collections.unmodifiableCollection(jobs.values());
+    }
+
+    /**
+     * @param jobId
+     * @return the file the results of a large-file job with this id are spilled to
+     */
+    public Path getResultSpillFile(String jobId) {
+        return Paths.get(properties.getResultSpillLocation(), jobId + ".ndjson");
+    }
+
+    /**
+     * Drops the finished jobs that are older than the retention time, also called by the storage janitor so that
+     * their files can be deleted without a new submission
+     */
+    public void purgeExpiredJobs() {
+        long retentionMillis = TimeUnit.MINUTES.toMillis(properties.getFinishedJobRetentionMinutes());
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            if (job.isFinished() && now - job.getFinishedAt() > retentionMillis) {
+                job.releaseResults();
+                return true;
+            }
+            return false;
+        });
+    }
+}
@@ -0,0 +1,290 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("sugarremoval")
+public class SugarRemovalProperties {
+
+
+    /**
+     * Number of threads removing sugars from the molecules of uploaded files, 0 for one thread per available processor
+     */
+    private int workerThreads = 0;
+
+    /**
+     * Maximum number of molecules of one file that are submitted to the workers but whose results were not collected
+     * yet, 0 for four times the number of worker threads
+     */
+    private int maxMoleculesInFlight = 0;
+
+    /**
+     * Number of threads parsing and standardizing the records of files in formats that can be split into chunks, 0
+     * for one thread per available processor, 1 parses on the reading thread
+     */
+    private int ingestThreads = 0;
+
+    /**
+     * Number of records parsed in one task of the ingest threads
+     */
+    private int ingestChunkRecords = 64;
+
+    /**
+     * Maximum number of molecules read from an uploaded file, the remaining ones are ignored
+     */
+    private int maxMoleculesPerFile = 1000;
+
+    /**
+     * Maximum number of molecules processed of a batch request, the remaining ones get an error, 0 for no limit
+     */
+    private int batchMaxMolecules = 10000;
+
+    /**
+     * Maximum number of molecules read from a file in large-file mode, 0 for no limit
+     */
+    private int largeFileMaxMolecules = 0;
+
+    /**
+     * Maximum size of the decompressed content of one gzip file or zip entry, larger content is cut off, 0 for no
+     * limit
+     */
+    private long maxDecompressedMegabytes = 4096L;
+
+    /**
+     * Folder for the result files of large-file jobs
+     */
+    private String resultSpillLocation = "upload-dir/job-results";
+
+    /**
+     * Number of submitted files that are processed at the same time by the job API
+     */
+    private int jobThreads = 2;
+
+    /**
+     * Number of submitted files that may wait for a job thread before new submissions are rejected
+     */
+    private int jobQueueCapacity = 16;
+
+    /**
+     * Minutes that a finished job and its results are kept for polling
+     */
+    private long finishedJobRetentionMinutes = 60;
+
+    /**
+     * How records with the same structure are recognised, computed only for the records of a batch with
+     * deduplication; the InChIKey is the most expensive one
+     */
+    private MoleculeIdentityService.Strategy identityStrategy = MoleculeIdentityService.Strategy.SMILES_HASH;
+
+    /**
+     * Number of most recent distinct structures of a batch whose results are handed to later records with the same
+     * identity instead of processing them again, 0 disables the deduplication
+     */
+    private int batchDedupMaxStructures = 100000;
+
+    /**
+     * Maximum number of finished results kept for resubmitted structures, 0 disables the result cache
+     */
+    private int resultCacheCapacity = 10000;
+
+    /**
+     * Maximum estimated heap size of the cached results in megabytes, 0 for no limit besides the capacity
+     */
+    private long resultCacheMaxMegabytes = 64;
+
+    /**
+     * Minutes after which a cached result is computed again, 0 to keep results until they are evicted
+     */
+    private long resultCacheTtlMinutes = 0;
+
+    /**
+     * Folder of the result store that keeps cached results across restarts, empty to keep them in memory only
+     */
+    private String resultStoreLocation = "result-store";
+
+    /**
+     * Maximum size of the result store on disk in megabytes, 0 disables the store
+     */
+    private long resultStoreMaxMegabytes = 256;
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxMoleculesInFlight() {
+        return maxMoleculesInFlight;
+    }
+
+    public void setMaxMoleculesInFlight(int maxMoleculesInFlight) {
+        this.maxMoleculesInFlight = maxMoleculesInFlight;
+    }
+
+    public int getIngestThreads() {
+        return ingestThreads;
+    }
+
+    public void setIngestThreads(int ingestThreads) {
+        this.ingestThreads = ingestThreads;
+    }
+
+    public int getIngestChunkRecords() {
+        return ingestChunkRecords;
+    }
+
+    public void setIngestChunkRecords(int ingestChunkRecords) {
+        this.ingestChunkRecords = ingestChunkRecords;
+    }
+
+    public int getMaxMoleculesPerFile() {
+        return maxMoleculesPerFile;
+    }
+
+    public void setMaxMoleculesPerFile(int maxMoleculesPerFile) {
+        this.maxMoleculesPerFile = maxMoleculesPerFile;
+    }
+
+    public int getBatchMaxMolecules() {
+        return batchMaxMolecules;
+    }
+
+    public void setBatchMaxMolecules(int batchMaxMolecules) {
+        this.batchMaxMolecules = batchMaxMolecules;
+    }
+
+    public int getLargeFileMaxMolecules() {
+        return largeFileMaxMolecules;
+    }
+
+    public void setLargeFileMaxMolecules(int largeFileMaxMolecules) {
+        this.largeFileMaxMolecules = largeFileMaxMolecules;
+    }
+
+    public long getMaxDecompressedMegabytes() {
+        return maxDecompressedMegabytes;
+    }
+
+    public void setMaxDecompressedMegabytes(long maxDecompressedMegabytes) {
+        this.maxDecompressedMegabytes = maxDecompressedMegabytes;
+    }
+
+    public String getResultSpillLocation() {
+        return resultSpillLocation;
+    }
+
+    public void setResultSpillLocation(String resultSpillLocation) {
+        this.resultSpillLocation = resultSpillLocation;
+    }
+
+    public int getJobThreads() {
+        return jobThreads;
+    }
+
+    public void setJobThreads(int jobThreads) {
+        this.jobThreads = jobThreads;
+    }
+
+    public int getJobQueueCapacity() {
+        return jobQueueCapacity;
+    }
+
+    public void setJobQueueCapacity(int jobQueueCapacity) {
+        this.jobQueueCapacity = jobQueueCapacity;
+    }
+
+    public long getFinishedJobRetentionMinutes() {
+        return finishedJobRetentionMinutes;
+    }
+
+    public void setFinishedJobRetentionMinutes(long finishedJobRetentionMinutes) {
+        this.finishedJobRetentionMinutes = finishedJobRetentionMinutes;
+    }
+
+    public MoleculeIdentityService.Strategy getIdentityStrategy() {
+        return identityStrategy;
+    }
+
+    public void setIdentityStrategy(MoleculeIdentityService.Strategy identityStrategy) {
+        this.identityStrategy = identityStrategy;
+    }
+
+    public int getBatchDedupMaxStructures() {
+        return batchDedupMaxStructures;
+    }
+
+    public void setBatchDedupMaxStructures(int batchDedupMaxStructures) {
+        this.batchDedupMaxStructures = batchDedupMaxStructures;
+    }
+
+    public int getResultCacheCapacity() {
+        return resultCacheCapacity;
+    }
+
+    public void setResultCacheCapacity(int resultCacheCapacity) {
+        this.resultCacheCapacity = resultCacheCapacity;
+    }
+
+    public long getResultCacheMaxMegabytes() {
+        return resultCacheMaxMegabytes;
+    }
+
+    public void setResultCacheMaxMegabytes(long resultCacheMaxMegabytes) {
+        this.resultCacheMaxMegabytes = resultCacheMaxMegabytes;
+    }
+
+    public long getResultCacheTtlMinutes() {
+        return resultCacheTtlMinutes;
+    }
+
+    public void setResultCacheTtlMinutes(long resultCacheTtlMinutes) {
+        this.resultCacheTtlMinutes = resultCacheTtlMinutes;
+    }
+
+    public String getResultStoreLocation() {
+        return resultStoreLocation;
+    }
+
+    public void setResultStoreLocation(String resultStoreLocation) {
+        this.resultStoreLocation = resultStoreLocation;
+    }
+
+    public long getResultStoreMaxMegabytes() {
+        return resultStoreMaxMegabytes;
+    }
+
+    public void setResultStoreMaxMegabytes(long resultStoreMaxMegabytes) {
+        this.resultStoreMaxMegabytes = resultStoreMaxMegabytes;
+    }
+
+    /**
+     * @return the configured number of worker threads or the number of available processors if none is configured
+     */
+    public int getEffectiveWorkerThreads() {
+        if (workerThreads > 0) {
+            return workerThreads;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the configured number of ingest threads or the number of available processors if none is configured
+     */
+    public int getEffectiveIngestThreads() {
+        if (ingestThreads > 0) {
+            return ingestThreads;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the configured in-flight limit or four times the effective number of worker threads
+     */
+    public int getEffectiveMaxMoleculesInFlight() {
+        if (maxMoleculesInFlight > 0) {
+            return maxMoleculesInFlight;
+        }
+        return getEffectiveWorkerThreads() * 4;
+    }
+}
@@ -6,9 +6,13 @@ package de.unijena.cheminf.sugarremovalweb.services;
  */
 
 import de.unijena.cheminf.sugarremovalweb.misc.MoleculeConnectivityChecker;
+import de.unijena.cheminf.sugarremovalweb.model.BatchMolecule;
+import de.unijena.cheminf.sugarremovalweb.model.BatchMoleculeResult;
 import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
 import de.unijena.cheminf.sugarremovalweb.model.SubmittedMoleculeData;
+import de.unijena.cheminf.sugarremovalweb.readers.MoleculeIterator;
 import de.unijena.cheminf.sugarremovalweb.readers.ReaderService;
+import de.unijena.cheminf.sugarremovalweb.readers.UserInputMoleculeReaderService;
 import net.sf.jniinchi.INCHI_OPTION;
 import org.apache.tomcat.jni.Proc;
 import org.openscience.cdk.AtomContainer;
@@ -30,11 +34,9 @@ import org.openscience.cdk.ringsearch.RingSearch;
 import org.openscience.cdk.smarts.SmartsPattern;
 import org.openscience.cdk.smiles.SmiFlavor;
 import org.openscience.cdk.smiles.SmilesGenerator;
-import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.manipulator.AtomContainerComparator;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.BondManipulator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -45,6 +47,8 @@ import javax.swing.plaf.synth.SynthEditorPaneUI;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -105,9 +109,12 @@ public class SugarRemovalService {
     public static final boolean INCLUDE_NR_OF_ATTACHED_OXYGEN_DEFAULT = true;
     public static final double ATTACHED_OXYGENS_TO_ATOMS_IN_RING_RATIO_THRESHOLD_DEFAULT = 0.5;
     public static final boolean SET_PROPERTY_OF_SUGAR_CONTAINING_MOLECULES_DEFAULT = true;
-    public static final String INDEX_PROPERTY_KEY = "SUGAR_REMOVAL_UTILITY_INDEX";
     public static final String CONTAINS_LINEAR_SUGAR_PROPERTY_KEY = "CONTAINS_LINEAR_SUGAR";
     public static final String CONTAINS_SUGAR_PROPERTY_KEY = "CONTAINS_SUGAR";
+    /**
+     * Property holding the InChIKey of a molecule once it was computed, see MoleculeIdentityService
+     */
+    public static final String INCHIKEY_PROPERTY_KEY = "INCHIKEY";
     public static final String CONTAINS_CIRCULAR_SUGAR_PROPERTY_KEY = "CONTAINS_CIRCULAR_SUGAR";
     public static final int LINEAR_SUGAR_CANDIDATE_MIN_SIZE_DEFAULT = 4;
     public static final int LINEAR_SUGAR_CANDIDATE_MAX_SIZE_DEFAULT = 7;
@@ -116,50 +123,70 @@ public class SugarRemovalService {
     public static final SmartsPattern PEROXIDE_SMARTS_PATTERN = SmartsPattern.create("[C]-[O!R]-[O!R]-[C]");
 
 
-    UniversalIsomorphismTester universalIsomorphismTester ;
-
     @Autowired
     MoleculeConnectivityChecker mcc;
 
     @Autowired
     ReaderService readerService;
 
+    @Autowired
+    UserInputMoleculeReaderService userInputMoleculeReaderService;
 
+    @Autowired
+    SugarPatternRegistry sugarPatternRegistry;
 
+    @Autowired
+    ParallelBatchProcessor parallelBatchProcessor;
 
-    private List<IAtomContainer> ringSugars;
-    private List<IAtomContainer> linearSugars;
+    @Autowired
+    ProcessedMoleculeCache processedMoleculeCache;
 
-    private List<DfPattern> linearSugarPatterns;
+    @Autowired
+    MoleculeIdentityService moleculeIdentityService;
 
-    private StructuresToKeepMode structuresToKeepMode;
-    public static final StructuresToKeepMode STRUCTURES_TO_KEEP_MODE_DEFAULT = StructuresToKeepMode.HEAVY_ATOM_COUNT;
-    private int structureToKeepModeThreshold;
+    /**
+     * SMILES generators are not thread-safe, every worker thread keeps its own instance
+     */
+    private static final ThreadLocal<SmilesGenerator> SMILES_GENERATOR =
+            ThreadLocal.withInitial(() -> new SmilesGenerator(SmiFlavor.Unique));
 
+    /**
+     * Totals of the analysis contexts of all removal calls since the start, see {@link MoleculeAnalysisContext}
+     */
+    private final LongAdder analysisComputationCount = new LongAdder();
 
-    private boolean detectGlycosidicBond;
-    private boolean removeOnlyTerminal;
-    private boolean removeLinearSugarsInRing;
-    private boolean includeNrOfAttachedOxygens;
-    private double attachedOxygensToAtomsInRingRatioThreshold;
-    private int linearSugarCandidateMinSize;
-    private int linearSugarCandidateMaxSize;
+    private final LongAdder analysisReuseCount = new LongAdder();
 
 
-    private boolean setPropertyOfSugarContainingMolecules;
+
+
+    public static final StructuresToKeepMode STRUCTURES_TO_KEEP_MODE_DEFAULT = StructuresToKeepMode.HEAVY_ATOM_COUNT;
 
 
 
 
+    /**
+     * Removes the sugars requested in the submitted data from the given molecule. The removal options are derived
+     * step by step from the submitted data into immutable settings objects that are local to this call, so the
+     * method can be called from any number of threads at the same time.
+     * <br>Results are cached by the unique SMILES of the molecule and the requested options, a resubmitted structure
+     * gets a copy of the cached result without running the removal again.
+     * @param moleculeToProcess
+     * @param submittedMoleculeData
+     * @return
+     */
     ProcessedMolecule removeSugarsFromAtomContainer(IAtomContainer  moleculeToProcess, SubmittedMoleculeData submittedMoleculeData){
 
 
         ProcessedMolecule molecule = new ProcessedMolecule();
 
-        SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Unique);
+        SmilesGenerator smilesGenerator = SMILES_GENERATOR.get();
 
         List<IAtomContainer> results = null ;
 
+        //every removal step below derives its settings from the ones of the preceding step
+        SugarRemovalSettings settings = new SugarRemovalSettings(sugarPatternRegistry.getDefaultPatterns());
+
         List options = new ArrayList();
         options.add(INCHI_OPTION.SNon);
         options.add(INCHI_OPTION.ChiralFlagOFF);
@@ -168,17 +195,31 @@ public class SugarRemovalService {
 
 
         try {
-            molecule.setSmiles(smilesGenerator.create(moleculeToProcess));
+            //same unique SMILES as the generator gives, reused if the identity of the molecule was computed from it
+            molecule.setSmiles(moleculeIdentityService.getUniqueSmiles(moleculeToProcess));
         } catch (CDKException e) {
             e.printStackTrace();
             return null;
         }
 
+        String cacheKey = null;
+        if (processedMoleculeCache.isEnabled()) {
+            cacheKey = ProcessedMoleculeCache.createKey(molecule.getSmiles(), submittedMoleculeData.getSugarsToRemove());
+            ProcessedMolecule cachedMolecule = processedMoleculeCache.get(cacheKey);
+            if (cachedMolecule != null) {
+                return cachedMolecule;
+            }
+        }
+
         //molecule.setMolecule(moleculeToProcess);
         molecule.sugarsToRemove = new ArrayList<>();
         molecule.deglycosylatedMoietiesSmiles = new ArrayList<>();
         molecule.sugarMoietiesRemovedSmiles = new ArrayList<>();
 
+        //ring search, graph and ring candidates are shared by all removal steps below while they leave the molecule
+        // unchanged
+        MoleculeAnalysisContext analysisContext = new MoleculeAnalysisContext(moleculeToProcess);
+
         //InChIGenerator gen = null;
         try {
             //gen = InChIGeneratorFactory.getInstance().getInChIGenerator(moleculeToProcess, options );
@@ -192,20 +233,20 @@ public class SugarRemovalService {
                 if (submittedMoleculeData.getSugarsToRemove().contains("allSugars")) {//remove all the sugars
                     molecule.sugarsToRemove.add("all");
 
-                    setRemoveLinearSugarsInRing(false);
-                    setPropertyOfSugarContainingMolecules(true);
-                    setRemoveOnlyTerminalSugars(false);
+                    settings = settings.withRemoveLinearSugarsInRing(false)
+                            .withPropertyOfSugarContainingMolecules(true)
+                            .withRemoveOnlyTerminalSugars(false);
 
                     if (submittedMoleculeData.getSugarsToRemove().contains("allSugarsWithGlyBonds")) {
-                        setDetectGlycosidicBond(true);
+                        settings = settings.withDetectGlycosidicBond(true);
                         molecule.sugarsToRemove.add("withGlyBonds");
                     }
                     else{
-                        setDetectGlycosidicBond(false);
+                        settings = settings.withDetectGlycosidicBond(false);
                     }
 
                     try {
-                        results = removeAndReturnCircularAndLinearSugars(moleculeToProcess, false);
+                        results = removeAndReturnCircularAndLinearSugars(analysisContext, settings);
 
                         moleculeToProcess = results.get(0);
                         //the molecule to process can be in several parts: need to separate them
@@ -229,7 +270,7 @@ public class SugarRemovalService {
                         }
 
 
-                    } catch (CloneNotSupportedException | CDKException e) {
+                    } catch (IllegalArgumentException | CDKException e) {
                         e.printStackTrace();
                         return null;
                     }
@@ -240,25 +281,24 @@ public class SugarRemovalService {
 
                         molecule.sugarsToRemove.add("ring");
 
-                        setRemoveOnlyTerminalSugars(false);
-
-                        setRemoveLinearSugarsInRing(false);
-                        setPropertyOfSugarContainingMolecules(true);
+                        settings = settings.withRemoveOnlyTerminalSugars(false)
+                                .withRemoveLinearSugarsInRing(false)
+                                .withPropertyOfSugarContainingMolecules(true);
 
                         if (submittedMoleculeData.getSugarsToRemove().contains("ringsWithGlyBonds")) {
-                            setDetectGlycosidicBond(true);
+                            settings = settings.withDetectGlycosidicBond(true);
                             molecule.sugarsToRemove.add("withGlyBonds");
                         }else{
-                            setDetectGlycosidicBond(false);
+                            settings = settings.withDetectGlycosidicBond(false);
                         }
 
 
                         try {
-                            results  = removeAndReturnCircularSugars(moleculeToProcess, false);
+                            results  = removeAndReturnCircularSugars(analysisContext, settings);
 
                             moleculeToProcess = results.get(0);
 
-                        } catch (CloneNotSupportedException e) {
+                        } catch (IllegalArgumentException e) {
                             e.printStackTrace();
                             return null;
                         }
@@ -269,23 +309,22 @@ public class SugarRemovalService {
 
                         molecule.sugarsToRemove.add("terminalRing");
 
-                        setRemoveOnlyTerminalSugars(true);
-
-                        setRemoveLinearSugarsInRing(false);
-                        setPropertyOfSugarContainingMolecules(true);
+                        settings = settings.withRemoveOnlyTerminalSugars(true)
+                                .withRemoveLinearSugarsInRing(false)
+                                .withPropertyOfSugarContainingMolecules(true);
 
                         if (submittedMoleculeData.getSugarsToRemove().contains("termRingsWithGlyBonds")) {
                             molecule.sugarsToRemove.add("withGlyBonds");
-                            setDetectGlycosidicBond(true);
+                            settings = settings.withDetectGlycosidicBond(true);
                         }
 
 
                         try {
-                            results  = removeAndReturnCircularSugars(moleculeToProcess, false);
+                            results  = removeAndReturnCircularSugars(analysisContext, settings);
 
                             moleculeToProcess = results.get(0);
 
-                        } catch (CloneNotSupportedException e) {
+                        } catch (IllegalArgumentException e) {
                             e.printStackTrace();
                             return null;
                         }
@@ -293,16 +332,16 @@ public class SugarRemovalService {
                     }
                     if (submittedMoleculeData.getSugarsToRemove().contains("linearSugars")) {
                         molecule.sugarsToRemove.add("linear");
-                        setRemoveOnlyTerminalSugars(false);
-                        setRemoveLinearSugarsInRing(false);
-                        setPropertyOfSugarContainingMolecules(true);
+                        settings = settings.withRemoveOnlyTerminalSugars(false)
+                                .withRemoveLinearSugarsInRing(false)
+                                .withPropertyOfSugarContainingMolecules(true);
 
                         try {
-                            results  = removeAndReturnLinearSugars(moleculeToProcess, false);
+                            results  = removeAndReturnLinearSugars(analysisContext, settings);
 
                             moleculeToProcess = results.get(0);
 
-                        } catch (CloneNotSupportedException e) {
+                        } catch (IllegalArgumentException e) {
                             e.printStackTrace();
                             return null;
                         }
@@ -311,16 +350,16 @@ public class SugarRemovalService {
                     if (submittedMoleculeData.getSugarsToRemove().contains("terminalLnearSugars")) {
 
                         molecule.sugarsToRemove.add("terminalLinear");
-                        setRemoveOnlyTerminalSugars(true);
-                        setRemoveLinearSugarsInRing(false);
-                        setPropertyOfSugarContainingMolecules(true);
+                        settings = settings.withRemoveOnlyTerminalSugars(true)
+                                .withRemoveLinearSugarsInRing(false)
+                                .withPropertyOfSugarContainingMolecules(true);
 
                         try {
-                            results  = removeAndReturnLinearSugars(moleculeToProcess, false);
+                            results  = removeAndReturnLinearSugars(analysisContext, settings);
 
                             moleculeToProcess = results.get(0);
 
-                        } catch (CloneNotSupportedException e) {
+                        } catch (IllegalArgumentException e) {
                             e.printStackTrace();
                             return null;
                         }
@@ -365,6 +404,8 @@ public class SugarRemovalService {
         } catch (Exception e) {
             e.printStackTrace();
             return null;
+        } finally {
+            this.recordAnalysisStatistics(analysisContext);
         }
 
         //add a nice way of dealing with long smiles
@@ -379,6 +420,7 @@ public class SugarRemovalService {
         }
         //System.out.println(molecule.sugarWasRemoved);
 
+        processedMoleculeCache.put(cacheKey, molecule);
 
 
         return molecule;
@@ -388,7 +430,8 @@ public class SugarRemovalService {
 
 
     /**
-     * Processes the molecules submitted as a SMILES string or a draw (also SMILES)
+     * Processes the molecule submitted as a SMILES string or a draw (SMILES or molfile). It is parsed in memory and
+     * standardized like the molecules of files.
      * @param submittedMoleculeData
      * @return
      */
@@ -396,20 +439,12 @@ public class SugarRemovalService {
 
         ArrayList<ProcessedMolecule> processedMolecules = new ArrayList<>();
 
-        prepareSugars();
-
-        SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
-
-        IAtomContainer moleculeToProcess = null;
-
-        //Reading SMILES
         try {
-            //remove the weird characters
-            String smilesToParse = submittedMoleculeData.getDataString();
-            smilesToParse = smilesToParse.replace("\"", "");
-            smilesToParse = smilesToParse.replace("\'", "");
-            submittedMoleculeData.setDataString(smilesToParse);
-            moleculeToProcess = smilesParser.parseSmiles(submittedMoleculeData.getDataString());
+            IAtomContainer moleculeToProcess = userInputMoleculeReaderService.readMolecule(submittedMoleculeData);
+            if(moleculeToProcess == null){
+                //rejected by the standardization
+                return processedMolecules;
+            }
 
             ProcessedMolecule processedMolecule = removeSugarsFromAtomContainer(moleculeToProcess, submittedMoleculeData);
 
@@ -432,289 +467,206 @@ public class SugarRemovalService {
 
 
     /**
-     * Processes the molecules submitted as a file
+     * Processes the molecules submitted as a file. The molecules are read while the ones before them are processed
+     * on the sugar removal thread pool, the returned list keeps the order of the file.
      * @param submittedMoleculeData
      * @param file
      * @return
      */
     public ArrayList<ProcessedMolecule> doWork(SubmittedMoleculeData submittedMoleculeData, String file){
 
-        prepareSugars();
-
-        ArrayList<ProcessedMolecule> processedMolecules = new ArrayList<>();
-
-        if(readerService.startService(file)){
-            //reader can start
-            readerService.doWorkWithFile();
-
-            ArrayList<IAtomContainer> readMolecules = readerService.getReadMolecules();
+        try (MoleculeIterator readMolecules = readerService.readMoleculesFromFile(file)) {
+            return doWork(submittedMoleculeData, readMolecules, file);
+        }
 
-            for(IAtomContainer moleculeAC : readMolecules){
+    }
 
+    /**
+     * Processes all given molecules and collects their results
+     * @param submittedMoleculeData
+     * @param molecules the molecules of an upload, not closed here
+     * @param source name of the upload for the log
+     * @return the results in input order
+     */
+    public ArrayList<ProcessedMolecule> doWork(SubmittedMoleculeData submittedMoleculeData, MoleculeIterator molecules,
+                                               String source){
 
-                ProcessedMolecule processedMolecule = removeSugarsFromAtomContainer(moleculeAC, submittedMoleculeData);
-                if(processedMolecule != null) {
-                    processedMolecules.add(processedMolecule);
-                }
-            }
+        ArrayList<ProcessedMolecule> processedMolecules = new ArrayList<>();
 
-        }
-        else{
-            return processedMolecules;
-        }
+        BatchReport report = doWork(submittedMoleculeData, molecules, processedMolecules::add, () -> { });
 
+        System.out.println("Sugar removal for " + source + ": " + report + "; analysis reuse since start: "
+                + this.getAnalysisReuseCount() + " reused, " + this.getAnalysisComputationCount() + " computed"
+                + "; result cache: " + processedMoleculeCache);
 
         return processedMolecules;
 
     }
 
 
+    /**
+     * Processes the given molecules on the sugar removal thread pool. The iterator is advanced on the calling thread
+     * only as far as the in-flight limit allows, so a lazy reader parses the file while the molecules before are
+     * processed. The results are handed to onResult in input order on the calling thread, onFailure is called
+     * instead for every molecule that could not be processed.
+     * <br>Molecules with the identity of an earlier molecule of the batch are not processed again, they get a copy of
+     * its result with their own ID. The report counts them as duplicates. The identity is computed here on the
+     * calling thread, according to the configured strategy, see {@link MoleculeIdentityService}.
+     * @param submittedMoleculeData
+     * @param molecules
+     * @param onResult
+     * @param onFailure
+     * @return the throughput figures of the run
+     */
+    public BatchReport doWork(SubmittedMoleculeData submittedMoleculeData, Iterator<IAtomContainer> molecules,
+                              Consumer<ProcessedMolecule> onResult, Runnable onFailure){
 
-    /******************** Actual sugar removal methods *****************************/
-
-    private void prepareSugars(){
-        universalIsomorphismTester = new UniversalIsomorphismTester();
-
-        this.linearSugars = new ArrayList<>(LINEAR_SUGARS_SMILES.length);
-        this.ringSugars = new ArrayList<>(RING_SUGARS_SMILES.length);
-        this.linearSugarPatterns = new ArrayList<>(LINEAR_SUGARS_SMILES.length);
+        return parallelBatchProcessor.processInOrder(molecules,
+                moleculeIdentityService::getIdentity,
+                moleculeAC -> assignRecord(removeSugarsFromAtomContainer(moleculeAC, submittedMoleculeData), moleculeAC),
+                (processedMolecule, duplicateAC) -> assignRecord(new ProcessedMolecule(processedMolecule), duplicateAC),
+                onResult, onFailure);
+    }
 
-        SmilesParser tmpSmilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
-
-        //adding linear sugars to list
-        for (String tmpSmiles : LINEAR_SUGARS_SMILES) {
-            try {
-                this.linearSugars.add(tmpSmilesParser.parseSmiles(tmpSmiles));
-            } catch (Exception anException) {
-                anException.printStackTrace();
-            }
-        }
-        //sorting for size decreasing; the patterns parsed afterwards are not sorted that easily, so sorting is done now
-        Comparator<IAtomContainer> tmpComparator = new AtomContainerComparator().reversed();
-        //note: this can throw various exceptions but they should not appear here
-        this.linearSugars.sort(tmpComparator);
-        //adding ring sugars to list
-        for (String tmpSmiles : RING_SUGARS_SMILES) {
-            try {
-                this.ringSugars.add(tmpSmilesParser.parseSmiles(tmpSmiles));
-            } catch (Exception anException) {
-                anException.printStackTrace();
-            }
-        }
-        this.ringSugars.sort(tmpComparator);
-
-        //parsing linear sugars into patterns
-        for(IAtomContainer tmpSugarAC : this.linearSugars){
-            try {
-                this.linearSugarPatterns.add(DfPattern.findSubstructure(tmpSugarAC));
-            } catch (Exception anException) {
-                anException.printStackTrace();
-            }
-        }
 
+    /**
+     * Processes the molecules of a batch request. Every submitted molecule gets exactly one outcome, handed to
+     * onResult in submission order: its result, or the reason why it has none. The SMILES are parsed and standardized
+     * on the calling thread while the molecules before them are processed on the sugar removal thread pool, see
+     * {@link #doWork(SubmittedMoleculeData, Iterator, Consumer, Runnable)}.
+     * @param submittedMoleculeData the removal options
+     * @param molecules
+     * @param onResult
+     * @param maxMolecules number of molecules processed at most, the remaining ones fail, 0 or less for all
+     * @return the throughput figures of the molecules that were parsed
+     */
+    public BatchReport doBatch(SubmittedMoleculeData submittedMoleculeData, Iterator<BatchMolecule> molecules,
+                               Consumer<BatchMoleculeResult> onResult, int maxMolecules){
 
+        //outcomes of the molecules that are processed, in order, and of those that failed before, waiting for them
+        ArrayDeque<BatchMoleculeResult> processing = new ArrayDeque<>();
+        ArrayDeque<BatchMoleculeResult> failedEarly = new ArrayDeque<>();
 
-        this.detectGlycosidicBond = DETECT_GLYCOSIDIC_BOND_DEFAULT;
-        this.removeOnlyTerminal = REMOVE_ONLY_TERMINAL_DEFAULT;
-        this.structuresToKeepMode = STRUCTURES_TO_KEEP_MODE_DEFAULT;
-        this.structureToKeepModeThreshold = this.structuresToKeepMode.defaultThreshold;
-        this.includeNrOfAttachedOxygens = INCLUDE_NR_OF_ATTACHED_OXYGEN_DEFAULT;
-        this.attachedOxygensToAtomsInRingRatioThreshold =
-                ATTACHED_OXYGENS_TO_ATOMS_IN_RING_RATIO_THRESHOLD_DEFAULT;
-        this.removeLinearSugarsInRing = REMOVE_LINEAR_SUGARS_IN_RING_DEFAULT;
-        this.setPropertyOfSugarContainingMolecules = SET_PROPERTY_OF_SUGAR_CONTAINING_MOLECULES_DEFAULT;
-        this.linearSugarCandidateMinSize = LINEAR_SUGAR_CANDIDATE_MIN_SIZE_DEFAULT;
-        this.linearSugarCandidateMaxSize = LINEAR_SUGAR_CANDIDATE_MAX_SIZE_DEFAULT;
+        Iterator<IAtomContainer> parsedMolecules = new Iterator<IAtomContainer>() {
 
-    }
+            private int index = 0;
 
+            private IAtomContainer next;
 
-    public List<String> getLinearSugars() {
-        List<String> tmpSmilesList = new ArrayList<>(this.linearSugars.size());
-        SmilesGenerator tmpSmilesGen = new SmilesGenerator(SmiFlavor.Unique);
-        for (IAtomContainer tmpLinearSugar : this.linearSugars) {
-            String tmpSmiles = null;
-            try {
-                tmpSmiles = tmpSmilesGen.create(tmpLinearSugar);
-            } catch (CDKException aCDKException) {
-                aCDKException.printStackTrace();
-            }
-            if (!Objects.isNull(tmpSmiles)) {
-                try {
-                    tmpSmilesList.add(tmpSmiles);
-                } catch (Exception anException) {
-                    anException.printStackTrace();
+            @Override
+            public boolean hasNext() {
+                while (next == null && molecules.hasNext()) {
+                    BatchMolecule molecule = molecules.next();
+                    BatchMoleculeResult outcome = new BatchMoleculeResult(index, molecule.getId(), null, null);
+                    index++;
+                    String error = null;
+                    if (maxMolecules > 0 && index > maxMolecules) {
+                        error = "Not processed, a batch holds at most " + maxMolecules + " molecules.";
+                    } else {
+                        try {
+                            next = userInputMoleculeReaderService.readSmiles(molecule.getSmiles(), molecule.getId(),
+                                    "batch", index);
+                            if (next == null) {
+                                error = "Rejected by the molecule checks, e.g. too few or too many heavy atoms.";
+                            }
+                        } catch (CDKException e) {
+                            //the message of the SMILES parser goes on with a drawing of the error position
+                            error = "SMILES cannot be parsed: " + String.valueOf(e.getMessage()).split("\n", 2)[0];
+                        }
+                    }
+                    if (next != null) {
+                        processing.add(outcome);
+                    } else if (processing.isEmpty()) {
+                        onResult.accept(outcome.withError(error));
+                    } else {
+                        failedEarly.add(outcome.withError(error));
+                    }
                 }
+                return next != null;
             }
-        }
-        return tmpSmilesList;
-    }
 
-    public List<String> getCircularSugars() {
-        List<String> tmpSmilesList = new ArrayList<>(this.ringSugars.size());
-        SmilesGenerator tmpSmilesGen = new SmilesGenerator(SmiFlavor.Unique);
-        for (IAtomContainer tmpRingSugar : this.ringSugars) {
-            String tmpSmiles = null;
-            try {
-                tmpSmiles = tmpSmilesGen.create(tmpRingSugar);
-            } catch (CDKException aCDKException) {
-                aCDKException.printStackTrace();
-            }
-            if (!Objects.isNull(tmpSmiles)) {
-                try {
-                    tmpSmilesList.add(tmpSmiles);
-                } catch (Exception anException) {
-                    anException.printStackTrace();
+            @Override
+            public IAtomContainer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
                 }
+                IAtomContainer molecule = next;
+                next = null;
+                return molecule;
             }
-        }
-        return tmpSmilesList;
-    }
-
-    public boolean isGlycosidicBondDetected() {
-        return this.detectGlycosidicBond;
-    }
-
-    public boolean areOnlyTerminalSugarsRemoved() {
-        return this.removeOnlyTerminal;
-    }
-
-    public StructuresToKeepMode getStructuresToKeepMode() {
-        return this.structuresToKeepMode;
-    }
+        };
 
-    public int getStructureToKeepModeThreshold() {
-        return this.structureToKeepModeThreshold;
-    }
-
-    public boolean isNrOfAttachedOxygensIncluded() {
-        return this.includeNrOfAttachedOxygens;
-    }
-
-    public double getAttachedOxygensToAtomsInRingRatioThreshold() {
-        return this.attachedOxygensToAtomsInRingRatioThreshold;
-    }
-
-    public boolean areLinearSugarsInRingsRemoved() {
-        return this.removeLinearSugarsInRing;
-    }
-
-    public boolean isPropertyOfSugarContainingMoleculesSet() {
-        return this.setPropertyOfSugarContainingMolecules;
-    }
-
-    public boolean arePropertiesOfSugarContainingMoleculesSet() {
-        return this.setPropertyOfSugarContainingMolecules;
-    }
-
-
-
-    public int getLinearSugarCandidateMinSize() {
-        return this.linearSugarCandidateMinSize;
-    }
-
-
-    public int getLinearSugarCandidateMaxSize() {
-        return this.linearSugarCandidateMaxSize;
-    }
-
-    public void clearCircularSugars() {
-        try {
-            this.ringSugars.clear();
-        } catch (UnsupportedOperationException anException) {
-            anException.printStackTrace();
-            this.ringSugars = new ArrayList<>(RING_SUGARS_SMILES.length);
-        }
-    }
-
-    public void clearLinearSugars() {
-        try {
-            this.linearSugars.clear();
-            this.linearSugarPatterns.clear();
-        } catch (UnsupportedOperationException anException) {
-            anException.printStackTrace();
-            this.linearSugars = new ArrayList<>(LINEAR_SUGARS_SMILES.length);
-            this.linearSugarPatterns = new ArrayList<>(LINEAR_SUGARS_SMILES.length);
+        Consumer<BatchMoleculeResult> inOrder = outcome -> {
+            while (!failedEarly.isEmpty() && failedEarly.peek().getIndex() < outcome.getIndex()) {
+                onResult.accept(failedEarly.poll());
+            }
+            onResult.accept(outcome);
+        };
+        BatchReport report = doWork(submittedMoleculeData, parsedMolecules,
+                processedMolecule -> inOrder.accept(processing.poll().withResult(processedMolecule)),
+                () -> inOrder.accept(processing.poll().withError("The sugar removal failed.")));
+        while (!failedEarly.isEmpty()) {
+            onResult.accept(failedEarly.poll());
         }
+        return report;
     }
 
-    public void setDetectGlycosidicBond(boolean aBoolean) {
-        this.detectGlycosidicBond = aBoolean;
-    }
-
-    public void setRemoveOnlyTerminalSugars(boolean aBoolean) {
-        this.removeOnlyTerminal = aBoolean;
-    }
 
-    public void setIncludeNrOfAttachedOxygens(boolean aBoolean) {
-        this.includeNrOfAttachedOxygens = aBoolean;
+    /**
+     * Sets the ID of the record the given result belongs to and its InChIKey, if it was computed
+     * @param processedMolecule
+     * @param moleculeAC the record as read from the file
+     * @return the given result or null if it is null
+     */
+    private ProcessedMolecule assignRecord(ProcessedMolecule processedMolecule, IAtomContainer moleculeAC) {
+        if (processedMolecule != null) {
+            processedMolecule.setId(moleculeAC.getID());
+            processedMolecule.setInchikey(moleculeAC.getProperty(INCHIKEY_PROPERTY_KEY));
+        }
+        return processedMolecule;
     }
 
-    public void setRemoveLinearSugarsInRing(boolean aBoolean) {
-        this.removeLinearSugarsInRing = aBoolean;
-    }
 
-    public void setPropertyOfSugarContainingMolecules(boolean aBoolean) {
-        this.setPropertyOfSugarContainingMolecules = aBoolean;
-    }
 
-    public void setLinearSugarCandidateMinSize(int aMinSize) throws IllegalArgumentException {
-        if (aMinSize < 1) {
-            throw new IllegalArgumentException("Given minimum size is smaller than 1.");
-        }
-        this.linearSugarCandidateMinSize = aMinSize;
-    }
+    /******************** Actual sugar removal methods *****************************/
 
-    public void setLinearSugarCandidateMaxSize(int aMaxSize) throws IllegalArgumentException {
-        if (aMaxSize < 1) {
-            throw new IllegalArgumentException("Given maximum size is smaller than 1.");
-        }
-        this.linearSugarCandidateMaxSize = aMaxSize;
+    public List<String> getLinearSugars() {
+        return sugarPatternRegistry.getDefaultPatterns().getLinearSugarsSmiles();
     }
 
-    public void restoreDefaultSettings() {
-        this.detectGlycosidicBond = DETECT_GLYCOSIDIC_BOND_DEFAULT;
-        this.removeOnlyTerminal = REMOVE_ONLY_TERMINAL_DEFAULT;
-        this.structuresToKeepMode = STRUCTURES_TO_KEEP_MODE_DEFAULT;
-        this.structureToKeepModeThreshold = this.structuresToKeepMode.defaultThreshold;
-        this.includeNrOfAttachedOxygens = INCLUDE_NR_OF_ATTACHED_OXYGEN_DEFAULT;
-        this.attachedOxygensToAtomsInRingRatioThreshold =
-                ATTACHED_OXYGENS_TO_ATOMS_IN_RING_RATIO_THRESHOLD_DEFAULT;
-        this.removeLinearSugarsInRing = REMOVE_LINEAR_SUGARS_IN_RING_DEFAULT;
-        this.setPropertyOfSugarContainingMolecules = SET_PROPERTY_OF_SUGAR_CONTAINING_MOLECULES_DEFAULT;
-        this.linearSugarCandidateMinSize = LINEAR_SUGAR_CANDIDATE_MIN_SIZE_DEFAULT;
-        this.linearSugarCandidateMaxSize = LINEAR_SUGAR_CANDIDATE_MAX_SIZE_DEFAULT;
+    public List<String> getCircularSugars() {
+        return sugarPatternRegistry.getDefaultPatterns().getRingSugarsSmiles();
     }
 
 
-    public boolean hasLinearSugars(IAtomContainer aMolecule) throws NullPointerException {
+    public boolean hasLinearSugars(IAtomContainer aMolecule,
+                                   SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
         //throws NullPointerException if molecule is null
-        this.setIndices(aMolecule);
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpSugarCandidates = this.getLinearSugarCandidates(aMolecule);
+        List<IAtomContainer> tmpSugarCandidates = this.getLinearSugarCandidates(aMolecule, aSettings);
         boolean tmpContainsSugar = !tmpSugarCandidates.isEmpty();
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             aMolecule.setProperty(CONTAINS_LINEAR_SUGAR_PROPERTY_KEY, tmpContainsSugar);
             aMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsSugar);
         }
         return tmpContainsSugar;
     }
 
-    public boolean hasCircularSugars(IAtomContainer aMolecule) throws NullPointerException {
+    public boolean hasCircularSugars(IAtomContainer aMolecule,
+                                     SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
         //throws NullPointerException if molecule is null
-        this.setIndices(aMolecule);
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpSugarCandidates = this.getCircularSugarCandidates(aMolecule);
+        List<IAtomContainer> tmpSugarCandidates = this.getCircularSugarCandidates(aMolecule, aSettings);
         boolean tmpContainsSugar = !tmpSugarCandidates.isEmpty();
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             aMolecule.setProperty(CONTAINS_CIRCULAR_SUGAR_PROPERTY_KEY, tmpContainsSugar);
             aMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsSugar);
         }
@@ -722,21 +674,19 @@ public class SugarRemovalService {
     }
 
 
-    public boolean hasSugars(IAtomContainer aMolecule) throws NullPointerException {
+    public boolean hasSugars(IAtomContainer aMolecule, SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
-        //throws NullPointerException if molecule is null
-        this.setIndices(aMolecule);
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpCircularSugarCandidates = this.getCircularSugarCandidates(aMolecule);
+        MoleculeAnalysisContext tmpContext = new MoleculeAnalysisContext(aMolecule);
+        List<IAtomContainer> tmpCircularSugarCandidates = this.getCircularSugarCandidates(tmpContext, aSettings);
         boolean tmpContainsCircularSugar = !tmpCircularSugarCandidates.isEmpty();
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpLinearSugarCandidates = this.getLinearSugarCandidates(aMolecule);
+        List<IAtomContainer> tmpLinearSugarCandidates = this.getLinearSugarCandidates(tmpContext, aSettings);
         boolean tmpContainsLinearSugar = !tmpLinearSugarCandidates.isEmpty();
         boolean tmpContainsSugar = (tmpContainsCircularSugar || tmpContainsLinearSugar);
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             aMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsSugar);
             aMolecule.setProperty(CONTAINS_CIRCULAR_SUGAR_PROPERTY_KEY, tmpContainsCircularSugar);
             aMolecule.setProperty(CONTAINS_LINEAR_SUGAR_PROPERTY_KEY, tmpContainsLinearSugar);
@@ -744,43 +694,49 @@ public class SugarRemovalService {
         return tmpContainsSugar;
     }
 
-    public int getNumberOfCircularSugars(IAtomContainer aMolecule) throws NullPointerException {
+    public int getNumberOfCircularSugars(IAtomContainer aMolecule,
+                                         SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return 0;
         }
-        List<IAtomContainer> tmpCircularSugarCandidates = this.getCircularSugarCandidates(aMolecule);
+        List<IAtomContainer> tmpCircularSugarCandidates = this.getCircularSugarCandidates(aMolecule, aSettings);
         int tmpSize = tmpCircularSugarCandidates.size();
         return tmpSize;
     }
 
 
-    public IAtomContainer removeCircularSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public IAtomContainer removeCircularSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                               SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return aMolecule;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
                         "container already contains multiple unconnected structures.");
             }
         }
-        IAtomContainer tmpNewMolecule = this.removeAndReturnCircularSugars(aMolecule, aShouldBeCloned).get(0);
+        IAtomContainer tmpNewMolecule =
+                this.removeAndReturnCircularSugars(aMolecule, aShouldBeCloned, aSettings).get(0);
         //May be empty and may be unconnected, based on the settings
         return tmpNewMolecule;
     }
 
 
-    public boolean removeCircularSugars(IAtomContainer aMolecule)
+    public boolean removeCircularSugars(IAtomContainer aMolecule, SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
@@ -788,39 +744,52 @@ public class SugarRemovalService {
             }
         }
         List<IAtomContainer> tmpDeglycosylatedMoleculeAndSugarMoietiesList =
-                this.removeAndReturnCircularSugars(aMolecule, false);
+                this.removeAndReturnCircularSugars(aMolecule, false, aSettings);
         boolean tmpSomethingWasRemoved = (tmpDeglycosylatedMoleculeAndSugarMoietiesList.size() > 1);
         return tmpSomethingWasRemoved;
     }
 
 
-    public List<IAtomContainer> removeAndReturnCircularSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public List<IAtomContainer> removeAndReturnCircularSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                                              SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        if (this.removeOnlyTerminal) {
-            boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
-            if (!tmpIsConnected) {
-                throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
-                        "container already contains multiple unconnected structures.");
-            }
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(aMolecule, aSettings);
+        MoleculeAnalysisContext tmpContext = new MoleculeAnalysisContext(aShouldBeCloned ? aMolecule.clone() : aMolecule);
+        try {
+            return this.removeAndReturnCircularSugars(tmpContext, aSettings);
+        } finally {
+            this.recordAnalysisStatistics(tmpContext);
         }
-        IAtomContainer tmpNewMolecule;
-        if (aShouldBeCloned) {
-            tmpNewMolecule = aMolecule.clone();
-        } else {
-            tmpNewMolecule = aMolecule;
+    }
+
+    /**
+     * Removes the circular sugars from the molecule of the given context, without copying it.
+     * @param aContext analysis context of the molecule, reused by later calls on the same molecule
+     * @param aSettings
+     * @return the molecule at index 0, followed by the removed sugar moieties
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if only terminal sugars should be removed but the molecule is unconnected
+     */
+    public List<IAtomContainer> removeAndReturnCircularSugars(MoleculeAnalysisContext aContext,
+                                                              SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        IAtomContainer tmpNewMolecule = aContext.getMolecule();
+        if (tmpNewMolecule.isEmpty()) {
+            return new ArrayList<IAtomContainer>(0);
         }
-        //throws NullPointerException if molecule is null
-        this.setIndices(tmpNewMolecule);
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpSugarCandidates = this.getCircularSugarCandidates(tmpNewMolecule);
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(tmpNewMolecule, aSettings);
+        List<IAtomContainer> tmpSugarCandidates = this.getCircularSugarCandidates(aContext, aSettings);
         /*note: this means that there are matches of the circular sugar patterns and that they adhere to most of
         the given settings. The exception is that they might not be terminal*/
         boolean tmpContainsSugar = !tmpSugarCandidates.isEmpty();
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             tmpNewMolecule.setProperty(CONTAINS_CIRCULAR_SUGAR_PROPERTY_KEY, tmpContainsSugar);
             tmpNewMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsSugar);
         }
@@ -828,7 +797,7 @@ public class SugarRemovalService {
         tmpResultList.add(0, tmpNewMolecule);
         if (tmpContainsSugar) {
             //throws NullPointerException and IllegalArgumentException
-            tmpResultList.addAll(1, this.removeSugarCandidates(tmpNewMolecule, tmpSugarCandidates));
+            tmpResultList.addAll(1, this.removeSugarCandidates(aContext, tmpSugarCandidates, aSettings));
         }
         //the molecule at index 0 may be empty and may be unconnected, based on the settings
         return tmpResultList;
@@ -837,9 +806,60 @@ public class SugarRemovalService {
 
 
 
-    public List<IAtomContainer> removeSugarCandidates(IAtomContainer aMolecule, List<IAtomContainer> aCandidateList)
+    /**
+     * @return how often the analysis contexts of the removal calls since the start reused a value computed before
+     */
+    public long getAnalysisReuseCount() {
+        return this.analysisReuseCount.sum();
+    }
+
+    /**
+     * @return how often the analysis contexts of the removal calls since the start had to compute a value
+     */
+    public long getAnalysisComputationCount() {
+        return this.analysisComputationCount.sum();
+    }
+
+    private void recordAnalysisStatistics(MoleculeAnalysisContext aContext) {
+        this.analysisComputationCount.add(aContext.getComputationCount());
+        this.analysisReuseCount.add(aContext.getReuseCount());
+    }
+
+    private void checkConnectivityIfOnlyTerminalSugarsAreRemoved(IAtomContainer aMolecule,
+                                                                 SugarRemovalSettings aSettings)
+            throws IllegalArgumentException {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
+            boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
+            if (!tmpIsConnected) {
+                throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
+                        "container already contains multiple unconnected structures.");
+            }
+        }
+    }
+
+
+    public List<IAtomContainer> removeSugarCandidates(IAtomContainer aMolecule, List<IAtomContainer> aCandidateList,
+                                                      SugarRemovalSettings aSettings)
             throws NullPointerException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        return this.removeSugarCandidates(new MoleculeAnalysisContext(aMolecule), aCandidateList, aSettings);
+    }
+
+    /**
+     * @param aContext analysis context of the molecule to remove the candidates from
+     * @param aCandidateList
+     * @param aSettings
+     * @return the removed sugar moieties
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if a candidate is not part of the molecule
+     */
+    public List<IAtomContainer> removeSugarCandidates(MoleculeAnalysisContext aContext,
+                                                      List<IAtomContainer> aCandidateList,
+                                                      SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        IAtomContainer aMolecule = aContext.getMolecule();
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         Objects.requireNonNull(aCandidateList, "Given list is 'null'.");
         if (aCandidateList.isEmpty() || aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
@@ -864,12 +884,14 @@ public class SugarRemovalService {
         List<IAtomContainer> tmpSugarCandidates = new ArrayList(aCandidateList);
         // the to be returned list of removed moieties
         List<IAtomContainer> tmpRemovedSugarMoieties = new ArrayList<>(aCandidateList.size());
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             //Only terminal sugars should be removed
             //but the definition of terminal depends on the set structures to keep mode!
             //decisions based on this setting are made in the respective private method
             //No unconnected structures result at the end or at an intermediate step
             boolean tmpContainsNoTerminalSugar = false;
+            //describes the current state of the molecule, recreated after every removal from the graph of the context
+            SugarTerminalityChecker tmpTerminalityChecker = null;
             while (!tmpContainsNoTerminalSugar) {
                 boolean tmpSomethingWasRemoved = false;
                 for (int i = 0; i < tmpSugarCandidates.size(); i++) {
@@ -877,18 +899,15 @@ public class SugarRemovalService {
                     if (Objects.isNull(tmpCandidate) || tmpCandidate.isEmpty()) {
                         continue;
                     }
-                    boolean tmpIsTerminal = false;
-                    try {
-                        //also throws NullPointerExceptions or IllegalArgumentExceptions but they are simply passed on
-                        // by this calling method
-                        tmpIsTerminal = this.isTerminal(tmpCandidate, aMolecule, tmpSugarCandidates);
-                    } catch (CloneNotSupportedException aCloneNotSupportedException) {
-                        aCloneNotSupportedException.printStackTrace();
-
-                        throw new IllegalArgumentException("Could not clone one candidate sugar structure and therefore " +
-                                "not determine whether it is terminal or not.");
+                    if (Objects.isNull(tmpTerminalityChecker)) {
+                        tmpTerminalityChecker = this.createTerminalityChecker(aContext);
                     }
+                    //also throws NullPointerExceptions or IllegalArgumentExceptions but they are simply passed on
+                    // by this calling method
+                    boolean tmpIsTerminal = this.isTerminal(tmpCandidate, aMolecule, tmpSugarCandidates, aSettings,
+                            tmpTerminalityChecker);
                     if (tmpIsTerminal) {
+                        tmpTerminalityChecker = null;
                         for (IAtom tmpAtom : tmpCandidate.atoms()) {
                             if (aMolecule.contains(tmpAtom)) {
                                 aMolecule.removeAtom(tmpAtom);
@@ -902,7 +921,7 @@ public class SugarRemovalService {
                             //to clear away leftover unconnected fragments that are not to be kept due to the settings and
                             // to generate valid valences by adding implicit hydrogen atoms
                             //throws NullPointerException if molecule is null
-                            this.postProcessAfterRemoval(aMolecule);
+                            this.postProcessAfterRemoval(aMolecule, aSettings);
                         }
                         //atom container may be empty after that
                         if (aMolecule.isEmpty()) {
@@ -931,7 +950,7 @@ public class SugarRemovalService {
             //to clear away leftover unconnected fragments that are not to be kept due to the settings and
             // to generate valid valences by adding implicit hydrogen atoms
             //throws NullPointerException if molecule is null
-            this.postProcessAfterRemoval(aMolecule);
+            this.postProcessAfterRemoval(aMolecule, aSettings);
         }
         return tmpRemovedSugarMoieties;
     }
@@ -940,32 +959,35 @@ public class SugarRemovalService {
 
 
 
-    public IAtomContainer removeLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public IAtomContainer removeLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                             SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return aMolecule;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
                         "container already contains multiple unconnected structures.");
             }
         }
-        IAtomContainer tmpNewMolecule = this.removeAndReturnLinearSugars(aMolecule, aShouldBeCloned).get(0);
+        IAtomContainer tmpNewMolecule = this.removeAndReturnLinearSugars(aMolecule, aShouldBeCloned, aSettings).get(0);
         //the molecule at index 0 may be empty and may be unconnected, based on the settings
         return tmpNewMolecule;
     }
 
 
-    public boolean removeLinearSugars(IAtomContainer aMolecule)
+    public boolean removeLinearSugars(IAtomContainer aMolecule, SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
@@ -973,41 +995,52 @@ public class SugarRemovalService {
             }
         }
         List<IAtomContainer> tmpDeglycosylatedMoleculeAndSugarMoietiesList =
-                this.removeAndReturnLinearSugars(aMolecule, false);
+                this.removeAndReturnLinearSugars(aMolecule, false, aSettings);
         boolean tmpSomethingWasRemoved = (tmpDeglycosylatedMoleculeAndSugarMoietiesList.size() > 1);
         return tmpSomethingWasRemoved;
     }
 
 
-    public List<IAtomContainer> removeAndReturnLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public List<IAtomContainer> removeAndReturnLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                                            SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
-        //<editor-fold desc="Checks">
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        if (this.removeOnlyTerminal) {
-            boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
-            if (!tmpIsConnected) {
-                throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
-                        "container already contains multiple unconnected structures.");
-            }
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(aMolecule, aSettings);
+        MoleculeAnalysisContext tmpContext = new MoleculeAnalysisContext(aShouldBeCloned ? aMolecule.clone() : aMolecule);
+        try {
+            return this.removeAndReturnLinearSugars(tmpContext, aSettings);
+        } finally {
+            this.recordAnalysisStatistics(tmpContext);
         }
-        //</editor-fold>
-        IAtomContainer tmpNewMolecule;
-        if (aShouldBeCloned) {
-            tmpNewMolecule = aMolecule.clone();
-        } else {
-            tmpNewMolecule = aMolecule;
+    }
+
+    /**
+     * Removes the linear sugars from the molecule of the given context, without copying it.
+     * @param aContext analysis context of the molecule, reused by later calls on the same molecule
+     * @param aSettings
+     * @return the molecule at index 0, followed by the removed sugar moieties
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if only terminal sugars should be removed but the molecule is unconnected
+     */
+    public List<IAtomContainer> removeAndReturnLinearSugars(MoleculeAnalysisContext aContext,
+                                                            SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        IAtomContainer tmpNewMolecule = aContext.getMolecule();
+        if (tmpNewMolecule.isEmpty()) {
+            return new ArrayList<IAtomContainer>(0);
         }
-        //throws NullPointerException if molecule is null
-        this.setIndices(tmpNewMolecule);
-        //throws NullPointerException if molecule is null
-        List<IAtomContainer> tmpSugarCandidates = this.getLinearSugarCandidates(tmpNewMolecule);
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(tmpNewMolecule, aSettings);
+        List<IAtomContainer> tmpSugarCandidates = this.getLinearSugarCandidates(aContext, aSettings);
         /*note: this means that there are matches of the linear sugar patterns and that they adhere to most of
         the given settings. The exception is that they might not be terminal*/
         boolean tmpContainsSugar = !tmpSugarCandidates.isEmpty();
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             tmpNewMolecule.setProperty(CONTAINS_LINEAR_SUGAR_PROPERTY_KEY, tmpContainsSugar);
             tmpNewMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsSugar);
         }
@@ -1015,7 +1048,7 @@ public class SugarRemovalService {
         tmpResultList.add(0, tmpNewMolecule);
         if (tmpContainsSugar) {
             //throws NullPointerException and IllegalArgumentException
-            tmpResultList.addAll(1, this.removeSugarCandidates(tmpNewMolecule, tmpSugarCandidates));
+            tmpResultList.addAll(1, this.removeSugarCandidates(aContext, tmpSugarCandidates, aSettings));
         }
         //the molecule at index 0 may be empty and may be unconnected, based on the settings
         return tmpResultList;
@@ -1024,32 +1057,36 @@ public class SugarRemovalService {
 
 
 
-    public IAtomContainer removeCircularAndLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public IAtomContainer removeCircularAndLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                                        SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return aMolecule;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
                         "container already contains multiple unconnected structures.");
             }
         }
-        IAtomContainer tmpNewMolecule = this.removeAndReturnCircularAndLinearSugars(aMolecule, aShouldBeCloned).get(0);
+        IAtomContainer tmpNewMolecule =
+                this.removeAndReturnCircularAndLinearSugars(aMolecule, aShouldBeCloned, aSettings).get(0);
         //May be empty and may be unconnected, based on the settings
         return tmpNewMolecule;
     }
 
-    public boolean removeCircularAndLinearSugars(IAtomContainer aMolecule)
+    public boolean removeCircularAndLinearSugars(IAtomContainer aMolecule, SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
         //<editor-fold desc="Checks">
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return false;
         }
-        if (this.removeOnlyTerminal) {
+        if (aSettings.areOnlyTerminalSugarsRemoved()) {
             boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
             if (!tmpIsConnected) {
                 throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
@@ -1057,34 +1094,47 @@ public class SugarRemovalService {
             }
         }
         List<IAtomContainer> tmpDeglycosylatedMoleculeAndSugarMoietiesList =
-                this.removeAndReturnCircularAndLinearSugars(aMolecule, false);
+                this.removeAndReturnCircularAndLinearSugars(aMolecule, false, aSettings);
         boolean tmpSomethingWasRemoved = (tmpDeglycosylatedMoleculeAndSugarMoietiesList.size() > 1);
         return tmpSomethingWasRemoved;
     }
 
 
-    public List<IAtomContainer> removeAndReturnCircularAndLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned)
+    public List<IAtomContainer> removeAndReturnCircularAndLinearSugars(IAtomContainer aMolecule, boolean aShouldBeCloned,
+                                                                       SugarRemovalSettings aSettings)
             throws NullPointerException, CloneNotSupportedException, IllegalArgumentException {
-        //<editor-fold desc="Checks">
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        if (this.removeOnlyTerminal) {
-            boolean tmpIsConnected = ConnectivityChecker.isConnected(aMolecule);
-            if (!tmpIsConnected) {
-                throw new IllegalArgumentException("Only terminal sugar moieties should be removed but the given atom" +
-                        "container already contains multiple unconnected structures.");
-            }
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(aMolecule, aSettings);
+        MoleculeAnalysisContext tmpContext = new MoleculeAnalysisContext(aShouldBeCloned ? aMolecule.clone() : aMolecule);
+        try {
+            return this.removeAndReturnCircularAndLinearSugars(tmpContext, aSettings);
+        } finally {
+            this.recordAnalysisStatistics(tmpContext);
         }
-        IAtomContainer tmpNewMolecule;
-        if (aShouldBeCloned) {
-            tmpNewMolecule = aMolecule.clone();
-        } else {
-            tmpNewMolecule = aMolecule;
+    }
+
+    /**
+     * Removes the circular and linear sugars from the molecule of the given context, without copying it.
+     * @param aContext analysis context of the molecule, reused by later calls on the same molecule
+     * @param aSettings
+     * @return the molecule at index 0, followed by the removed sugar moieties
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if only terminal sugars should be removed but the molecule is unconnected
+     */
+    public List<IAtomContainer> removeAndReturnCircularAndLinearSugars(MoleculeAnalysisContext aContext,
+                                                                       SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        IAtomContainer tmpNewMolecule = aContext.getMolecule();
+        if (tmpNewMolecule.isEmpty()) {
+            return new ArrayList<IAtomContainer>(0);
         }
-        //throws NullPointerException if molecule is null
-        this.setIndices(tmpNewMolecule);
+        this.checkConnectivityIfOnlyTerminalSugarsAreRemoved(tmpNewMolecule, aSettings);
         boolean tmpContainsCircularSugars = false;
         boolean tmpContainsLinearSugars = false;
         boolean tmpContainsAnyTypeOfSugars = false;
@@ -1094,12 +1144,14 @@ public class SugarRemovalService {
         while (true) {
             //note: this has to be done stepwise because linear and circular sugar candidates can overlap
             //throws NullPointerException if molecule is null
-            List<IAtomContainer> tmpCircularSugarCandidates = this.getCircularSugarCandidates(tmpNewMolecule);
+            List<IAtomContainer> tmpCircularSugarCandidates =
+                    this.getCircularSugarCandidates(aContext, aSettings);
             boolean tmpCandidateListIsNotEmpty = !tmpCircularSugarCandidates.isEmpty();
             List<IAtomContainer> tmpRemovedCircularSugarMoieties = new ArrayList<>(0);
             if (tmpCandidateListIsNotEmpty) {
                 //throws NullPointerException and IllegalArgumentException
-                tmpRemovedCircularSugarMoieties = this.removeSugarCandidates(tmpNewMolecule, tmpCircularSugarCandidates);
+                tmpRemovedCircularSugarMoieties =
+                        this.removeSugarCandidates(aContext, tmpCircularSugarCandidates, aSettings);
                 if (!tmpContainsCircularSugars) {
                     tmpContainsCircularSugars = true;
                 }
@@ -1112,12 +1164,13 @@ public class SugarRemovalService {
             //note: if only terminal sugars are removed, the atom container should not be disconnected at this point
             // and that is a requirement for further checks for terminal linear sugar moieties
             //throws NullPointerException if molecule is null
-            List<IAtomContainer> tmpLinearSugarCandidates = this.getLinearSugarCandidates(tmpNewMolecule);
+            List<IAtomContainer> tmpLinearSugarCandidates = this.getLinearSugarCandidates(aContext, aSettings);
             tmpCandidateListIsNotEmpty = !tmpLinearSugarCandidates.isEmpty();
             List<IAtomContainer> tmpRemovedLinearSugarMoieties = new ArrayList<>(0);
             if (tmpCandidateListIsNotEmpty) {
                 //throws NullPointerException and IllegalArgumentException
-                tmpRemovedLinearSugarMoieties = this.removeSugarCandidates(tmpNewMolecule, tmpLinearSugarCandidates);
+                tmpRemovedLinearSugarMoieties =
+                        this.removeSugarCandidates(aContext, tmpLinearSugarCandidates, aSettings);
                 if (!tmpContainsLinearSugars) {
                     tmpContainsLinearSugars = true;
                 }
@@ -1127,7 +1180,7 @@ public class SugarRemovalService {
             if (tmpNewMolecule.isEmpty()) {
                 break;
             }
-            if (this.removeOnlyTerminal) {
+            if (aSettings.areOnlyTerminalSugarsRemoved()) {
                 int tmpCircularSugarCandidatesSizeAfterRemoval = tmpCircularSugarCandidates.size();
                 int tmpLinearSugarCandidatesSizeAfterRemoval = tmpLinearSugarCandidates.size();
                 boolean tmpSomethingWasRemoved = ((!tmpRemovedCircularSugarMoieties.isEmpty())
@@ -1141,7 +1194,7 @@ public class SugarRemovalService {
                 break;
             }
         }
-        if (this.setPropertyOfSugarContainingMolecules) {
+        if (aSettings.isPropertyOfSugarContainingMoleculesSet()) {
             tmpContainsAnyTypeOfSugars = (tmpContainsCircularSugars || tmpContainsLinearSugars);
             tmpNewMolecule.setProperty(CONTAINS_SUGAR_PROPERTY_KEY, tmpContainsAnyTypeOfSugars);
             tmpNewMolecule.setProperty(CONTAINS_CIRCULAR_SUGAR_PROPERTY_KEY, tmpContainsCircularSugars);
@@ -1246,152 +1299,76 @@ public class SugarRemovalService {
 
 
 
-    protected void setIndices(IAtomContainer aMolecule) throws NullPointerException {
-        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
-        if (aMolecule.isEmpty()) {
-            return;
-        }
-        for (int i = 0; i < aMolecule.getAtomCount(); i++) {
-            IAtom tmpAtom = aMolecule.getAtom(i);
-            tmpAtom.setProperty(this.INDEX_PROPERTY_KEY, i);
-        }
-    }
-
-
-    protected Set<String> createSubstructureIdentifier(List<IAtomContainer> aSubstructureList) throws NullPointerException, IllegalArgumentException {
-        Objects.requireNonNull(aSubstructureList, "Given list is 'null'");
-        for (IAtomContainer tmpSubstructure : aSubstructureList) {
-            //method checks that no index appears multiple times but does not check whether there are numbers missing
-            boolean tmpAreIndicesSet = this.checkUniqueIndicesOfAtoms(tmpSubstructure);
-            if (!tmpAreIndicesSet) {
-                throw new IllegalArgumentException("This method requires that every atom has a unique index.");
-            }
-        }
-        HashSet<String> tmpIdentifierSet = new HashSet(aSubstructureList.size(), 1.0f);
-        for (IAtomContainer tmpSubstructure: aSubstructureList) {
-            if (Objects.isNull(tmpSubstructure)) {
-                continue;
-            }
-            if (tmpSubstructure.isEmpty()) {
-                continue;
-            }
-            String tmpSubstructureIdentifier = this.createSubstructureIdentifier(tmpSubstructure);
-            tmpIdentifierSet.add(tmpSubstructureIdentifier);
-        }
-        return tmpIdentifierSet;
-    }
-
-    protected String createSubstructureIdentifier(IAtomContainer aSubstructure) throws NullPointerException, IllegalArgumentException {
-        Objects.requireNonNull(aSubstructure, "Given substructure is 'null'.");
-        boolean tmpAreIndicesSet = this.checkUniqueIndicesOfAtoms(aSubstructure);
-        if (!tmpAreIndicesSet) {
-            throw new IllegalArgumentException("This method requires that every atom has a unique index.");
-        }
-        List<Integer> tmpIndicesList = new ArrayList<>(aSubstructure.getAtomCount());
-        for (IAtom tmpAtom : aSubstructure.atoms()) {
-            int tmpAtomIndex = tmpAtom.getProperty(this.INDEX_PROPERTY_KEY);
-            tmpIndicesList.add(tmpAtomIndex);
-        }
-        Collections.sort(tmpIndicesList);
-        String tmpSubstructureIdentifier = "";
-        for (int tmpAtomIndex : tmpIndicesList) {
-            tmpSubstructureIdentifier += Integer.toString(tmpAtomIndex);
-        }
-        return tmpSubstructureIdentifier;
-    }
-
-
-    private boolean areAllExocyclicBondsSingle(IAtomContainer aRingToTest, IAtomContainer anOriginalMolecule)
-            throws NullPointerException {
-        Objects.requireNonNull(aRingToTest, "Given ring atom container is 'null'");
-        Objects.requireNonNull(anOriginalMolecule, "Given atom container representing the original molecule " +
-                "is 'null'");
-        int tmpAtomCountInRing = aRingToTest.getAtomCount();
-        int tmpArrayListInitCapacity = tmpAtomCountInRing * 2;
-        List<IBond> tmpExocyclicBondsList = new ArrayList<>(tmpArrayListInitCapacity);
-        Iterable<IAtom> tmpRingAtoms = aRingToTest.atoms();
-        for (IAtom tmpRingAtom : tmpRingAtoms) {
-            if (!anOriginalMolecule.contains(tmpRingAtom)) {
-                continue;
-            }
-            List<IBond> tmpConnectedBondsList = anOriginalMolecule.getConnectedBondsList(tmpRingAtom);
-            for (IBond tmpBond : tmpConnectedBondsList) {
-                boolean tmpIsInRing = aRingToTest.contains(tmpBond);
-                if (!tmpIsInRing) {
-                    tmpExocyclicBondsList.add(tmpBond);
+    /**
+     * @param aRing atoms of an isolated ring of the molecule
+     * @param aGraph primitive form of the molecule
+     * @return true if no bond leaving the ring has an order higher than single
+     */
+    private boolean areAllExocyclicBondsSingle(BitSet aRing, MoleculeGraph aGraph) throws NullPointerException {
+        Objects.requireNonNull(aRing, "Given ring atom set is 'null'");
+        Objects.requireNonNull(aGraph, "Given graph of the original molecule is 'null'");
+        for (int tmpRingAtom = aRing.nextSetBit(0); tmpRingAtom >= 0; tmpRingAtom = aRing.nextSetBit(tmpRingAtom + 1)) {
+            int[] tmpNeighbors = aGraph.getNeighbors(tmpRingAtom);
+            int[] tmpBondOrders = aGraph.getBondOrders(tmpRingAtom);
+            for (int i = 0; i < tmpNeighbors.length; i++) {
+                //note: an isolated ring contains all bonds between its atoms
+                if (!aRing.get(tmpNeighbors[i]) && tmpBondOrders[i] > 1) {
+                    return false;
                 }
             }
         }
-        return (BondManipulator.getMaximumBondOrder(tmpExocyclicBondsList) == IBond.Order.SINGLE);
+        return true;
     }
 
 
-    private boolean hasGlycosidicBond(IAtomContainer aRingToTest, IAtomContainer anOriginalMolecule)
-            throws NullPointerException {
-        Objects.requireNonNull(aRingToTest, "Given ring atom container is 'null'");
-        Objects.requireNonNull(anOriginalMolecule, "Given atom container representing the original molecule " +
-                "is 'null'");
-        Iterable<IAtom> tmpRingAtoms = aRingToTest.atoms();
-        boolean tmpContainsGlycosidicBond = false;
-        for (IAtom tmpRingAtom : tmpRingAtoms) {
-            boolean tmpBreakOuterLoop = false;
-            //check to avoid exceptions
-            if (!anOriginalMolecule.contains(tmpRingAtom)) {
-                continue;
-            }
-            List<IAtom> connectedAtomsList = anOriginalMolecule.getConnectedAtomsList(tmpRingAtom);
-            for (IAtom tmpAtom : connectedAtomsList) {
-                boolean tmpIsInRing = aRingToTest.contains(tmpAtom);
-                if (!tmpIsInRing) {
-                    String tmpSymbol = tmpAtom.getSymbol();
-                    boolean tmpIsOxygen = (tmpSymbol.equals("O"));
-                    if (tmpIsOxygen) {
-                        List<IBond> tmpConnectedBondsList = anOriginalMolecule.getConnectedBondsList(tmpAtom);
-                        boolean tmpHasOnlyTwoBonds = (tmpConnectedBondsList.size() == 2);
-                        boolean tmpAllBondsAreSingle =
-                                (BondManipulator.getMaximumBondOrder(tmpConnectedBondsList) == IBond.Order.SINGLE);
-                        boolean tmpOneBondAtomIsHydrogen = false;
-                        for (IBond tmpBond : tmpConnectedBondsList) {
-                            for (IAtom tmpBondAtom : tmpBond.atoms()) {
-                                if (tmpBondAtom.getSymbol().equals("H")) {
-                                    tmpOneBondAtomIsHydrogen = true;
-                                }
-                            }
-                        }
-                        if ((tmpHasOnlyTwoBonds && tmpAllBondsAreSingle) && !tmpOneBondAtomIsHydrogen) {
-                            tmpContainsGlycosidicBond = true;
-                            tmpBreakOuterLoop = true;
-                            break;
-                        }
+    /**
+     * @param aRing atoms of a ring of the molecule
+     * @param aGraph primitive form of the molecule
+     * @return true if an exocyclic oxygen atom with exactly two single bonds to non-hydrogen atoms is attached to the
+     * ring
+     */
+    private boolean hasGlycosidicBond(BitSet aRing, MoleculeGraph aGraph) throws NullPointerException {
+        Objects.requireNonNull(aRing, "Given ring atom set is 'null'");
+        Objects.requireNonNull(aGraph, "Given graph of the original molecule is 'null'");
+        for (int tmpRingAtom = aRing.nextSetBit(0); tmpRingAtom >= 0; tmpRingAtom = aRing.nextSetBit(tmpRingAtom + 1)) {
+            for (int tmpAtom : aGraph.getNeighbors(tmpRingAtom)) {
+                if (aRing.get(tmpAtom) || aGraph.getAtomicNumber(tmpAtom) != 8 || aGraph.getDegree(tmpAtom) != 2) {
+                    continue;
+                }
+                boolean tmpAllBondsAreSingle = true;
+                boolean tmpOneBondAtomIsHydrogen = false;
+                int[] tmpOxygenNeighbors = aGraph.getNeighbors(tmpAtom);
+                int[] tmpOxygenBondOrders = aGraph.getBondOrders(tmpAtom);
+                for (int i = 0; i < tmpOxygenNeighbors.length; i++) {
+                    if (tmpOxygenBondOrders[i] > 1) {
+                        tmpAllBondsAreSingle = false;
+                    }
+                    if (aGraph.getAtomicNumber(tmpOxygenNeighbors[i]) == 1) {
+                        tmpOneBondAtomIsHydrogen = true;
                     }
                 }
-            }
-            if (tmpBreakOuterLoop) {
-                break;
+                if (tmpAllBondsAreSingle && !tmpOneBondAtomIsHydrogen) {
+                    return true;
+                }
             }
         }
-        return tmpContainsGlycosidicBond;
+        return false;
     }
 
 
-    private int getAttachedOxygenAtomCount(IAtomContainer aRingToTest, IAtomContainer anOriginalMolecule)
-            throws NullPointerException {
-        Objects.requireNonNull(aRingToTest, "Given ring atom container is 'null'");
-        Objects.requireNonNull(anOriginalMolecule, "Given atom container representing the original molecule " +
-                "is 'null'");
+    /**
+     * @param aRing atoms of a ring of the molecule
+     * @param aGraph primitive form of the molecule
+     * @return the number of exocyclic oxygen atoms attached to the ring, an oxygen atom bound to two ring atoms is
+     * counted twice
+     */
+    private int getAttachedOxygenAtomCount(BitSet aRing, MoleculeGraph aGraph) throws NullPointerException {
+        Objects.requireNonNull(aRing, "Given ring atom set is 'null'");
+        Objects.requireNonNull(aGraph, "Given graph of the original molecule is 'null'");
         int tmpExocyclicOxygenCounter = 0;
-        Iterable<IAtom> tmpRingAtoms = aRingToTest.atoms();
-        for (IAtom tmpRingAtom : tmpRingAtoms) {
-            //check to avoid exceptions
-            if (!anOriginalMolecule.contains(tmpRingAtom)) {
-                continue;
-            }
-            List<IAtom> tmpConnectedAtomsList = anOriginalMolecule.getConnectedAtomsList(tmpRingAtom);
-            for (IAtom tmpConnectedAtom : tmpConnectedAtomsList) {
-                String tmpSymbol = tmpConnectedAtom.getSymbol();
-                boolean tmpIsOxygen = tmpSymbol.equals("O");
-                boolean tmpIsInRing = aRingToTest.contains(tmpConnectedAtom);
-                if (tmpIsOxygen && !tmpIsInRing) {
+        for (int tmpRingAtom = aRing.nextSetBit(0); tmpRingAtom >= 0; tmpRingAtom = aRing.nextSetBit(tmpRingAtom + 1)) {
+            for (int tmpConnectedAtom : aGraph.getNeighbors(tmpRingAtom)) {
+                if (aGraph.getAtomicNumber(tmpConnectedAtom) == 8 && !aRing.get(tmpConnectedAtom)) {
                     tmpExocyclicOxygenCounter++;
                 }
             }
@@ -1401,12 +1378,14 @@ public class SugarRemovalService {
 
 
 
-    public void clearTooSmallStructures(IAtomContainer aMolecule) throws NullPointerException {
+    public void clearTooSmallStructures(IAtomContainer aMolecule,
+                                        SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return;
         }
-        if (this.structuresToKeepMode == StructuresToKeepMode.ALL) {
+        if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.ALL) {
             return;
         }
         IAtomContainerSet tmpComponents = ConnectivityChecker.partitionIntoMolecules(aMolecule);
@@ -1414,7 +1393,7 @@ public class SugarRemovalService {
             IAtomContainer tmpComponent = tmpComponents.getAtomContainer(i);
             //May throw UnsupportedOperationException if a new StructureToKeepMode option has been added but not implemented
             // in this method yet. Since this is a serious issue, the code is supposed to crash.
-            boolean tmpIsTooSmall = this.isTooSmall(tmpComponent);
+            boolean tmpIsTooSmall = this.isTooSmall(tmpComponent, aSettings);
             if (tmpIsTooSmall) {
                 //note: careful with removing things from sets/lists while iterating over it! But here it is ok because elements
                 // are not removed from the same set that is iterated
@@ -1431,20 +1410,23 @@ public class SugarRemovalService {
 
 
 
-    public boolean isTooSmall(IAtomContainer aMolecule) throws NullPointerException, UnsupportedOperationException {
+    public boolean isTooSmall(IAtomContainer aMolecule,
+                              SugarRemovalSettings aSettings)
+            throws NullPointerException, UnsupportedOperationException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return true;
         }
         boolean tmpIsTooSmall;
-        if (this.structuresToKeepMode == StructuresToKeepMode.ALL) {
+        if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.ALL) {
             tmpIsTooSmall = false;
-        } else if (this.structuresToKeepMode == StructuresToKeepMode.HEAVY_ATOM_COUNT) {
+        } else if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.HEAVY_ATOM_COUNT) {
             int tmpHeavyAtomCount = AtomContainerManipulator.getHeavyAtoms(aMolecule).size();
-            tmpIsTooSmall = tmpHeavyAtomCount < this.structureToKeepModeThreshold;
-        } else if (this.structuresToKeepMode == StructuresToKeepMode.MOLECULAR_WEIGHT) {
+            tmpIsTooSmall = tmpHeavyAtomCount < aSettings.getStructureToKeepModeThreshold();
+        } else if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.MOLECULAR_WEIGHT) {
             double tmpMolWeight = AtomContainerManipulator.getMass(aMolecule, AtomContainerManipulator.MolWeight);
-            tmpIsTooSmall = tmpMolWeight < this.structureToKeepModeThreshold;
+            tmpIsTooSmall = tmpMolWeight < aSettings.getStructureToKeepModeThreshold();
         } else {
             throw new UnsupportedOperationException("Undefined StructuresToKeepMode setting!");
         }
@@ -1452,17 +1434,67 @@ public class SugarRemovalService {
     }
 
 
+    /**
+     * Determines whether the given substructure can be removed from the parent molecule without disconnecting it,
+     * taking the structures to keep mode of the settings into account. Nothing is copied, see
+     * {@link SugarTerminalityChecker}.
+     * @param aSubstructure
+     * @param aParentMolecule
+     * @param aCandidateList
+     * @param aSettings
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if the substructure is not part of the parent molecule or the parent molecule
+     * is unconnected
+     */
     public boolean isTerminal(IAtomContainer aSubstructure,
                               IAtomContainer aParentMolecule,
-                              List<IAtomContainer> aCandidateList)
-            throws NullPointerException, IllegalArgumentException, CloneNotSupportedException {
+                              List<IAtomContainer> aCandidateList,
+            SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
+        Objects.requireNonNull(aParentMolecule, "Given parent molecule is 'null'.");
+        return this.isTerminal(aSubstructure, aParentMolecule, aCandidateList, aSettings,
+                this.createTerminalityChecker(aParentMolecule));
+    }
+
+    /**
+     * Creates the terminality checker for the current state of the given molecule.
+     * @param aMolecule
+     * @return
+     * @throws NullPointerException if the molecule is null
+     */
+    protected SugarTerminalityChecker createTerminalityChecker(IAtomContainer aMolecule) throws NullPointerException {
+        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+        return new SugarTerminalityChecker(aMolecule);
+    }
+
+    /**
+     * Creates the terminality checker for the current state of the molecule of the given context, on the graph
+     * memoized in the context.
+     * @param aContext
+     * @return
+     * @throws NullPointerException if the context is null
+     */
+    protected SugarTerminalityChecker createTerminalityChecker(MoleculeAnalysisContext aContext)
+            throws NullPointerException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        return new SugarTerminalityChecker(aContext.getGraph());
+    }
+
+    private boolean isTerminal(IAtomContainer aSubstructure,
+                               IAtomContainer aParentMolecule,
+                               List<IAtomContainer> aCandidateList,
+                               SugarRemovalSettings aSettings,
+                               SugarTerminalityChecker aChecker)
+            throws NullPointerException, IllegalArgumentException {
         //<editor-fold desc="Checks">
         Objects.requireNonNull(aSubstructure, "Given substructure is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         Objects.requireNonNull(aParentMolecule, "Given parent molecule is 'null'.");
         Objects.requireNonNull(aCandidateList, "Given list of candidates is 'null'.");
         boolean tmpIsParent = true;
         for (IAtom tmpAtom : aSubstructure.atoms()) {
-            if (!aParentMolecule.contains(tmpAtom)) {
+            if (!aChecker.contains(tmpAtom)) {
                 tmpIsParent = false;
                 break;
             }
@@ -1470,102 +1502,28 @@ public class SugarRemovalService {
         if (!tmpIsParent) {
             throw new IllegalArgumentException("Given substructure is not part of the given parent molecule.");
         }
-        boolean tmpIsUnconnected = !ConnectivityChecker.isConnected(aParentMolecule);
+        boolean tmpIsUnconnected = !aChecker.isConnected();
         if (tmpIsUnconnected) {
             throw new IllegalArgumentException("Parent molecule is already unconnected.");
         }
-        boolean tmpIndicesAreSet = this.checkUniqueIndicesOfAtoms(aParentMolecule);
-        if (!tmpIndicesAreSet) {
-            this.setIndices(aParentMolecule);
-        }
         //</editor-fold>
-        boolean tmpIsTerminal;
-        IAtomContainer tmpMoleculeClone = aParentMolecule.clone();
-        IAtomContainer tmpSubstructureClone = aSubstructure.clone();
-        HashMap<Integer, IAtom> tmpIndexToAtomMap = new HashMap<>(tmpMoleculeClone.getAtomCount() + 1, 1);
-        for (IAtom tmpAtom : tmpMoleculeClone.atoms()) {
-            tmpIndexToAtomMap.put(tmpAtom.getProperty(this.INDEX_PROPERTY_KEY), tmpAtom);
-        }
-        for (IAtom tmpAtom : tmpSubstructureClone.atoms()) {
-            tmpMoleculeClone.removeAtom(tmpIndexToAtomMap.get(tmpAtom.getProperty(this.INDEX_PROPERTY_KEY)));
-        }
-        boolean tmpIsConnected = ConnectivityChecker.isConnected(tmpMoleculeClone);
-        if (this.structuresToKeepMode == StructuresToKeepMode.ALL) {
-            tmpIsTerminal = tmpIsConnected;
-        } else {
-            if (tmpIsConnected) {
-                tmpIsTerminal = true;
-            } else {
-                IAtomContainerSet tmpComponents = ConnectivityChecker.partitionIntoMolecules(tmpMoleculeClone);
-                HashSet<Integer> tmpAtomIndicesThatArePartOfSugarCandidates = new HashSet<>(aParentMolecule.getAtomCount(), 0.8f);
-                for (IAtomContainer tmpCandidate : aCandidateList) {
-                    for (IAtom tmpAtom : tmpCandidate.atoms()) {
-                        int tmpIndex = tmpAtom.getProperty(this.INDEX_PROPERTY_KEY);
-                        tmpAtomIndicesThatArePartOfSugarCandidates.add(tmpIndex);
-                    }
-                }
-                for (IAtomContainer tmpComponent : tmpComponents.atomContainers()) {
-                    if (Objects.isNull(tmpComponent) || tmpComponent.isEmpty()) {
-                        continue;
-                    }
-                    //May throw UnsupportedOperationException if a new StructureToKeepMode option has been added but not implemented
-                    // in this method yet. Since this is a serious issue, the code is supposed to crash.
-                    //throws NullPointerException if molecule is null
-                    boolean tmpIsTooSmall = this.isTooSmall(tmpComponent);
-                    boolean tmpIsPartOfSugarCandidate = false;
-                    for (IAtom tmpAtom : tmpComponent.atoms()) {
-                        int tmpIndex = tmpAtom.getProperty(this.INDEX_PROPERTY_KEY);
-                        if (tmpAtomIndicesThatArePartOfSugarCandidates.contains(tmpIndex)) {
-                            tmpIsPartOfSugarCandidate = true;
-                            break;
-                        }
-                    }
-                    if (tmpIsTooSmall && !tmpIsPartOfSugarCandidate) {
-                        //note: no check whether the clone actually contains the component
-                        tmpMoleculeClone.remove(tmpComponent);
-                    }
-                }
-                tmpIsTerminal = ConnectivityChecker.isConnected(tmpMoleculeClone);
-            }
-        }
-        return tmpIsTerminal;
+        return aChecker.isTerminal(aSubstructure, aCandidateList, aSettings,
+                tmpComponent -> this.isTooSmall(tmpComponent, aSettings));
     }
 
-    protected boolean checkUniqueIndicesOfAtoms(IAtomContainer aMolecule) throws NullPointerException, IllegalArgumentException {
-        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
-        if (aMolecule.isEmpty()) {
-            throw new IllegalArgumentException("Given molecule is empty.");
-        }
-        HashSet<Integer> tmpAtomIndices = new HashSet<>(aMolecule.getAtomCount() + 4, 1.0f);
-        for (IAtom tmpAtom : aMolecule.atoms()) {
-            if (Objects.isNull(tmpAtom.getProperty(this.INDEX_PROPERTY_KEY))) {
-                return false;
-            } else {
-                int tmpIndex = tmpAtom.getProperty(this.INDEX_PROPERTY_KEY);
-                if (tmpAtomIndices.contains(tmpIndex)) {
-                    return false;
-                } else {
-                    tmpAtomIndices.add(tmpIndex);
-                }
-            }
-        }
-        //only reached if method is not exited before because of a missing or non-unique index
-        return true;
-    }
-
-
-
-    public void postProcessAfterRemoval(IAtomContainer aMolecule) throws NullPointerException {
+    public void postProcessAfterRemoval(IAtomContainer aMolecule,
+                                        SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aMolecule.isEmpty()) {
             return;
         }
         //if too small / too light, unconnected structures should be discarded, this is done now
         //otherwise, the possibly unconnected atom container is returned
         //Even if only terminal sugars are removed, the resulting, connected structure may still be too small to keep!
-        if (this.structuresToKeepMode != StructuresToKeepMode.ALL) {
+        if (aSettings.getStructuresToKeepMode() != StructuresToKeepMode.ALL) {
             //throws NullPointerException if molecule is null
-            this.clearTooSmallStructures(aMolecule);
+            this.clearTooSmallStructures(aMolecule, aSettings);
         }
         if (!aMolecule.isEmpty()) {
             try {
@@ -1579,33 +1537,45 @@ public class SugarRemovalService {
 
 
 
-    public List<IAtomContainer> getCircularSugarCandidates(IAtomContainer aMolecule) throws NullPointerException {
+    public List<IAtomContainer> getCircularSugarCandidates(IAtomContainer aMolecule,
+                                                           SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'");
-        if (aMolecule.isEmpty()) {
+        return this.getCircularSugarCandidates(new MoleculeAnalysisContext(aMolecule), aSettings);
+    }
+
+    /**
+     * @param aContext analysis context of the molecule, provides the ring search, the graph and the potential sugar
+     *                 cycles
+     * @param aSettings
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     */
+    public List<IAtomContainer> getCircularSugarCandidates(MoleculeAnalysisContext aContext,
+                                                           SugarRemovalSettings aSettings) throws NullPointerException {
+        Objects.requireNonNull(aContext, "Given context is 'null'");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        if (aContext.getMolecule().isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        boolean tmpIndicesAreSet = this.checkUniqueIndicesOfAtoms(aMolecule);
-        if (!tmpIndicesAreSet) {
-            this.setIndices(aMolecule);
-        }
-        int[][] tmpAdjList = GraphUtil.toAdjList(aMolecule);
-        //efficient computation/partitioning of the ring systems
-        RingSearch tmpRingSearch = new RingSearch(aMolecule, tmpAdjList);
-        List<IAtomContainer> tmpPotentialSugarRings = this.getPotentialSugarCycles(aMolecule);
+        List<IAtomContainer> tmpPotentialSugarRings = this.getPotentialSugarCycles(aContext, aSettings);
         if (tmpPotentialSugarRings.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
+        //efficient computation/partitioning of the ring systems
+        RingSearch tmpRingSearch = aContext.getRingSearch();
+        MoleculeGraph tmpGraph = aContext.getGraph();
         List<IAtomContainer> tmpSugarCandidates = new ArrayList<>(tmpPotentialSugarRings.size());
         for(IAtomContainer tmpPotentialSugarRing : tmpPotentialSugarRings) {
             if (Objects.isNull(tmpPotentialSugarRing) || tmpPotentialSugarRing.isEmpty()) {
                 continue;
             }
+            BitSet tmpRingAtoms = tmpGraph.toAtomSet(tmpPotentialSugarRing);
             /*note: another requirement of a suspected sugar ring is that it contains only single bonds.
              * This is not tested here because all the structures in the reference rings do meet this criterion.
              * But a structure that does not meet this criterion could be added to the references by the user.*/
             //do not remove rings without an attached glycosidic bond if this option is set
-            if (this.detectGlycosidicBond) {
-                boolean tmpHasGlycosidicBond = this.hasGlycosidicBond(tmpPotentialSugarRing, aMolecule);
+            if (aSettings.isGlycosidicBondDetected()) {
+                boolean tmpHasGlycosidicBond = this.hasGlycosidicBond(tmpRingAtoms, tmpGraph);
                 if (!tmpHasGlycosidicBond) {
                     //special exemption for molecules that only consist of a sugar ring and nothing else:
                     // they should also be seen as candidate even though they do not have a glycosidic bond
@@ -1613,8 +1583,10 @@ public class SugarRemovalService {
                     if (tmpRingSearch.numRings() == 1) {
                         boolean tmpMoleculeIsOnlyOneSugarRing = false;
                         try {
-                            tmpMoleculeIsOnlyOneSugarRing = this.checkCircularSugarGlycosidicBondExemption(tmpPotentialSugarRing, aMolecule);
-                        } catch (CloneNotSupportedException | IllegalArgumentException | NullPointerException anException) {
+                            tmpMoleculeIsOnlyOneSugarRing =
+                                    this.checkCircularSugarGlycosidicBondExemption(tmpPotentialSugarRing, tmpGraph,
+                                            aSettings);
+                        } catch (IllegalArgumentException | NullPointerException anException) {
                             anException.printStackTrace();
                             //there is sth wrong here, do not add this ring to the candidates
                             continue;
@@ -1631,11 +1603,11 @@ public class SugarRemovalService {
                 }
             }
             //do not remove rings with 'too few' attached oxygens if this option is set
-            if (this.includeNrOfAttachedOxygens) {
-                int tmpExocyclicOxygenCount = this.getAttachedOxygenAtomCount(tmpPotentialSugarRing, aMolecule);
+            if (aSettings.isNrOfAttachedOxygensIncluded()) {
+                int tmpExocyclicOxygenCount = this.getAttachedOxygenAtomCount(tmpRingAtoms, tmpGraph);
                 int tmpAtomsInRing = tmpPotentialSugarRing.getAtomCount();
                 boolean tmpAreEnoughOxygensAttached = this.doesRingHaveEnoughOxygenAtomsAttached(tmpAtomsInRing,
-                        tmpExocyclicOxygenCount);
+                        tmpExocyclicOxygenCount, aSettings);
                 if (!tmpAreEnoughOxygensAttached) {
                     continue;
                 }
@@ -1647,42 +1619,85 @@ public class SugarRemovalService {
         return tmpSugarCandidates;
     }
 
-    protected List<IAtomContainer> getPotentialSugarCycles(IAtomContainer aMolecule) throws NullPointerException {
-        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
+    /**
+     * @param aContext analysis context of the molecule, the result is memoized in it for the reference patterns of
+     *                 the settings
+     * @param aSettings
+     * @return the isolated rings of the molecule that match a reference ring sugar and have only single exocyclic
+     * bonds, unmodifiable
+     * @throws NullPointerException if one of the arguments is null
+     */
+    protected List<IAtomContainer> getPotentialSugarCycles(MoleculeAnalysisContext aContext,
+                                                           SugarRemovalSettings aSettings)
+            throws NullPointerException {
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        return aContext.getPotentialSugarCycles(aSettings.getReferencePatterns(),
+                () -> this.findPotentialSugarCycles(aContext, aSettings));
+    }
+
+    private List<IAtomContainer> findPotentialSugarCycles(MoleculeAnalysisContext aContext,
+                                                          SugarRemovalSettings aSettings) {
+        IAtomContainer aMolecule = aContext.getMolecule();
         if (aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        boolean tmpIndicesAreSet = this.checkUniqueIndicesOfAtoms(aMolecule);
-        if (!tmpIndicesAreSet) {
-            this.setIndices(aMolecule);
-        }
-        int[][] tmpAdjList = GraphUtil.toAdjList(aMolecule);
         //efficient computation/partitioning of the ring systems
-        RingSearch tmpRingSearch = new RingSearch(aMolecule, tmpAdjList);
+        RingSearch tmpRingSearch = aContext.getRingSearch();
         List<IAtomContainer> tmpIsolatedRings = tmpRingSearch.isolatedRingFragments();
         if (tmpIsolatedRings.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
         List<IAtomContainer> tmpSugarCandidates = new ArrayList<>(tmpIsolatedRings.size());
-        for(IAtomContainer tmpReferenceRing : this.ringSugars) {
-            for (IAtomContainer tmpIsolatedRing : tmpIsolatedRings) {
+        //only created if an isolated ring matches a reference ring
+        MoleculeGraph tmpGraph = null;
+        List<IAtomContainer> tmpReferenceRings = aSettings.getReferencePatterns().getRingSugars();
+        List<RingSignature> tmpReferenceRingSignatures = aSettings.getReferencePatterns().getRingSugarSignatures();
+        //computed once per isolated ring when it is first compared
+        RingSignature[] tmpIsolatedRingSignatures = new RingSignature[tmpIsolatedRings.size()];
+        //only created if a reference ring or an isolated ring is not a simple cycle and one tester is reused for all
+        // such pairs
+        UniversalIsomorphismTester tmpUnivIsoTester = null;
+        for (int i = 0; i < tmpReferenceRings.size(); i++) {
+            IAtomContainer tmpReferenceRing = tmpReferenceRings.get(i);
+            RingSignature tmpReferenceRingSignature = tmpReferenceRingSignatures.get(i);
+            for (int j = 0; j < tmpIsolatedRings.size(); j++) {
+                IAtomContainer tmpIsolatedRing = tmpIsolatedRings.get(j);
                 if (Objects.isNull(tmpIsolatedRing) || tmpIsolatedRing.isEmpty()) {
                     continue;
                 }
-                boolean tmpIsIsomorph = false;
-                UniversalIsomorphismTester tmpUnivIsoTester = new UniversalIsomorphismTester();
-                try {
-                    tmpIsIsomorph = tmpUnivIsoTester.isIsomorph(tmpReferenceRing, tmpIsolatedRing);
-                } catch (CDKException aCDKException) {
-                    aCDKException.printStackTrace();
+                //the UniversalIsomorphismTester also rejects structures of different size first
+                if (tmpIsolatedRing.getAtomCount() != tmpReferenceRingSignature.getAtomCount()) {
                     continue;
                 }
+                if (Objects.isNull(tmpIsolatedRingSignatures[j])) {
+                    tmpIsolatedRingSignatures[j] = RingSignature.of(tmpIsolatedRing);
+                }
+                RingSignature tmpIsolatedRingSignature = tmpIsolatedRingSignatures[j];
+                boolean tmpIsIsomorph = false;
+                if (tmpReferenceRingSignature.isSimpleCycle() && tmpIsolatedRingSignature.isSimpleCycle()) {
+                    tmpIsIsomorph = tmpReferenceRingSignature.isIsomorph(tmpIsolatedRingSignature);
+                } else {
+                    if (Objects.isNull(tmpUnivIsoTester)) {
+                        tmpUnivIsoTester = new UniversalIsomorphismTester();
+                    }
+                    try {
+                        tmpIsIsomorph = tmpUnivIsoTester.isIsomorph(tmpReferenceRing, tmpIsolatedRing);
+                    } catch (CDKException aCDKException) {
+                        aCDKException.printStackTrace();
+                        continue;
+                    }
+                }
                 if (tmpIsIsomorph) {
                     /*note: another requirement of a suspected sugar ring is that it contains only single bonds.
                      * This is not tested here because all the structures in the reference rings do meet this criterion.
                      * But a structure that does not meet this criterion could be added to the references by the user.*/
                     //do not remove rings with non-single exocyclic bonds, they are not sugars (not an option!)
-                    boolean tmpAreAllExocyclicBondsSingle = this.areAllExocyclicBondsSingle(tmpIsolatedRing, aMolecule);
+                    if (Objects.isNull(tmpGraph)) {
+                        tmpGraph = aContext.getGraph();
+                    }
+                    boolean tmpAreAllExocyclicBondsSingle =
+                            this.areAllExocyclicBondsSingle(tmpGraph.toAtomSet(tmpIsolatedRing), tmpGraph);
                     if (tmpAreAllExocyclicBondsSingle) {
                         tmpSugarCandidates.add(tmpIsolatedRing);
                     }
@@ -1692,56 +1707,69 @@ public class SugarRemovalService {
         return tmpSugarCandidates;
     }
 
-    protected boolean checkCircularSugarGlycosidicBondExemption(IAtomContainer aRing, IAtomContainer aMolecule)
-            throws NullPointerException, IllegalArgumentException, CloneNotSupportedException {
+    /**
+     * Checks whether the molecule consists only of the given ring and structures that are too small to keep, i.e.
+     * whether the ring qualifies as candidate even though it has no glycosidic bond. Nothing is copied, the components
+     * remaining after the removal of the ring are labelled on the graph.
+     * @param aRing
+     * @param aGraph primitive form of the parent molecule
+     * @param aSettings
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     * @throws IllegalArgumentException if the ring is not part of the parent molecule
+     */
+    protected boolean checkCircularSugarGlycosidicBondExemption(IAtomContainer aRing, MoleculeGraph aGraph,
+                                                                SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException {
         Objects.requireNonNull(aRing, "Given ring is 'null'.");
-        Objects.requireNonNull(aMolecule, "Given parent molecule is 'null'.");
-        boolean tmpIsParent = true;
-        for (IAtom tmpAtom : aRing.atoms()) {
-            if (!aMolecule.contains(tmpAtom)) {
-                tmpIsParent = false;
-                break;
-            }
-        }
-        if (!tmpIsParent) {
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        Objects.requireNonNull(aGraph, "Given graph of the parent molecule is 'null'.");
+        if (!aGraph.containsAll(aRing)) {
             throw new IllegalArgumentException("Given substructure is not part of the given parent molecule.");
         }
-        boolean tmpIndicesAreSet = this.checkUniqueIndicesOfAtoms(aMolecule);
-        if (!tmpIndicesAreSet) {
-            this.setIndices(aMolecule);
-        }
-        boolean tmpQualifiesForExemption = false;
-        IAtomContainer tmpMoleculeClone = aMolecule.clone();
-        IAtomContainer tmpSubstructureClone = aRing.clone();
-        HashMap<Integer, IAtom> tmpIndexToAtomMap = new HashMap<>(tmpMoleculeClone.getAtomCount() + 1, 1.0f);
-        for (IAtom tmpAtom : tmpMoleculeClone.atoms()) {
-            tmpIndexToAtomMap.put(tmpAtom.getProperty(INDEX_PROPERTY_KEY), tmpAtom);
+        BitSet tmpRingAtoms = aGraph.toAtomSet(aRing);
+        if (tmpRingAtoms.cardinality() == aGraph.getAtomCount()) {
+            return true;
         }
-        for (IAtom tmpAtom : tmpSubstructureClone.atoms()) {
-            tmpMoleculeClone.removeAtom(tmpIndexToAtomMap.get(tmpAtom.getProperty(INDEX_PROPERTY_KEY)));
+        if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.ALL) {
+            return false;
         }
-        if (tmpMoleculeClone.isEmpty()) {
-            tmpQualifiesForExemption = true;
-        } else {
-            this.clearTooSmallStructures(tmpMoleculeClone);
-            tmpQualifiesForExemption = tmpMoleculeClone.isEmpty();
+        int[] tmpComponentOfAtom = new int[aGraph.getAtomCount()];
+        int tmpComponentCount = aGraph.labelComponentsWithout(tmpRingAtoms, tmpComponentOfAtom);
+        for (IAtomContainer tmpComponent : aGraph.buildComponents(tmpComponentOfAtom, tmpComponentCount)) {
+            //May throw UnsupportedOperationException if a new StructureToKeepMode option has been added but not implemented
+            // in the test yet. Since this is a serious issue, the code is supposed to crash.
+            if (!this.isTooSmall(tmpComponent, aSettings)) {
+                return false;
+            }
         }
-        return tmpQualifiesForExemption;
+        return true;
     }
 
 
 
 
-    public List<IAtomContainer> getLinearSugarCandidates(IAtomContainer aMolecule) throws NullPointerException {
+    public List<IAtomContainer> getLinearSugarCandidates(IAtomContainer aMolecule,
+                                                         SugarRemovalSettings aSettings) throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'");
+        return this.getLinearSugarCandidates(new MoleculeAnalysisContext(aMolecule), aSettings);
+    }
+
+    /**
+     * @param aContext analysis context of the molecule, provides the ring search and the potential sugar cycles
+     * @param aSettings
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     */
+    public List<IAtomContainer> getLinearSugarCandidates(MoleculeAnalysisContext aContext,
+                                                         SugarRemovalSettings aSettings) throws NullPointerException {
+        Objects.requireNonNull(aContext, "Given context is 'null'");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        IAtomContainer aMolecule = aContext.getMolecule();
         if (aMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
-        boolean tmpIndicesAreSet = this.checkUniqueIndicesOfAtoms(aMolecule);
-        if (!tmpIndicesAreSet) {
-            this.setIndices(aMolecule);
-        }
-        List<IAtomContainer> tmpSugarCandidates = this.linearSugarCandidatesByPatternMatching(aMolecule);
+        List<IAtomContainer> tmpSugarCandidates = this.linearSugarCandidatesByPatternMatching(aMolecule, aSettings);
         //alternative: SMARTS or Ertl or matching the biggest patterns first and exclude the matched atoms
         if (!tmpSugarCandidates.isEmpty()) {
 
@@ -1759,19 +1787,19 @@ public class SugarRemovalService {
             //*Debugging*
             //this.printAllMolsAsSmiles(tmpSugarCandidates);
 
-            this.removeCandidatesContainingCircularSugars(tmpSugarCandidates, aMolecule);
+            this.removeCandidatesContainingCircularSugars(tmpSugarCandidates, aContext, aSettings);
             //alternative: tmpSugarCandidates = this.removeCircularSugarsFromCandidates(tmpSugarCandidates);
 
             //*Debugging*
             //this.printAllMolsAsSmiles(tmpSugarCandidates);
 
-            tmpSugarCandidates = this.removeTooSmallAndTooLargeCandidates(tmpSugarCandidates);
+            tmpSugarCandidates = this.removeTooSmallAndTooLargeCandidates(tmpSugarCandidates, aSettings);
 
             //*Debugging*
             //this.printAllMolsAsSmiles(tmpSugarCandidates);
         }
-        if (!this.removeLinearSugarsInRing && !tmpSugarCandidates.isEmpty()) {
-            this.removeSugarCandidatesWithCyclicAtoms(tmpSugarCandidates, aMolecule);
+        if (!aSettings.areLinearSugarsInRingsRemoved() && !tmpSugarCandidates.isEmpty()) {
+            this.removeSugarCandidatesWithCyclicAtoms(tmpSugarCandidates, aContext);
             //alternative: tmpSugarCandidates = this.removeCyclicAtomsFromSugarCandidates(tmpSugarCandidates, tmpNewMolecule);
         }
         return tmpSugarCandidates;
@@ -1780,14 +1808,13 @@ public class SugarRemovalService {
 
 
     protected void removeSugarCandidatesWithCyclicAtoms(List<IAtomContainer> aCandidateList,
-                                                        IAtomContainer aMolecule) throws NullPointerException {
+                                                        MoleculeAnalysisContext aContext) throws NullPointerException {
         Objects.requireNonNull(aCandidateList, "Given list is 'null'.");
         if (aCandidateList.isEmpty()) {
             return;
         }
-        Objects.requireNonNull(aMolecule, "Given molecule is 'null'.");
-        int[][] tmpAdjList = GraphUtil.toAdjList(aMolecule);
-        RingSearch tmpRingSearch = new RingSearch(aMolecule, tmpAdjList);
+        Objects.requireNonNull(aContext, "Given context is 'null'.");
+        RingSearch tmpRingSearch = aContext.getRingSearch();
         for (int i = 0; i < aCandidateList.size(); i++) {
             IAtomContainer tmpCandidate = aCandidateList.get(i);
             for (int j = 0; j < tmpCandidate.getAtomCount(); j++) {
@@ -1803,8 +1830,11 @@ public class SugarRemovalService {
     }
 
 
-    protected List<IAtomContainer> removeTooSmallAndTooLargeCandidates(List<IAtomContainer> aCandidateList) throws NullPointerException {
+    protected List<IAtomContainer> removeTooSmallAndTooLargeCandidates(List<IAtomContainer> aCandidateList,
+                                                                       SugarRemovalSettings aSettings)
+            throws NullPointerException {
         Objects.requireNonNull(aCandidateList, "Given list is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aCandidateList.isEmpty()) {
             return aCandidateList;
         }
@@ -1817,7 +1847,8 @@ public class SugarRemovalService {
                     tmpCarbonCount++;
                 }
             }
-            if (tmpCarbonCount >= this.linearSugarCandidateMinSize && tmpCarbonCount <= this.linearSugarCandidateMaxSize) {
+            if (tmpCarbonCount >= aSettings.getLinearSugarCandidateMinSize()
+                    && tmpCarbonCount <= aSettings.getLinearSugarCandidateMaxSize()) {
                 tmpProcessedCandidates.add(tmpCandidate);
             }
         }
@@ -1827,22 +1858,31 @@ public class SugarRemovalService {
 
 
     protected void removeCandidatesContainingCircularSugars(List<IAtomContainer> aCandidateList,
-                                                            IAtomContainer aParentMolecule)
+                                                            MoleculeAnalysisContext aParentContext,
+                                                            SugarRemovalSettings aSettings)
             throws NullPointerException {
         //<editor-fold desc="Checks">
         Objects.requireNonNull(aCandidateList, "Given list is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         if (aCandidateList.isEmpty()) {
             return;
         }
-        Objects.requireNonNull(aParentMolecule, "Given parent molecule is 'null'.");
+        Objects.requireNonNull(aParentContext, "Given parent context is 'null'.");
         //</editor-fold>
-        // generating ids for the isolated potential sugar circles in the parent molecule
-        List<IAtomContainer> tmpPotentialSugarRingsParent = this.getPotentialSugarCycles(aParentMolecule);
+        // isolated potential sugar circles in the parent molecule, identified by their atom sets
+        List<IAtomContainer> tmpPotentialSugarRingsParent = this.getPotentialSugarCycles(aParentContext, aSettings);
         // nothing to process
         if (tmpPotentialSugarRingsParent.isEmpty()) {
             return;
         }
-        Set<String> tmpPotentialSugarRingsParentIdentifierSet = this.createSubstructureIdentifier(tmpPotentialSugarRingsParent);
+        MoleculeGraph tmpParentGraph = aParentContext.getGraph();
+        HashSet<BitSet> tmpPotentialSugarRingsParentAtomSets = new HashSet<>(tmpPotentialSugarRingsParent.size() * 2);
+        for (IAtomContainer tmpRing : tmpPotentialSugarRingsParent) {
+            if (Objects.isNull(tmpRing) || tmpRing.isEmpty()) {
+                continue;
+            }
+            tmpPotentialSugarRingsParentAtomSets.add(tmpParentGraph.toAtomSet(tmpRing));
+        }
         // iterating over candidates
         for (int i = 0; i < aCandidateList.size(); i++) {
             IAtomContainer tmpCandidate = aCandidateList.get(i);
@@ -1852,7 +1892,22 @@ public class SugarRemovalService {
                 i = i - 1;
                 continue;
             }
-            List<IAtomContainer> tmpPotentialSugarRingsCandidate = this.getPotentialSugarCycles(tmpCandidate);
+            //only a candidate that contains all atoms of one of the parent rings can contain it as isolated ring
+            BitSet tmpCandidateAtoms = tmpParentGraph.toAtomSet(tmpCandidate);
+            boolean tmpContainsParentRing = false;
+            for (BitSet tmpRingAtoms : tmpPotentialSugarRingsParentAtomSets) {
+                BitSet tmpMissingRingAtoms = (BitSet) tmpRingAtoms.clone();
+                tmpMissingRingAtoms.andNot(tmpCandidateAtoms);
+                if (tmpMissingRingAtoms.isEmpty()) {
+                    tmpContainsParentRing = true;
+                    break;
+                }
+            }
+            if (!tmpContainsParentRing) {
+                continue;
+            }
+            List<IAtomContainer> tmpPotentialSugarRingsCandidate =
+                    this.getPotentialSugarCycles(new MoleculeAnalysisContext(tmpCandidate), aSettings);
             boolean tmpIsAlsoIsolatedInParent = false;
             if (!tmpPotentialSugarRingsCandidate.isEmpty()) {
                 //iterating over potential sugar rings in candidate
@@ -1860,8 +1915,8 @@ public class SugarRemovalService {
                     if (Objects.isNull(tmpRing) || tmpRing.isEmpty()) {
                         continue;
                     }
-                    String tmpRingIdentifier = this.createSubstructureIdentifier(tmpRing);
-                    tmpIsAlsoIsolatedInParent = tmpPotentialSugarRingsParentIdentifierSet.contains(tmpRingIdentifier);
+                    tmpIsAlsoIsolatedInParent =
+                            tmpPotentialSugarRingsParentAtomSets.contains(tmpParentGraph.toAtomSet(tmpRing));
                     if (tmpIsAlsoIsolatedInParent) {
                         aCandidateList.remove(i);
                         i = i - 1;
@@ -1962,14 +2017,17 @@ public class SugarRemovalService {
 
 
 
-    protected List<IAtomContainer> linearSugarCandidatesByPatternMatching(IAtomContainer aMolecule) throws NullPointerException {
+    protected List<IAtomContainer> linearSugarCandidatesByPatternMatching(IAtomContainer aMolecule,
+                                                                          SugarRemovalSettings aSettings)
+            throws NullPointerException {
         Objects.requireNonNull(aMolecule, "Given molecule is 'null'");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
         IAtomContainer tmpNewMolecule = aMolecule;
         if (tmpNewMolecule.isEmpty()) {
             return new ArrayList<IAtomContainer>(0);
         }
         List<IAtomContainer> tmpSugarCandidates = new ArrayList<>(tmpNewMolecule.getAtomCount() / 2);
-        for (DfPattern tmpLinearSugarPattern : this.linearSugarPatterns) {
+        for (DfPattern tmpLinearSugarPattern : aSettings.getReferencePatterns().getLinearSugarPatterns()) {
             if (Objects.isNull(tmpLinearSugarPattern)) {
                 continue;
             }
@@ -2020,7 +2078,8 @@ public class SugarRemovalService {
 
 
     private boolean doesRingHaveEnoughOxygenAtomsAttached(int aNumberOfAtomsInRing,
-                                                          int aNumberOfAttachedExocyclicOxygenAtoms) {
+                                                          int aNumberOfAttachedExocyclicOxygenAtoms,
+            SugarRemovalSettings aSettings) {
         if (aNumberOfAtomsInRing == 0) {
             //better than throwing an exception here?
             return false;
@@ -2028,44 +2087,9 @@ public class SugarRemovalService {
         double tmpAttachedOxygensToAtomsInRingRatio =
                 ((double) aNumberOfAttachedExocyclicOxygenAtoms / (double) aNumberOfAtomsInRing);
         boolean tmpMeetsThreshold =
-                (tmpAttachedOxygensToAtomsInRingRatio >= this.attachedOxygensToAtomsInRingRatioThreshold);
+                (tmpAttachedOxygensToAtomsInRingRatio >= aSettings.getAttachedOxygensToAtomsInRingRatioThreshold());
         return tmpMeetsThreshold;
     }
 
 
-
-    public void setAttachedOxygensToAtomsInRingRatioThreshold(double aDouble) throws IllegalArgumentException {
-        //false for NaN and infinity arguments
-        boolean tmpIsFinite = Double.isFinite(aDouble);
-        boolean tmpIsNegative = (aDouble < 0);
-        if(!tmpIsFinite || tmpIsNegative) {
-            throw new IllegalArgumentException("Given double is NaN, infinite or negative.");
-        }
-        if (!this.includeNrOfAttachedOxygens) {
-            throw new IllegalArgumentException("The number of attached oxygen atoms is currently not included in the " +
-                    "decision making process, so a ratio threshold makes no sense.");
-        }
-        this.attachedOxygensToAtomsInRingRatioThreshold = aDouble;
-    }
-
-
-    public void setStructuresToKeepMode(StructuresToKeepMode aMode) throws NullPointerException {
-        Objects.requireNonNull(aMode, "Given mode is 'null'.");
-        this.structuresToKeepMode = aMode;
-        this.structureToKeepModeThreshold = this.structuresToKeepMode.getDefaultThreshold();
-    }
-
-    public void setStructuresToKeepThreshold(int aThreshold) throws IllegalArgumentException {
-
-        if ((this.structuresToKeepMode == StructuresToKeepMode.ALL)) {
-            throw new IllegalArgumentException("The mode is currently set to keep all structures, so a threshold " +
-                    "makes no sense.");
-        }
-        if (aThreshold < 0) {
-            throw new IllegalArgumentException("Threshold cannot be negative.");
-        }
-        this.structureToKeepModeThreshold = aThreshold;
-    }
-
-
 }
@@ -0,0 +1,232 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalService.StructuresToKeepMode;
+
+import java.util.Objects;
+
+/**
+ * Immutable set of reference sugars and options for one sugar removal run. Every "with" method returns a new instance, so a settings object
+ * can be handed to any number of threads processing molecules at the same time.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public final class SugarRemovalSettings {
+
+    private final SugarReferencePatterns referencePatterns;
+    private final boolean detectGlycosidicBond;
+    private final boolean removeOnlyTerminal;
+    private final StructuresToKeepMode structuresToKeepMode;
+    private final int structureToKeepModeThreshold;
+    private final boolean includeNrOfAttachedOxygens;
+    private final double attachedOxygensToAtomsInRingRatioThreshold;
+    private final boolean removeLinearSugarsInRing;
+    private final boolean setPropertyOfSugarContainingMolecules;
+    private final int linearSugarCandidateMinSize;
+    private final int linearSugarCandidateMaxSize;
+
+
+    /**
+     * Creates a settings object using the given reference sugars and holding the default values defined in
+     * SugarRemovalService
+     * @param aReferencePatterns compiled reference sugars, e.g. the defaults of the SugarPatternRegistry
+     * @throws NullPointerException if the given patterns are null
+     */
+    public SugarRemovalSettings(SugarReferencePatterns aReferencePatterns) throws NullPointerException {
+        this(Objects.requireNonNull(aReferencePatterns, "Given reference patterns are 'null'."),
+                SugarRemovalService.DETECT_GLYCOSIDIC_BOND_DEFAULT,
+                SugarRemovalService.REMOVE_ONLY_TERMINAL_DEFAULT,
+                SugarRemovalService.STRUCTURES_TO_KEEP_MODE_DEFAULT,
+                SugarRemovalService.STRUCTURES_TO_KEEP_MODE_DEFAULT.getDefaultThreshold(),
+                SugarRemovalService.INCLUDE_NR_OF_ATTACHED_OXYGEN_DEFAULT,
+                SugarRemovalService.ATTACHED_OXYGENS_TO_ATOMS_IN_RING_RATIO_THRESHOLD_DEFAULT,
+                SugarRemovalService.REMOVE_LINEAR_SUGARS_IN_RING_DEFAULT,
+                SugarRemovalService.SET_PROPERTY_OF_SUGAR_CONTAINING_MOLECULES_DEFAULT,
+                SugarRemovalService.LINEAR_SUGAR_CANDIDATE_MIN_SIZE_DEFAULT,
+                SugarRemovalService.LINEAR_SUGAR_CANDIDATE_MAX_SIZE_DEFAULT);
+    }
+
+    private SugarRemovalSettings(SugarReferencePatterns aReferencePatterns,
+                                 boolean aDetectGlycosidicBond,
+                                 boolean aRemoveOnlyTerminal,
+                                 StructuresToKeepMode aStructuresToKeepMode,
+                                 int aStructureToKeepModeThreshold,
+                                 boolean anIncludeNrOfAttachedOxygens,
+                                 double anAttachedOxygensToAtomsInRingRatioThreshold,
+                                 boolean aRemoveLinearSugarsInRing,
+                                 boolean aSetPropertyOfSugarContainingMolecules,
+                                 int aLinearSugarCandidateMinSize,
+                                 int aLinearSugarCandidateMaxSize) {
+        this.referencePatterns = aReferencePatterns;
+        this.detectGlycosidicBond = aDetectGlycosidicBond;
+        this.removeOnlyTerminal = aRemoveOnlyTerminal;
+        this.structuresToKeepMode = aStructuresToKeepMode;
+        this.structureToKeepModeThreshold = aStructureToKeepModeThreshold;
+        this.includeNrOfAttachedOxygens = anIncludeNrOfAttachedOxygens;
+        this.attachedOxygensToAtomsInRingRatioThreshold = anAttachedOxygensToAtomsInRingRatioThreshold;
+        this.removeLinearSugarsInRing = aRemoveLinearSugarsInRing;
+        this.setPropertyOfSugarContainingMolecules = aSetPropertyOfSugarContainingMolecules;
+        this.linearSugarCandidateMinSize = aLinearSugarCandidateMinSize;
+        this.linearSugarCandidateMaxSize = aLinearSugarCandidateMaxSize;
+    }
+
+
+    public SugarReferencePatterns getReferencePatterns() {
+        return this.referencePatterns;
+    }
+
+    public boolean isGlycosidicBondDetected() {
+        return this.detectGlycosidicBond;
+    }
+
+    public boolean areOnlyTerminalSugarsRemoved() {
+        return this.removeOnlyTerminal;
+    }
+
+    public StructuresToKeepMode getStructuresToKeepMode() {
+        return this.structuresToKeepMode;
+    }
+
+    public int getStructureToKeepModeThreshold() {
+        return this.structureToKeepModeThreshold;
+    }
+
+    public boolean isNrOfAttachedOxygensIncluded() {
+        return this.includeNrOfAttachedOxygens;
+    }
+
+    public double getAttachedOxygensToAtomsInRingRatioThreshold() {
+        return this.attachedOxygensToAtomsInRingRatioThreshold;
+    }
+
+    public boolean areLinearSugarsInRingsRemoved() {
+        return this.removeLinearSugarsInRing;
+    }
+
+    public boolean isPropertyOfSugarContainingMoleculesSet() {
+        return this.setPropertyOfSugarContainingMolecules;
+    }
+
+    public int getLinearSugarCandidateMinSize() {
+        return this.linearSugarCandidateMinSize;
+    }
+
+    public int getLinearSugarCandidateMaxSize() {
+        return this.linearSugarCandidateMaxSize;
+    }
+
+
+    public SugarRemovalSettings withReferencePatterns(SugarReferencePatterns aReferencePatterns)
+            throws NullPointerException {
+        Objects.requireNonNull(aReferencePatterns, "Given reference patterns are 'null'.");
+        return new SugarRemovalSettings(aReferencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withDetectGlycosidicBond(boolean aBoolean) {
+        return new SugarRemovalSettings(this.referencePatterns, aBoolean, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withRemoveOnlyTerminalSugars(boolean aBoolean) {
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, aBoolean,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    /**
+     * Sets the given mode together with its default threshold
+     */
+    public SugarRemovalSettings withStructuresToKeepMode(StructuresToKeepMode aMode) throws NullPointerException {
+        Objects.requireNonNull(aMode, "Given mode is 'null'.");
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                aMode, aMode.getDefaultThreshold(), this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withStructuresToKeepThreshold(int aThreshold) throws IllegalArgumentException {
+        if ((this.structuresToKeepMode == StructuresToKeepMode.ALL)) {
+            throw new IllegalArgumentException("The mode is currently set to keep all structures, so a threshold " +
+                    "makes no sense.");
+        }
+        if (aThreshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative.");
+        }
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, aThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withIncludeNrOfAttachedOxygens(boolean aBoolean) {
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, aBoolean,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize,
+                this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withAttachedOxygensToAtomsInRingRatioThreshold(double aDouble)
+            throws IllegalArgumentException {
+        //false for NaN and infinity arguments
+        boolean tmpIsFinite = Double.isFinite(aDouble);
+        boolean tmpIsNegative = (aDouble < 0);
+        if(!tmpIsFinite || tmpIsNegative) {
+            throw new IllegalArgumentException("Given double is NaN, infinite or negative.");
+        }
+        if (!this.includeNrOfAttachedOxygens) {
+            throw new IllegalArgumentException("The number of attached oxygen atoms is currently not included in the " +
+                    "decision making process, so a ratio threshold makes no sense.");
+        }
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens, aDouble,
+                this.removeLinearSugarsInRing, this.setPropertyOfSugarContainingMolecules,
+                this.linearSugarCandidateMinSize, this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withRemoveLinearSugarsInRing(boolean aBoolean) {
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, aBoolean, this.setPropertyOfSugarContainingMolecules,
+                this.linearSugarCandidateMinSize, this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withPropertyOfSugarContainingMolecules(boolean aBoolean) {
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing, aBoolean,
+                this.linearSugarCandidateMinSize, this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withLinearSugarCandidateMinSize(int aMinSize) throws IllegalArgumentException {
+        if (aMinSize < 1) {
+            throw new IllegalArgumentException("Given minimum size is smaller than 1.");
+        }
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, aMinSize, this.linearSugarCandidateMaxSize);
+    }
+
+    public SugarRemovalSettings withLinearSugarCandidateMaxSize(int aMaxSize) throws IllegalArgumentException {
+        if (aMaxSize < 1) {
+            throw new IllegalArgumentException("Given maximum size is smaller than 1.");
+        }
+        return new SugarRemovalSettings(this.referencePatterns, this.detectGlycosidicBond, this.removeOnlyTerminal,
+                this.structuresToKeepMode, this.structureToKeepModeThreshold, this.includeNrOfAttachedOxygens,
+                this.attachedOxygensToAtomsInRingRatioThreshold, this.removeLinearSugarsInRing,
+                this.setPropertyOfSugarContainingMolecules, this.linearSugarCandidateMinSize, aMaxSize);
+    }
+
+}
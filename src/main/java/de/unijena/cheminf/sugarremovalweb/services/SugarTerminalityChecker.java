@@ -0,0 +1,126 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Decides whether sugar candidates are terminal in one state of a molecule without copying the molecule.
+ * <br>The molecule is translated once into its {@link MoleculeGraph}. A candidate is terminal if it is not a cut
+ * vertex of the molecule when all its atoms are contracted into one vertex, i.e. if removing its atoms leaves at most
+ * one connected component. The components are labelled with one traversal of the remaining atoms, so every check is
+ * linear in the size of the molecule. Too small components are only materialized for the structures to keep rules,
+ * when the removal actually disconnects the molecule.
+ * <br>The checker has to be recreated whenever atoms or bonds of the molecule change and must not be shared between
+ * threads.
+ *
+ * @author Jonas Schaub
+ * @author Maria Sorokina
+ */
+public class SugarTerminalityChecker {
+
+    private final MoleculeGraph graph;
+
+    /**
+     * Component of every atom after the last labelling, -1 for atoms of the removed substructure
+     */
+    private final int[] componentOfAtom;
+
+    private final boolean isConnected;
+
+
+    /**
+     * @param aMolecule the molecule in its current state
+     * @throws NullPointerException if the molecule is null
+     * @throws IllegalArgumentException if a bond of the molecule connects an atom that is not part of it
+     */
+    public SugarTerminalityChecker(IAtomContainer aMolecule) throws NullPointerException, IllegalArgumentException {
+        this(new MoleculeGraph(aMolecule));
+    }
+
+    /**
+     * @param aGraph primitive form of the molecule in its current state
+     * @throws NullPointerException if the graph is null
+     */
+    public SugarTerminalityChecker(MoleculeGraph aGraph) throws NullPointerException {
+        Objects.requireNonNull(aGraph, "Given graph is 'null'.");
+        this.graph = aGraph;
+        int tmpAtomCount = aGraph.getAtomCount();
+        this.componentOfAtom = new int[tmpAtomCount];
+        //same semantics as ConnectivityChecker.isConnected(), molecules with less than two atoms count as connected
+        this.isConnected = tmpAtomCount < 2 || aGraph.labelComponentsWithout(new BitSet(), this.componentOfAtom) == 1;
+    }
+
+
+    /**
+     * @return true if the molecule consists of at most one connected component
+     */
+    public boolean isConnected() {
+        return this.isConnected;
+    }
+
+    /**
+     * @param anAtom
+     * @return true if the given atom object is part of the molecule
+     */
+    public boolean contains(IAtom anAtom) {
+        return this.graph.contains(anAtom);
+    }
+
+    /**
+     * Determines whether the given substructure can be removed from the molecule without disconnecting it. Same
+     * results as removing the atoms of the substructure from a copy of the molecule and checking the connectivity of
+     * the copy, including the rules of the structures to keep mode: if the removal disconnects the molecule, the
+     * components that are too small to keep and contain no atom of any candidate are disregarded.
+     * <br>The substructure must be part of the molecule and the molecule must be connected, this is not checked here.
+     * @param aSubstructure the candidate to remove
+     * @param aCandidateList all current candidates
+     * @param aSettings
+     * @param aTooSmallTest decides whether a component is too small to keep according to the settings
+     * @return
+     * @throws NullPointerException if one of the arguments is null
+     */
+    public boolean isTerminal(IAtomContainer aSubstructure,
+                              List<IAtomContainer> aCandidateList,
+                              SugarRemovalSettings aSettings,
+                              Predicate<IAtomContainer> aTooSmallTest) throws NullPointerException {
+        Objects.requireNonNull(aSubstructure, "Given substructure is 'null'.");
+        Objects.requireNonNull(aCandidateList, "Given list of candidates is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        Objects.requireNonNull(aTooSmallTest, "Given test is 'null'.");
+        BitSet tmpRemovedAtoms = this.graph.toAtomSet(aSubstructure);
+        int tmpRemainingAtomCount = this.graph.getAtomCount() - tmpRemovedAtoms.cardinality();
+        int tmpComponentCount = this.graph.labelComponentsWithout(tmpRemovedAtoms, this.componentOfAtom);
+        //less than two remaining atoms are connected by definition, as in ConnectivityChecker.isConnected()
+        if (tmpRemainingAtomCount < 2 || tmpComponentCount <= 1) {
+            return true;
+        }
+        if (aSettings.getStructuresToKeepMode() == SugarRemovalService.StructuresToKeepMode.ALL) {
+            return false;
+        }
+        boolean[] tmpComponentHasCandidateAtom = new boolean[tmpComponentCount];
+        for (IAtomContainer tmpCandidate : aCandidateList) {
+            for (IAtom tmpAtom : tmpCandidate.atoms()) {
+                int tmpIndex = this.graph.indexOf(tmpAtom);
+                if (tmpIndex >= 0 && this.componentOfAtom[tmpIndex] >= 0) {
+                    tmpComponentHasCandidateAtom[this.componentOfAtom[tmpIndex]] = true;
+                }
+            }
+        }
+        List<IAtomContainer> tmpComponents = this.graph.buildComponents(this.componentOfAtom, tmpComponentCount);
+        int tmpKeptComponentCount = 0;
+        for (int i = 0; i < tmpComponentCount; i++) {
+            //May throw UnsupportedOperationException if a new StructureToKeepMode option has been added but not implemented
+            // in the test yet. Since this is a serious issue, the code is supposed to crash.
+            boolean tmpIsTooSmall = aTooSmallTest.test(tmpComponents.get(i));
+            if (!tmpIsTooSmall || tmpComponentHasCandidateAtom[i]) {
+                tmpKeptComponentCount++;
+            }
+        }
+        return tmpKeptComponentCount <= 1;
+    }
+}
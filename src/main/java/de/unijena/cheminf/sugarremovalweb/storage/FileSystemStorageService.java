@@ -5,45 +5,103 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 @Service
 public class FileSystemStorageService implements StorageService{
 
 
+    private static final Pattern SLOT_NAME =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64}");
+
     private final Path rootLocation;
 
+    private final Path incomingLocation;
+
+    private final boolean checksumUploads;
+
     @Autowired
     public FileSystemStorageService(StorageProperties properties) {
         this.rootLocation = Paths.get(properties.getLocation());
+        this.incomingLocation = Paths.get(properties.getIncomingLocation());
+        this.checksumUploads = properties.isChecksumUploads();
     }
 
 
+    /**
+     * Every upload gets a folder of its own below the root, so uploads with the same name never replace each other
+     * and can be stored and read at the same time without locking. The folder is named by a random id, or by the
+     * SHA-256 of the content if checksums are computed, then identical uploads share the stored file. The original
+     * file name is kept inside the folder as the readers use it for the format detection and the record labels.
+     * <br>Without checksum the multipart file is moved into place, which is a rename if the container received it in
+     * the incoming location. With checksum the content is copied once and hashed on the way.
+     * @param file
+     * @return the stored file
+     */
     @Override
-    public void store(MultipartFile file) {
+    public StoredFile store(MultipartFile file) {
         try {
             if (file.isEmpty()) {
                 throw new StorageException("Failed to store empty file " + file.getOriginalFilename());
             }
-            Files.copy(file.getInputStream(), this.rootLocation.resolve(file.getOriginalFilename()), StandardCopyOption.REPLACE_EXISTING);
+            String filename = toStorageFilename(file.getOriginalFilename());
+            if (!checksumUploads) {
+                Path target = Files.createDirectory(this.rootLocation.resolve(UUID.randomUUID().toString()))
+                        .resolve(filename);
+                //Part.write renames the received file if it can
+                file.transferTo(target.toAbsolutePath().toFile());
+                return new StoredFile(target, Files.size(target), null);
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Path received = Files.createTempFile(this.incomingLocation, "upload", ".part");
+            try {
+                long size;
+                try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                    size = Files.copy(in, received, StandardCopyOption.REPLACE_EXISTING);
+                }
+                String checksum = toHex(digest.digest());
+                Path target = Files.createDirectories(this.rootLocation.resolve(checksum)).resolve(filename);
+                if (!Files.exists(target)) {
+                    //a concurrent upload of the same content may win the race, the files are identical anyway
+                    Files.move(received, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return new StoredFile(target, size, checksum);
+            } finally {
+                Files.deleteIfExists(received);
+            }
         } catch (IOException e) {
             throw new StorageException("Failed to store file " + file.getOriginalFilename(), e);
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * Lists the stored uploads as "folder/filename"
+     */
     @Override
     public Stream<Path> loadAll() {
         try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
+            return Files.walk(this.rootLocation, 2)
+                    .filter(path -> path.getNameCount() - this.rootLocation.getNameCount() == 2)
+                    .filter(path -> isSlot(path.getParent().getFileName().toString()))
+                    .filter(Files::isRegularFile)
                     .map(path -> this.rootLocation.relativize(path));
         } catch (IOException e) {
             throw new StorageException("Failed to read stored files", e);
@@ -52,9 +110,19 @@ public class FileSystemStorageService implements StorageService{
     }
 
 
+    /**
+     * @param filename "folder/filename" of a stored upload
+     * @return the path of the upload
+     * @throws StorageFileNotFoundException if the name does not denote a stored upload, e.g. points outside the storage
+     */
     @Override
     public Path load(String filename) {
-        return rootLocation.resolve(filename);
+        Path file = rootLocation.resolve(filename).normalize();
+        Path relative = rootLocation.normalize().relativize(file);
+        if (relative.getNameCount() != 2 || !isSlot(relative.getName(0).toString())) {
+            throw new StorageFileNotFoundException("Could not read file: " + filename);
+        }
+        return file;
     }
 
     @Override
@@ -85,23 +153,43 @@ public class FileSystemStorageService implements StorageService{
     }
 
     @Override
-    public void deleteFile(MultipartFile file){
+    public void init() {
         try {
-            FileSystemUtils.deleteRecursively(this.rootLocation.resolve(file.getOriginalFilename()));
+            Files.createDirectories(rootLocation);
+            Files.createDirectories(incomingLocation);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new StorageException("Could not initialize storage", e);
         }
     }
 
-    @Override
-    public void init() {
-        try {
-            Files.createDirectory(rootLocation);
-        } catch (IOException e) {
-            throw new StorageException("Could not initialize storage", e);
+
+    /**
+     * @param originalFilename
+     * @return the name of the file without any directories, "upload" if there is none
+     */
+    private static String toStorageFilename(String originalFilename) {
+        String filename = StringUtils.getFilename(StringUtils.cleanPath(
+                originalFilename == null ? "" : originalFilename.replace('\\', '/')));
+        if (!StringUtils.hasText(filename) || filename.equals("..") || filename.equals(".")) {
+            return "upload";
         }
+        return filename;
     }
 
+    /**
+     * @param name
+     * @return whether the name is the name of an upload folder, a random id or a SHA-256
+     */
+    private static boolean isSlot(String name) {
+        return SLOT_NAME.matcher(name).matches();
+    }
 
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
 
 }
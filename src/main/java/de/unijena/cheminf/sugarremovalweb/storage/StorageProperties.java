@@ -11,6 +11,32 @@ public class StorageProperties {
      */
     private String location = "upload-dir";
 
+    /**
+     * Folder receiving the uploads while the request is read, on the same file system as the location, so that stored
+     * uploads are moved instead of copied
+     */
+    private String incomingLocation = "upload-dir/incoming";
+
+    /**
+     * Whether the SHA-256 of a stored upload is computed, it is then copied into the storage instead of moved
+     */
+    private boolean checksumUploads = false;
+
+    /**
+     * Minutes after which stored files not used by a job any more are deleted, 0 = kept until the quota is exceeded
+     */
+    private int retentionMinutes = 120;
+
+    /**
+     * Size of the storage above which the oldest files not used by a job are deleted, 0 = no quota
+     */
+    private long quotaMegabytes = 10240L;
+
+    /**
+     * Seconds between two sweeps of the storage janitor, 0 = no janitor
+     */
+    private int janitorIntervalSeconds = 60;
+
     public String getLocation() {
         return location;
     }
@@ -18,5 +44,44 @@ public class StorageProperties {
     public void setLocation(String location) {
         this.location = location;
     }
-}
 
+    public String getIncomingLocation() {
+        return incomingLocation;
+    }
+
+    public void setIncomingLocation(String incomingLocation) {
+        this.incomingLocation = incomingLocation;
+    }
+
+    public boolean isChecksumUploads() {
+        return checksumUploads;
+    }
+
+    public void setChecksumUploads(boolean checksumUploads) {
+        this.checksumUploads = checksumUploads;
+    }
+
+    public int getRetentionMinutes() {
+        return retentionMinutes;
+    }
+
+    public void setRetentionMinutes(int retentionMinutes) {
+        this.retentionMinutes = retentionMinutes;
+    }
+
+    public long getQuotaMegabytes() {
+        return quotaMegabytes;
+    }
+
+    public void setQuotaMegabytes(long quotaMegabytes) {
+        this.quotaMegabytes = quotaMegabytes;
+    }
+
+    public int getJanitorIntervalSeconds() {
+        return janitorIntervalSeconds;
+    }
+
+    public void setJanitorIntervalSeconds(int janitorIntervalSeconds) {
+        this.janitorIntervalSeconds = janitorIntervalSeconds;
+    }
+}
@@ -11,7 +11,13 @@ public interface StorageService {
 
     void init();
 
-    void store(MultipartFile file);
+    /**
+     * Moves the uploaded file into a folder of its own in the storage, or copies it in one pass if its checksum is
+     * computed
+     * @param file
+     * @return the stored file
+     */
+    StoredFile store(MultipartFile file);
 
     Stream<Path> loadAll();
 
@@ -21,7 +27,5 @@ public interface StorageService {
 
     void deleteAll();
 
-    void deleteFile(MultipartFile file);
-
 
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package de.unijena.cheminf.sugarremovalweb.storage;
+
+import java.nio.file.Path;
+
+/**
+ * An upload in the storage
+ */
+public class StoredFile {
+
+    private final Path path;
+
+    private final long size;
+
+    private final String checksum;
+
+
+    /**
+     * @param path
+     * @param size in bytes
+     * @param checksum hex SHA-256 of the content or null if it was not computed
+     */
+    public StoredFile(Path path, long size, String checksum) {
+        this.path = path;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the hex SHA-256 of the content or null if checksums are not computed
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,89 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes one row per result with the submitted SMILES, the aglycones and the removed sugars. The moieties of a column
+ * are joined with "." to one disconnected SMILES. Fields are quoted as in RFC 4180 if needed.
+ */
+public class CSVResultWriter implements ResultWriter {
+
+    static final String HEADER = "id,smiles,sugar_was_removed,deglycosylated_moieties,removed_sugar_moieties";
+
+    private final Writer writer;
+
+    private boolean headerWritten = false;
+
+
+    public CSVResultWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+
+    @Override
+    public void write(ProcessedMolecule processedMolecule) throws IOException {
+        writeHeaderOnce();
+        writeField(processedMolecule.getId());
+        writer.write(',');
+        writeField(processedMolecule.getSmiles());
+        writer.write(',');
+        writer.write(Boolean.toString(processedMolecule.isSugarWasRemoved()));
+        writer.write(',');
+        writeField(join(processedMolecule.getDeglycosylatedMoietiesSmiles()));
+        writer.write(',');
+        writeField(join(processedMolecule.getSugarMoietiesRemovedSmiles()));
+        writer.write("\r\n");
+    }
+
+    /**
+     * Writes the header if there were no results
+     */
+    @Override
+    public void close() throws IOException {
+        writeHeaderOnce();
+        writer.close();
+    }
+
+
+    private void writeHeaderOnce() throws IOException {
+        if (!headerWritten) {
+            writer.write(HEADER);
+            writer.write("\r\n");
+            headerWritten = true;
+        }
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String join(List<String> smilesList) {
+        if (smilesList == null) {
+            return null;
+        }
+        StringBuilder joined = new StringBuilder();
+        for (String smiles : smilesList) {
+            if (smiles == null || smiles.isEmpty()) {
+                continue;
+            }
+            if (joined.length() > 0) {
+                joined.append('.');
+            }
+            joined.append(smiles);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Moieties of a result that are exported as records of their own
+ */
+public enum ExportContent {
+
+    /**
+     * The deglycosylated moieties, i.e. the aglycones
+     */
+    AGLYCONES,
+
+    /**
+     * The removed sugar moieties
+     */
+    SUGARS,
+
+    /**
+     * The aglycones followed by the sugars
+     */
+    ALL;
+
+
+    /**
+     * @param processedMolecule
+     * @return the SMILES of the exported moieties of the result, without empty ones
+     */
+    public List<Moiety> getMoieties(ProcessedMolecule processedMolecule) {
+        List<Moiety> moieties = new ArrayList<>();
+        if (this != SUGARS) {
+            addMoieties(processedMolecule.getDeglycosylatedMoietiesSmiles(), Moiety.AGLYCONE, moieties);
+        }
+        if (this != AGLYCONES) {
+            addMoieties(processedMolecule.getSugarMoietiesRemovedSmiles(), Moiety.SUGAR, moieties);
+        }
+        return moieties.isEmpty() ? Collections.emptyList() : moieties;
+    }
+
+    /**
+     * @param name "aglycones", "sugars" or "all", in any case
+     * @return the content or null if the name is none of them
+     */
+    public static ExportContent forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (ExportContent content : values()) {
+            if (content.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return content;
+            }
+        }
+        return null;
+    }
+
+    private static void addMoieties(List<String> smilesList, String type, List<Moiety> moieties) {
+        if (smilesList == null) {
+            return;
+        }
+        for (String smiles : smilesList) {
+            //the aglycone of a molecule that consists of sugars only is empty
+            if (smiles != null && !smiles.isEmpty()) {
+                moieties.add(new Moiety(smiles, type));
+            }
+        }
+    }
+
+
+    /**
+     * One exported moiety
+     */
+    public static final class Moiety {
+
+        public static final String AGLYCONE = "aglycone";
+
+        public static final String SUGAR = "sugar";
+
+        private final String smiles;
+
+        private final String type;
+
+        private Moiety(String smiles, String type) {
+            this.smiles = smiles;
+            this.type = type;
+        }
+
+        public String getSmiles() {
+            return smiles;
+        }
+
+        /**
+         * @return {@link #AGLYCONE} or {@link #SUGAR}
+         */
+        public String getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * File formats the results can be exported to
+ */
+public enum ExportFormat {
+
+    SDF("chemical/x-mdl-sdfile", ".sdf"),
+
+    SMILES("chemical/x-daylight-smiles", ".smi"),
+
+    CSV("text/csv", ".csv");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String mediaType;
+
+    private final String extension;
+
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param out closed with the writer
+     * @param content the moieties written as records, CSV writes the aglycones and the sugars of a result in one row
+     * @return a writer of this format that writes UTF-8 to the given output
+     */
+    public ResultWriter createWriter(OutputStream out, ExportContent content) {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        switch (this) {
+            case SDF:
+                return new SDFResultWriter(writer, content);
+            case SMILES:
+                return new SMILESResultWriter(writer, content);
+            default:
+                return new CSVResultWriter(writer);
+        }
+    }
+
+    /**
+     * @param name "sdf", "smiles", "smi" or "csv", in any case
+     * @return the format or null if the name is none of them
+     */
+    public static ExportFormat forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.name().toLowerCase(Locale.ROOT).equals(lowerCaseName)
+                    || format.extension.substring(1).equals(lowerCaseName)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
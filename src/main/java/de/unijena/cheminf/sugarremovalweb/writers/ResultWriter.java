@@ -0,0 +1,26 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Export step for one file format. A writer writes every result as soon as it is given, nothing is collected, so an
+ * export costs the same memory for any number of results.
+ */
+public interface ResultWriter extends Closeable {
+
+    /**
+     * @param processedMolecule
+     * @throws IOException if the output cannot be written, usually because the client closed the connection
+     */
+    void write(ProcessedMolecule processedMolecule) throws IOException;
+
+    /**
+     * Writes what is still buffered and closes the output
+     * @throws IOException
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,79 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.SDFWriter;
+import org.openscience.cdk.layout.StructureDiagramGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes one SD record with 2D coordinates per exported moiety. The records carry the ID and the submitted SMILES of
+ * the result, the kind of the moiety and its SMILES as data items, so they can be traced back to the submission.
+ */
+public class SDFResultWriter implements ResultWriter {
+
+    private final SDFWriter sdfWriter;
+
+    private final ExportContent content;
+
+    private final SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private final StructureDiagramGenerator structureDiagramGenerator = new StructureDiagramGenerator();
+
+
+    public SDFResultWriter(Writer writer, ExportContent content) {
+        this.sdfWriter = new SDFWriter(writer);
+        this.content = content;
+    }
+
+
+    @Override
+    public void write(ProcessedMolecule processedMolecule) throws IOException {
+        List<ExportContent.Moiety> moieties = content.getMoieties(processedMolecule);
+        for (int i = 0; i < moieties.size(); i++) {
+            ExportContent.Moiety moiety = moieties.get(i);
+            IAtomContainer molecule;
+            try {
+                molecule = smilesParser.parseSmiles(moiety.getSmiles());
+            } catch (CDKException e) {
+                System.out.println("Moiety " + moiety.getSmiles() + " of " + processedMolecule.getId()
+                        + " cannot be exported: " + e.getMessage());
+                continue;
+            }
+            try {
+                structureDiagramGenerator.generateCoordinates(molecule);
+            } catch (CDKException e) {
+                //written without coordinates
+                e.printStackTrace();
+            }
+            if (processedMolecule.getId() != null) {
+                molecule.setProperty(CDKConstants.TITLE, processedMolecule.getId());
+                molecule.setProperty("ID", processedMolecule.getId());
+            }
+            molecule.setProperty("SUBMITTED_SMILES", processedMolecule.getSmiles());
+            molecule.setProperty("MOIETY_TYPE", moiety.getType());
+            molecule.setProperty("MOIETY_NUMBER", i + 1);
+            molecule.setProperty("MOIETY_SMILES", moiety.getSmiles());
+            try {
+                sdfWriter.write(molecule);
+            } catch (CDKException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sdfWriter.close();
+    }
+}
@@ -0,0 +1,42 @@
+package de.unijena.cheminf.sugarremovalweb.writers;
+
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one line "SMILES ID" per exported moiety, the SMILES file format the readers accept. The moieties of one
+ * result share its ID.
+ */
+public class SMILESResultWriter implements ResultWriter {
+
+    private final Writer writer;
+
+    private final ExportContent content;
+
+
+    public SMILESResultWriter(Writer writer, ExportContent content) {
+        this.writer = writer;
+        this.content = content;
+    }
+
+
+    @Override
+    public void write(ProcessedMolecule processedMolecule) throws IOException {
+        for (ExportContent.Moiety moiety : content.getMoieties(processedMolecule)) {
+            writer.write(moiety.getSmiles());
+            if (processedMolecule.getId() != null) {
+                writer.write(' ');
+                //the name ends at the line break
+                writer.write(processedMolecule.getId().replaceAll("[\\r\\n]+", " "));
+            }
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
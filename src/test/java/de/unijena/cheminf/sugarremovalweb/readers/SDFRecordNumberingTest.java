@@ -0,0 +1,122 @@
+package de.unijena.cheminf.sugarremovalweb.readers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The records of an SD file get the same numbers and the record limit stops at the same record whether the file is
+ * parsed on the reading thread or on the ingest threads, also if a record in between cannot be parsed
+ */
+class SDFRecordNumberingTest {
+
+    private static final String FILE_NAME = "broken.sdf";
+
+    private static final String BROKEN_RECORD = "broken\n  test\n\n"
+            + "  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+            + "GARBAGE LINE\n"
+            + "M  END\n"
+            + "$$$$\n";
+
+    /**
+     * Keeps every parsed molecule, the checks of the standardization do not matter for the numbering
+     */
+    private final MoleculeStandardizer standardizer = new MoleculeStandardizer(null) {
+        @Override
+        public IAtomContainer standardize(IAtomContainer molecule) {
+            return molecule;
+        }
+    };
+
+    private ExecutorService executor;
+
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    @Test
+    void brokenRecordKeepsItsNumber() throws IOException {
+        byte[] file = sdFile();
+        List<String> expected = Arrays.asList(label(1), label(2), label(4), label(5));
+        assertEquals(expected, readSerial(file, 100));
+        assertEquals(expected, readParallel(file, 100));
+    }
+
+    @Test
+    void brokenRecordCountsAgainstTheLimit() throws IOException {
+        byte[] file = sdFile();
+        List<String> expected = Arrays.asList(label(1), label(2));
+        assertEquals(expected, readSerial(file, 3));
+        assertEquals(expected, readParallel(file, 3));
+    }
+
+
+    private List<String> readSerial(byte[] file, int maxRecords) throws IOException {
+        SplittableReader reader = (SplittableReader) MoleculeFormat.SDF.createReader();
+        return labels(new IngestMoleculeIterator(reader.open(new ByteArrayInputStream(file)), MoleculeFormat.SDF,
+                FILE_NAME, new RecordLimit(maxRecords), standardizer));
+    }
+
+    private List<String> readParallel(byte[] file, int maxRecords) throws IOException {
+        SplittableReader reader = (SplittableReader) MoleculeFormat.SDF.createReader();
+        //chunks of one record, so the broken record is parsed on its own
+        return labels(new ParallelIngestMoleculeIterator(reader.split(new ByteArrayInputStream(file)), reader,
+                MoleculeFormat.SDF, FILE_NAME, new RecordLimit(maxRecords), standardizer, executor, 1, 4));
+    }
+
+    private static List<String> labels(MoleculeIterator molecules) throws IOException {
+        List<String> labels = new ArrayList<>();
+        try (MoleculeIterator iterator = molecules) {
+            while (iterator.hasNext()) {
+                labels.add(iterator.next().getProperty("MOL_NUMBER_IN_FILE"));
+            }
+        }
+        return labels;
+    }
+
+    private static String label(int recordNumber) {
+        return MoleculeFormat.SDF.getRecordLabel(FILE_NAME, recordNumber);
+    }
+
+    /**
+     * Five records, the third cannot be parsed
+     */
+    private static byte[] sdFile() {
+        StringBuilder file = new StringBuilder();
+        file.append(ethanol("first")).append(ethanol("second")).append(BROKEN_RECORD)
+                .append(ethanol("fourth")).append(ethanol("fifth"));
+        return file.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String ethanol(String title) {
+        return title + "\n  test\n\n"
+                + "  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+                + "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+                + "    1.5000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+                + "    2.2500    1.2990    0.0000 O   0  0  0  0  0  0  0  0  0  0  0  0\n"
+                + "  1  2  1  0\n"
+                + "  2  3  1  0\n"
+                + "M  END\n"
+                + "$$$$\n";
+    }
+}
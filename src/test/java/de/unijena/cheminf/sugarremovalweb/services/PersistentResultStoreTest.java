@@ -0,0 +1,208 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.unijena.cheminf.sugarremovalweb.model.ProcessedMolecule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the {@link PersistentResultStore} against a log file in a temporary directory and reopens it the way a
+ * restart does
+ */
+class PersistentResultStoreTest {
+
+    private static final long MAX_BYTES = 1024L * 1024L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    void resultsSurviveReopening() {
+        Path file = directory.resolve("results.log");
+        PersistentResultStore store = open(file, MAX_BYTES);
+        for (int i = 0; i < 10; i++) {
+            store.put(key(i), result(i));
+        }
+        //replaces the first result
+        store.put(key(0), result(100));
+        store.close();
+
+        store = open(file, MAX_BYTES);
+        assertEquals(10, store.size());
+        assertEquals(result(100).getSmiles(), store.get(key(0)).getSmiles());
+        for (int i = 1; i < 10; i++) {
+            ProcessedMolecule stored = store.get(key(i));
+            assertNotNull(stored, key(i));
+            assertEquals(result(i).getSmiles(), stored.getSmiles());
+            assertEquals(result(i).getDeglycosylatedMoietiesSmiles(), stored.getDeglycosylatedMoietiesSmiles());
+        }
+        assertNull(store.get(key(10)));
+        store.close();
+    }
+
+    @Test
+    void halfWrittenLastRecordIsCutOff() throws IOException {
+        Path file = directory.resolve("results.log");
+        PersistentResultStore store = open(file, MAX_BYTES);
+        store.put(key(1), result(1));
+        store.put(key(2), result(2));
+        store.close();
+        long completeBytes = Files.size(file);
+        store = open(file, MAX_BYTES);
+        store.put(key(3), result(3));
+        store.close();
+        //a crash in the middle of the last write
+        truncate(file, completeBytes + (Files.size(file) - completeBytes) / 2);
+
+        store = open(file, MAX_BYTES);
+        assertEquals(completeBytes, store.getFileBytes());
+        assertEquals(completeBytes, Files.size(file));
+        assertEquals(2, store.size());
+        assertEquals(result(1).getSmiles(), store.get(key(1)).getSmiles());
+        assertEquals(result(2).getSmiles(), store.get(key(2)).getSmiles());
+        assertNull(store.get(key(3)));
+        //appended after the cut
+        store.put(key(4), result(4));
+        store.close();
+
+        store = open(file, MAX_BYTES);
+        assertEquals(3, store.size());
+        assertEquals(result(4).getSmiles(), store.get(key(4)).getSmiles());
+        store.close();
+    }
+
+    @Test
+    void fileOfAnotherVersionIsEmptied() throws IOException {
+        Path file = directory.resolve("results.log");
+        PersistentResultStore store = open(file, MAX_BYTES);
+        store.put(key(1), result(1));
+        store.close();
+        //magic number and version
+        long headerBytes = 8L;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(4);
+            channel.read(version, 4L);
+            version.flip();
+            int otherVersion = version.getInt() + 1;
+            version.clear();
+            version.putInt(otherVersion).flip();
+            channel.write(version, 4L);
+        }
+
+        store = open(file, MAX_BYTES);
+        assertEquals(0, store.size());
+        assertNull(store.get(key(1)));
+        assertEquals(headerBytes, store.getFileBytes());
+        assertEquals(headerBytes, Files.size(file));
+        store.put(key(2), result(2));
+        store.close();
+
+        //the header carries the current version again
+        store = open(file, MAX_BYTES);
+        assertEquals(1, store.size());
+        assertEquals(result(2).getSmiles(), store.get(key(2)).getSmiles());
+        store.close();
+    }
+
+    @Test
+    void compactionStaysWithinMaximumSizeAndDropsOldestResults() throws IOException {
+        Path file = directory.resolve("results.log");
+        long maxBytes = 16L * 1024L;
+        int count = 200;
+        PersistentResultStore store = open(file, maxBytes);
+        for (int i = 0; i < count; i++) {
+            store.put(key(i), result(i));
+        }
+        store.close();
+        assertTrue(Files.size(file) <= maxBytes, () -> file + " has " + sizeOf(file) + " bytes");
+        assertTrue(store.getCompactionCount() > 0);
+        assertTrue(store.getDroppedCount() > 0);
+        assertEquals(0L, store.getSkippedCount());
+
+        store = open(file, maxBytes);
+        int firstKept = 0;
+        while (firstKept < count && store.get(key(firstKept)) == null) {
+            firstKept++;
+        }
+        assertTrue(firstKept > 0 && firstKept < count);
+        for (int i = firstKept; i < count; i++) {
+            ProcessedMolecule stored = store.get(key(i));
+            assertNotNull(stored, key(i));
+            assertEquals(result(i).getSmiles(), stored.getSmiles());
+        }
+        assertEquals(count - firstKept, store.size());
+        store.close();
+    }
+
+    @Test
+    void queuedResultIsFoundBeforeItIsWritten() {
+        Path file = directory.resolve("results.log");
+        PersistentResultStore store = open(file, MAX_BYTES);
+        synchronized (store) {
+            //the writer thread cannot append while the lock is held
+            store.put(key(1), result(1));
+            assertEquals(0, store.size());
+            ProcessedMolecule queued = store.get(key(1));
+            assertNotNull(queued);
+            assertEquals(result(1).getSmiles(), queued.getSmiles());
+            assertEquals(1L, store.getHitCount());
+        }
+        store.close();
+
+        store = open(file, MAX_BYTES);
+        assertEquals(result(1).getSmiles(), store.get(key(1)).getSmiles());
+        store.close();
+    }
+
+
+    private PersistentResultStore open(Path file, long maxBytes) {
+        PersistentResultStore store = new PersistentResultStore(file, maxBytes, 0L, objectMapper);
+        assertTrue(store.isEnabled());
+        return store;
+    }
+
+    private static String key(int i) {
+        return String.format("KEY%05d-AAAAAAAAAA-N", i);
+    }
+
+    private static ProcessedMolecule result(int i) {
+        ProcessedMolecule result = new ProcessedMolecule();
+        result.setSmiles("OCC1OC(O)C(O)C(O)C1O" + ".C" + i);
+        result.setSugarWasRemoved(i % 2 == 0);
+        result.setSugarsToRemove(new ArrayList<>(Arrays.asList("allSugars")));
+        result.setDeglycosylatedMoietiesSmiles(new ArrayList<>(Arrays.asList("C" + i)));
+        result.setSugarMoietiesRemovedSmiles(new ArrayList<>(Arrays.asList("OCC1OC(O)C(O)C(O)C1O")));
+        return result;
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+}
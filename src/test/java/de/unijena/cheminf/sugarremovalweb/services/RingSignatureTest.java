@@ -0,0 +1,261 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@link RingSignature} accepts exactly the pairs of simple cycles the {@link UniversalIsomorphismTester} accepts,
+ * and {@link SugarRemovalService#getPotentialSugarCycles} finds the same rings as the former loop, which tested every
+ * pair of reference ring and isolated ring with the tester and is kept below
+ */
+class RingSignatureTest {
+
+    private static final String[] REFERENCE_RINGS = {
+            //defaults
+            "C1CCOC1", "C1CCOCC1", "C1CCCOCC1",
+            //aromatic, unsaturated, charged and other heteroatoms
+            "c1ccoc1", "C1=COCC1", "C1CCOC=C1", "C1OC=CO1", "C1COCO1", "C1CCNC1", "C1CC[O+]CC1", "C1CCSCC1",
+            "c1ccccc1", "C1=CC=CC=C1", "C1CC1",
+            //not simple cycles
+            "C1CCC2OCCC2C1", "CCOC"
+    };
+
+    private static final String[] MOLECULES = {
+            //glycosides
+            "CC1C(C(C(C(O1)OCC2C(C(C(C(O2)OC3=C(OC4=CC(=CC(=C4C3=O)O)O)C5=CC(=C(C=C5)O)O)O)O)O)O)O)O",
+            "C1=CC=C(C=C1)C(C#N)OC2C(C(C(C(O2)COC3C(C(C(C(O3)CO)O)O)O)O)O)O",
+            "OCC1OC(OC2(CO)OC(CO)C(O)C2O)C(O)C(O)C1O",
+            "CCCCOC1OC(CO)C(O)C(O)C1OCCN",
+            //furans, pyrans, oxonium and thio rings, exocyclic double bonds
+            "OCC1OC(O)C(O)C1=O",
+            "O=C1CCOC1",
+            "c1ccoc1CC1CCOCC1",
+            "C1=COC(CO)CC1",
+            "C1CC[O+](C)CC1",
+            "OC1CSC(CO)C(O)C1O",
+            "OC1CNC(CO)C1O",
+            //rings alone and ring systems
+            "C1CCOCC1",
+            "C1CCC2OCCC2C1",
+            "C1CCOC1.C1CCOCC1"
+    };
+
+    private static final int RANDOM_CYCLES = 2000;
+
+    private static final int PERMUTATIONS_PER_REFERENCE = 30;
+
+
+    @Test
+    void sameResultsAsTesterForSimpleCycles() throws CDKException {
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> references = new ArrayList<>();
+        for (String smiles : REFERENCE_RINGS) {
+            references.add(parser.parseSmiles(smiles));
+        }
+        assertFalse(RingSignature.of(parser.parseSmiles("C1CCC2OCCC2C1")).isSimpleCycle());
+        assertFalse(RingSignature.of(parser.parseSmiles("CCOC")).isSimpleCycle());
+        Random random = new Random(42L);
+        List<IAtomContainer> rings = new ArrayList<>();
+        for (String smiles : MOLECULES) {
+            rings.addAll(new MoleculeAnalysisContext(parser.parseSmiles(smiles)).getRingSearch()
+                    .isolatedRingFragments());
+        }
+        for (int i = 0; i < RANDOM_CYCLES; i++) {
+            rings.add(randomCycle(random));
+        }
+        for (IAtomContainer reference : references) {
+            for (int i = 0; i < PERMUTATIONS_PER_REFERENCE; i++) {
+                rings.add(permutation(reference, random));
+            }
+        }
+        UniversalIsomorphismTester tester = new UniversalIsomorphismTester();
+        int comparedCount = 0;
+        int isomorphCount = 0;
+        for (IAtomContainer reference : references) {
+            RingSignature referenceSignature = RingSignature.of(reference);
+            for (IAtomContainer ring : rings) {
+                RingSignature ringSignature = RingSignature.of(ring);
+                boolean expected = tester.isIsomorph(reference, ring);
+                if (ring.getAtomCount() != referenceSignature.getAtomCount()) {
+                    //the shortcut of the removal
+                    assertFalse(expected);
+                    continue;
+                }
+                if (!referenceSignature.isSimpleCycle() || !ringSignature.isSimpleCycle()) {
+                    continue;
+                }
+                assertEquals(expected, referenceSignature.isIsomorph(ringSignature),
+                        () -> "reference " + references.indexOf(reference) + ", ring " + rings.indexOf(ring));
+                comparedCount++;
+                if (expected) {
+                    isomorphCount++;
+                }
+            }
+        }
+        //the sample covers both outcomes
+        assertTrue(isomorphCount > 0 && isomorphCount < comparedCount);
+    }
+
+    @Test
+    void sameCyclesAsTesterLoop() throws CDKException {
+        SugarRemovalService service = new SugarRemovalService();
+        List<SugarRemovalSettings> settingsList = new ArrayList<>();
+        SugarReferencePatterns defaults = new SugarPatternRegistry().getDefaultPatterns();
+        settingsList.add(new SugarRemovalSettings(defaults));
+        settingsList.add(new SugarRemovalSettings(SugarReferencePatterns.compile(
+                defaults.getLinearSugarsSmiles().toArray(new String[0]), REFERENCE_RINGS)));
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        int foundCount = 0;
+        for (SugarRemovalSettings settings : settingsList) {
+            for (String smiles : MOLECULES) {
+                IAtomContainer molecule = parser.parseSmiles(smiles);
+                List<List<Integer>> expected = toAtomIndices(molecule,
+                        findPotentialSugarCyclesByTester(new MoleculeAnalysisContext(molecule), settings));
+                List<List<Integer>> actual = toAtomIndices(molecule,
+                        service.getPotentialSugarCycles(new MoleculeAnalysisContext(molecule), settings));
+                assertEquals(expected, actual, smiles);
+                foundCount += actual.size();
+            }
+        }
+        assertTrue(foundCount > 0);
+    }
+
+
+    /**
+     * @return a cycle of three to eight atoms with random elements, bond orders, bond directions, bond order in the
+     * container and aromaticity flags
+     */
+    private static IAtomContainer randomCycle(Random random) {
+        String[] symbols = {"C", "C", "C", "O", "N", "S"};
+        IBond.Order[] orders = {IBond.Order.SINGLE, IBond.Order.SINGLE, IBond.Order.DOUBLE, IBond.Order.UNSET};
+        int size = 3 + random.nextInt(6);
+        IAtomContainer cycle = new AtomContainer();
+        for (int i = 0; i < size; i++) {
+            cycle.addAtom(new Atom(symbols[random.nextInt(symbols.length)]));
+        }
+        List<IBond> bonds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            IAtom first = cycle.getAtom(i);
+            IAtom second = cycle.getAtom((i + 1) % size);
+            IBond.Order order = orders[random.nextInt(orders.length)];
+            IBond bond = random.nextBoolean() ? new Bond(first, second, order) : new Bond(second, first, order);
+            bond.setIsAromatic(random.nextInt(6) == 0);
+            bonds.add(bond);
+        }
+        Collections.shuffle(bonds, random);
+        for (IBond bond : bonds) {
+            cycle.addBond(bond);
+        }
+        return cycle;
+    }
+
+    /**
+     * @return the atoms and bonds of the structure in random order
+     */
+    private static IAtomContainer permutation(IAtomContainer structure, Random random) {
+        List<IAtom> atoms = new ArrayList<>();
+        for (IAtom atom : structure.atoms()) {
+            atoms.add(atom);
+        }
+        List<IBond> bonds = new ArrayList<>();
+        for (IBond bond : structure.bonds()) {
+            bonds.add(bond);
+        }
+        Collections.shuffle(atoms, random);
+        Collections.shuffle(bonds, random);
+        IAtomContainer permutation = new AtomContainer();
+        for (IAtom atom : atoms) {
+            permutation.addAtom(atom);
+        }
+        for (IBond bond : bonds) {
+            permutation.addBond(bond);
+        }
+        return permutation;
+    }
+
+    private static List<List<Integer>> toAtomIndices(IAtomContainer molecule, List<IAtomContainer> rings) {
+        List<List<Integer>> indices = new ArrayList<>(rings.size());
+        for (IAtomContainer ring : rings) {
+            List<Integer> ringIndices = new ArrayList<>(ring.getAtomCount());
+            for (IAtom atom : ring.atoms()) {
+                ringIndices.add(molecule.indexOf(atom));
+            }
+            indices.add(ringIndices);
+        }
+        return indices;
+    }
+
+    /**
+     * The former implementation of SugarRemovalService.getPotentialSugarCycles, which tested every pair of reference
+     * ring and isolated ring with a new UniversalIsomorphismTester. The check of the exocyclic bonds is inlined.
+     */
+    private static List<IAtomContainer> findPotentialSugarCyclesByTester(MoleculeAnalysisContext aContext,
+                                                                         SugarRemovalSettings aSettings) {
+        IAtomContainer aMolecule = aContext.getMolecule();
+        if (aMolecule.isEmpty()) {
+            return new ArrayList<IAtomContainer>(0);
+        }
+        List<IAtomContainer> tmpIsolatedRings = aContext.getRingSearch().isolatedRingFragments();
+        if (tmpIsolatedRings.isEmpty()) {
+            return new ArrayList<IAtomContainer>(0);
+        }
+        List<IAtomContainer> tmpSugarCandidates = new ArrayList<>(tmpIsolatedRings.size());
+        MoleculeGraph tmpGraph = null;
+        for (IAtomContainer tmpReferenceRing : aSettings.getReferencePatterns().getRingSugars()) {
+            for (IAtomContainer tmpIsolatedRing : tmpIsolatedRings) {
+                if (Objects.isNull(tmpIsolatedRing) || tmpIsolatedRing.isEmpty()) {
+                    continue;
+                }
+                boolean tmpIsIsomorph = false;
+                UniversalIsomorphismTester tmpUnivIsoTester = new UniversalIsomorphismTester();
+                try {
+                    tmpIsIsomorph = tmpUnivIsoTester.isIsomorph(tmpReferenceRing, tmpIsolatedRing);
+                } catch (CDKException aCDKException) {
+                    aCDKException.printStackTrace();
+                    continue;
+                }
+                if (tmpIsIsomorph) {
+                    if (Objects.isNull(tmpGraph)) {
+                        tmpGraph = aContext.getGraph();
+                    }
+                    BitSet tmpRing = tmpGraph.toAtomSet(tmpIsolatedRing);
+                    boolean tmpAreAllExocyclicBondsSingle = true;
+                    for (int tmpRingAtom = tmpRing.nextSetBit(0); tmpRingAtom >= 0;
+                         tmpRingAtom = tmpRing.nextSetBit(tmpRingAtom + 1)) {
+                        int[] tmpNeighbors = tmpGraph.getNeighbors(tmpRingAtom);
+                        int[] tmpBondOrders = tmpGraph.getBondOrders(tmpRingAtom);
+                        for (int i = 0; i < tmpNeighbors.length; i++) {
+                            if (!tmpRing.get(tmpNeighbors[i]) && tmpBondOrders[i] > 1) {
+                                tmpAreAllExocyclicBondsSingle = false;
+                            }
+                        }
+                    }
+                    if (tmpAreAllExocyclicBondsSingle) {
+                        tmpSugarCandidates.add(tmpIsolatedRing);
+                    }
+                }
+            }
+        }
+        return tmpSugarCandidates;
+    }
+}
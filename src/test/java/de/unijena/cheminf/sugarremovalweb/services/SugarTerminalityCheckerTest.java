@@ -0,0 +1,243 @@
+package de.unijena.cheminf.sugarremovalweb.services;
+
+import de.unijena.cheminf.sugarremovalweb.services.SugarRemovalService.StructuresToKeepMode;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.ConnectivityChecker;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@link SugarTerminalityChecker} behind {@link SugarRemovalService#isTerminal} gives the same results and
+ * exceptions as the former clone-based check, which is kept below, for random candidates of a set of molecules in all
+ * structures to keep modes
+ */
+class SugarTerminalityCheckerTest {
+
+    private static final String[] SMILES = {
+            //glycosides
+            "CC1C(C(C(C(O1)OCC2C(C(C(C(O2)OC3=C(OC4=CC(=CC(=C4C3=O)O)O)C5=CC(=C(C=C5)O)O)O)O)O)O)O)O",
+            "C1=CC=C(C=C1)C(C#N)OC2C(C(C(C(O2)COC3C(C(C(C(O3)CO)O)O)O)O)O)O",
+            "OCC1OC(OC2(CO)OC(CO)C(O)C2O)C(O)C(O)C1O",
+            "OC1C(O)C(O)C(OC2C(O)C(O)C(O)C(CO)O2)OC1COC1OC(CO)C(O)C(O)C1OC1OC(CO)C(O)C(O)C1O",
+            "CCCCOC1OC(CO)C(O)C(O)C1OCCN",
+            //linear sugars and esters
+            "OCC(O)C(O)C(O)C(O)COC(=O)c1ccccc1",
+            "OCC(O)C(O)C(O)COP(=O)(O)O",
+            //rings joined by short linkers, small side chains and explicit hydrogens
+            "C1CCOC1CCCCC2CCCCO2",
+            "C(C1CC1)C2CC2",
+            "CC(C)(C)c1ccccc1OC",
+            "[H]OC([H])([H])C",
+            //unconnected parents
+            "O.OCC",
+            "OCC1OC(O)C(O)C(O)C1O.CCO"
+    };
+
+    private static final int TRIALS_PER_MOLECULE = 40;
+
+    private static final String OLD_INDEX_KEY = "SugarTerminalityCheckerTest.INDEX";
+
+
+    @Test
+    void sameResultsAsCloneBasedCheck() throws CDKException {
+        SugarRemovalService service = new SugarRemovalService();
+        List<SugarRemovalSettings> settingsList = createSettings();
+        SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        Random random = new Random(42L);
+        int checkCount = 0;
+        int terminalCount = 0;
+        int exceptionCount = 0;
+        for (String smiles : SMILES) {
+            IAtomContainer molecule = parser.parseSmiles(smiles);
+            IAtomContainer otherMolecule = parser.parseSmiles("OCC1OC(O)C(O)C(O)C1O");
+            for (int trial = 0; trial < TRIALS_PER_MOLECULE; trial++) {
+                List<IAtomContainer> candidates = new ArrayList<>();
+                int candidateCount = 1 + random.nextInt(3);
+                for (int i = 0; i < candidateCount; i++) {
+                    candidates.add(randomSubstructure(molecule, random));
+                }
+                List<IAtomContainer> checked = new ArrayList<>(candidates);
+                if (trial % 10 == 0) {
+                    //not part of the parent, the candidates of the removal always are
+                    checked.add(randomSubstructure(otherMolecule, random));
+                }
+                for (SugarRemovalSettings settings : settingsList) {
+                    for (IAtomContainer candidate : checked) {
+                        String expected = outcome(() -> isTerminalByClone(service, candidate, molecule, candidates,
+                                settings));
+                        String actual = outcome(() -> service.isTerminal(candidate, molecule, candidates, settings));
+                        assertEquals(expected, actual, () -> smiles + ", " + settings.getStructuresToKeepMode() + " "
+                                + settings.getStructureToKeepModeThreshold());
+                        checkCount++;
+                        if ("true".equals(actual)) {
+                            terminalCount++;
+                        } else if (!"false".equals(actual)) {
+                            exceptionCount++;
+                        }
+                    }
+                }
+            }
+        }
+        //the sample covers all outcomes
+        assertTrue(terminalCount > 0 && exceptionCount > 0 && terminalCount + exceptionCount < checkCount);
+    }
+
+
+    private static List<SugarRemovalSettings> createSettings() {
+        SugarRemovalSettings defaults = new SugarRemovalSettings(new SugarPatternRegistry().getDefaultPatterns());
+        List<SugarRemovalSettings> settingsList = new ArrayList<>();
+        settingsList.add(defaults.withStructuresToKeepMode(StructuresToKeepMode.ALL));
+        for (int threshold : new int[]{1, 3, 5, 12}) {
+            settingsList.add(defaults.withStructuresToKeepMode(StructuresToKeepMode.HEAVY_ATOM_COUNT)
+                    .withStructuresToKeepThreshold(threshold));
+        }
+        for (int threshold : new int[]{20, 60, 150, 300}) {
+            settingsList.add(defaults.withStructuresToKeepMode(StructuresToKeepMode.MOLECULAR_WEIGHT)
+                    .withStructuresToKeepThreshold(threshold));
+        }
+        return settingsList;
+    }
+
+    /**
+     * @return a connected substructure of up to eight atoms, grown from a random atom
+     */
+    private static IAtomContainer randomSubstructure(IAtomContainer molecule, Random random) {
+        IAtom start = molecule.getAtom(random.nextInt(molecule.getAtomCount()));
+        Set<IAtom> atoms = new LinkedHashSet<>();
+        atoms.add(start);
+        int size = 1 + random.nextInt(Math.min(8, molecule.getAtomCount()));
+        List<IAtom> frontier = new ArrayList<>();
+        frontier.add(start);
+        while (atoms.size() < size && !frontier.isEmpty()) {
+            IAtom atom = frontier.get(random.nextInt(frontier.size()));
+            List<IAtom> neighbors = molecule.getConnectedAtomsList(atom);
+            neighbors.removeAll(atoms);
+            if (neighbors.isEmpty()) {
+                frontier.remove(atom);
+                continue;
+            }
+            IAtom neighbor = neighbors.get(random.nextInt(neighbors.size()));
+            atoms.add(neighbor);
+            frontier.add(neighbor);
+        }
+        IAtomContainer substructure = molecule.getBuilder().newAtomContainer();
+        for (IAtom atom : atoms) {
+            substructure.addAtom(atom);
+        }
+        return substructure;
+    }
+
+    private static String outcome(Check check) {
+        try {
+            return String.valueOf(check.isTerminal());
+        } catch (Exception e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * The former implementation of SugarRemovalService.isTerminal, which removed the substructure from a clone of the
+     * parent and checked the connectivity of the clone. The atoms were matched by unique indices, the setting of the
+     * indices is inlined.
+     */
+    private static boolean isTerminalByClone(SugarRemovalService service,
+                                             IAtomContainer aSubstructure,
+                                             IAtomContainer aParentMolecule,
+                                             List<IAtomContainer> aCandidateList,
+                                             SugarRemovalSettings aSettings)
+            throws NullPointerException, IllegalArgumentException, CloneNotSupportedException {
+        //<editor-fold desc="Checks">
+        Objects.requireNonNull(aSubstructure, "Given substructure is 'null'.");
+        Objects.requireNonNull(aSettings, "Given settings are 'null'.");
+        Objects.requireNonNull(aParentMolecule, "Given parent molecule is 'null'.");
+        Objects.requireNonNull(aCandidateList, "Given list of candidates is 'null'.");
+        boolean tmpIsParent = true;
+        for (IAtom tmpAtom : aSubstructure.atoms()) {
+            if (!aParentMolecule.contains(tmpAtom)) {
+                tmpIsParent = false;
+                break;
+            }
+        }
+        if (!tmpIsParent) {
+            throw new IllegalArgumentException("Given substructure is not part of the given parent molecule.");
+        }
+        boolean tmpIsUnconnected = !ConnectivityChecker.isConnected(aParentMolecule);
+        if (tmpIsUnconnected) {
+            throw new IllegalArgumentException("Parent molecule is already unconnected.");
+        }
+        int tmpAtomIndex = 0;
+        for (IAtom tmpAtom : aParentMolecule.atoms()) {
+            tmpAtom.setProperty(OLD_INDEX_KEY, tmpAtomIndex++);
+        }
+        //</editor-fold>
+        boolean tmpIsTerminal;
+        IAtomContainer tmpMoleculeClone = aParentMolecule.clone();
+        IAtomContainer tmpSubstructureClone = aSubstructure.clone();
+        HashMap<Integer, IAtom> tmpIndexToAtomMap = new HashMap<>(tmpMoleculeClone.getAtomCount() + 1, 1);
+        for (IAtom tmpAtom : tmpMoleculeClone.atoms()) {
+            tmpIndexToAtomMap.put(tmpAtom.getProperty(OLD_INDEX_KEY), tmpAtom);
+        }
+        for (IAtom tmpAtom : tmpSubstructureClone.atoms()) {
+            tmpMoleculeClone.removeAtom(tmpIndexToAtomMap.get(tmpAtom.getProperty(OLD_INDEX_KEY)));
+        }
+        boolean tmpIsConnected = ConnectivityChecker.isConnected(tmpMoleculeClone);
+        if (aSettings.getStructuresToKeepMode() == StructuresToKeepMode.ALL) {
+            tmpIsTerminal = tmpIsConnected;
+        } else {
+            if (tmpIsConnected) {
+                tmpIsTerminal = true;
+            } else {
+                IAtomContainerSet tmpComponents = ConnectivityChecker.partitionIntoMolecules(tmpMoleculeClone);
+                HashSet<Integer> tmpAtomIndicesThatArePartOfSugarCandidates = new HashSet<>(aParentMolecule.getAtomCount(), 0.8f);
+                for (IAtomContainer tmpCandidate : aCandidateList) {
+                    for (IAtom tmpAtom : tmpCandidate.atoms()) {
+                        int tmpIndex = tmpAtom.getProperty(OLD_INDEX_KEY);
+                        tmpAtomIndicesThatArePartOfSugarCandidates.add(tmpIndex);
+                    }
+                }
+                for (IAtomContainer tmpComponent : tmpComponents.atomContainers()) {
+                    if (Objects.isNull(tmpComponent) || tmpComponent.isEmpty()) {
+                        continue;
+                    }
+                    boolean tmpIsTooSmall = service.isTooSmall(tmpComponent, aSettings);
+                    boolean tmpIsPartOfSugarCandidate = false;
+                    for (IAtom tmpAtom : tmpComponent.atoms()) {
+                        int tmpIndex = tmpAtom.getProperty(OLD_INDEX_KEY);
+                        if (tmpAtomIndicesThatArePartOfSugarCandidates.contains(tmpIndex)) {
+                            tmpIsPartOfSugarCandidate = true;
+                            break;
+                        }
+                    }
+                    if (tmpIsTooSmall && !tmpIsPartOfSugarCandidate) {
+                        //note: no check whether the clone actually contains the component
+                        tmpMoleculeClone.remove(tmpComponent);
+                    }
+                }
+                tmpIsTerminal = ConnectivityChecker.isConnected(tmpMoleculeClone);
+            }
+        }
+        return tmpIsTerminal;
+    }
+
+
+    private interface Check {
+
+        boolean isTerminal() throws Exception;
+    }
+}